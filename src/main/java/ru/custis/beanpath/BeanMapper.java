@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import net.bytebuddy.jar.asm.Label;
+import ru.custis.beanpath.BytecodeMaker.Emitter;
+import ru.custis.beanpath.BytecodeMaker.MethodBody;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Copies property values from one bean to another, as defined by pairs of paths.
+ * <p/>
+ * Mapper is compiled into a generated class that calls getters and setters directly,
+ * so mapping itself involves no reflection:
+ * <pre><code>
+ *     Order src = root(Order.class);
+ *     OrderDto dst = root(OrderDto.class);
+ *     BeanMapper&lt;Order, OrderDto&gt; mapper = BeanMapper.of(Order.class, OrderDto.class)
+ *             .map($(src.getCustomer().getName()), $(dst.getClientName()))
+ *             .map($(src.getTotal()), $(dst.getTotal()))
+ *             .compile();
+ *
+ *     mapper.map(order, orderDto);
+ * </code></pre>
+ * <p/>
+ * Mapping rules:
+ * <ul>
+ *     <li>if source path is unreachable (some intermediate bean is {@code null}),
+ *     destination property is left untouched;</li>
+ *     <li>missing intermediate beans on destination side are created
+ *     with their public no-arg constructors;</li>
+ *     <li>primitives are copied as is, boxing and unboxing happen only
+ *     if one side is primitive and the other is its wrapper;</li>
+ *     <li>{@code null} is never unboxed, primitive destination property is left untouched instead.</li>
+ * </ul>
+ * Instances are immutable and thread safe.
+ */
+public abstract class BeanMapper<S, D> {
+
+    /**
+     * Starts mapper definition from {@code sourceType} to {@code destinationType}
+     */
+    public static @Nonnull <S, D> Builder<S, D> of(@Nonnull Class<S> sourceType, @Nonnull Class<D> destinationType) {
+        checkNotNull(sourceType, "Argument 'sourceType' must not be null");
+        checkNotNull(destinationType, "Argument 'destinationType' must not be null");
+        return new Builder<S, D>(sourceType, destinationType);
+    }
+
+    protected BeanMapper() {}
+
+    /**
+     * Copies mapped properties of {@code source} to {@code destination}
+     */
+    public final void map(@Nonnull S source, @Nonnull D destination) {
+        checkNotNull(source, "Argument 'source' must not be null");
+        checkNotNull(destination, "Argument 'destination' must not be null");
+        copy(source, destination);
+    }
+
+    /**
+     * Implemented by generated code
+     */
+    protected abstract void copy(Object source, Object destination);
+
+    public static final class Builder<S, D> {
+        private final Class<S> sourceType;
+        private final Class<D> destinationType;
+        private final List<Mapping> mappings = new ArrayList<Mapping>();
+
+        private Builder(Class<S> sourceType, Class<D> destinationType) {
+            this.sourceType = sourceType;
+            this.destinationType = destinationType;
+        }
+
+        /**
+         * Adds mapping of {@code from} property of the source bean to {@code to} property of the destination one
+         */
+        public @Nonnull <T> Builder<S, D> map(@Nonnull BeanPath<T> from, @Nonnull BeanPath<? super T> to) {
+            checkNotNull(from, "Argument 'from' must not be null");
+            checkNotNull(to, "Argument 'to' must not be null");
+            checkArgument(!from.isRoot() && !to.isRoot(), "Root path cannot be mapped");
+            checkArgument(from.getRoot().getType().isAssignableFrom(sourceType),
+                          "Path %s is not applicable to %s", from, sourceType);
+            checkArgument(to.getRoot().getType().isAssignableFrom(destinationType),
+                          "Path %s is not applicable to %s", to, destinationType);
+
+            mappings.add(new Mapping(from, to));
+            return this;
+        }
+
+        /**
+         * Generates the mapper
+         *
+         * @throws IllegalArgumentException if some of the mappings cannot be compiled,
+         *                                  e.g. due to absent setter or incompatible types
+         */
+        public @Nonnull BeanMapper<S, D> compile() {
+            final List<Mapping> mappings = new ArrayList<Mapping>(this.mappings);
+            for (Mapping mapping : mappings) {
+                mapping.resolve();
+            }
+
+            @SuppressWarnings("unchecked")
+            final BeanMapper<S, D> mapper = BytecodeMaker.createInstance(
+                    BeanMapper.class, sourceType.getSimpleName(), "copy", new MethodBody() {
+                        @Override
+                        public void emit(Emitter emitter) {
+                            emitCopy(emitter, mappings);
+                        }
+                    });
+            return mapper;
+        }
+
+        private void emitCopy(Emitter emitter, List<Mapping> mappings) {
+            final int source = emitter.newLocal(Object.class);
+            final int destination = emitter.newLocal(Object.class);
+
+            emitter.loadArgument(Object.class, 0);
+            emitter.checkCast(sourceType);
+            emitter.store(Object.class, source);
+            emitter.loadArgument(Object.class, 1);
+            emitter.checkCast(destinationType);
+            emitter.store(Object.class, destination);
+
+            for (Mapping mapping : mappings) {
+                final Label skip = new Label();
+
+                emitter.load(sourceType, source);
+                final Class<?> valueType = emitter.readChain(mapping.from, mapping.getters, skip);
+                final int value = emitter.newLocal(valueType);
+                emitter.store(valueType, value);
+
+                final Method setter = mapping.setters.get(mapping.setters.size() - 1);
+                final Class<?> parameterType = setter.getParameterTypes()[0];
+                if (!valueType.isPrimitive() && parameterType.isPrimitive()) {
+                    emitter.load(valueType, value);
+                    emitter.ifNull(skip);
+                }
+
+                emitter.load(destinationType, destination);
+                final Class<?> ownerType = emitter.navigateForWrite(mapping.to, mapping.destinationGetters, mapping.setters);
+
+                emitter.load(valueType, value);
+                emitter.convert(valueType, parameterType, null);
+                emitter.invoke(ownerType, setter);
+                emitter.pop(setter.getReturnType());
+
+                emitter.label(skip);
+            }
+            emitter.returnValue(void.class);
+        }
+    }
+
+    private static final class Mapping {
+        private final BeanPath<?> from;
+        private final BeanPath<?> to;
+
+        private List<Method> getters;
+        private List<Method> destinationGetters;
+        private List<Method> setters;
+
+        private Mapping(BeanPath<?> from, BeanPath<?> to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        private void resolve() {
+            getters = PropertyMethods.getters(from);
+            destinationGetters = PropertyMethods.getters(to);
+            setters = PropertyMethods.setters(to, destinationGetters);
+
+            final Method getter = getters.get(getters.size() - 1);
+            final Class<?> valueType = getter.getReturnType().isPrimitive() ? getter.getReturnType() : from.getType();
+            final Class<?> parameterType = setters.get(setters.size() - 1).getParameterTypes()[0];
+            checkArgument(PropertyMethods.isConvertible(valueType, parameterType),
+                          "Cannot map %s of type %s to %s of type %s",
+                          from.toDotDelimitedString(), valueType.getName(),
+                          to.toDotDelimitedString(), parameterType.getName());
+        }
+    }
+}
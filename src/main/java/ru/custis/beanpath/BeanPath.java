@@ -17,10 +17,15 @@
 package ru.custis.beanpath;
 
 
+import com.google.common.reflect.TypeToken;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import java.io.Serializable;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -38,10 +43,19 @@ public class BeanPath<T> implements Iterable<BeanPath<?>>, Serializable {
     private final String name;
     private final Class<T> type;
 
-    private BeanPath(BeanPath<?> parent, String name, Class<T> type) {
+    // not a part of identity; java.lang.reflect.Type is not necessarily serializable,
+    // so it is lost on serialization, and the raw type stands for it
+    private final transient Type genericType;
+
+    // not a part of identity either; java.lang.reflect.Method is not serializable
+    private final transient Method accessor;
+
+    private BeanPath(BeanPath<?> parent, String name, Class<T> type, Type genericType, Method accessor) {
         this.parent = parent;
         this.name = checkNotNull(name, "Argument 'name' must not be null");
         this.type = checkNotNull(type, "Argument 'type' must not be null");
+        this.genericType = genericType;
+        this.accessor = accessor;
     }
 
     /**
@@ -49,7 +63,17 @@ public class BeanPath<T> implements Iterable<BeanPath<?>>, Serializable {
      */
     public static @Nonnull <T> BeanPath<T> root(@Nonnull Class<T> type) {
         checkNotNull(type, "Argument 'type' must not be null");
-        return new BeanPath<T>(null, "<root>", type);
+        return new BeanPath<T>(null, "<root>", type, type, null);
+    }
+
+    /**
+     * Creates root path of given {@code type}, that is a parameterization
+     * of (or the same as) {@code rawType}
+     */
+    public static @Nonnull <T> BeanPath<T> root(@Nonnull Class<T> rawType, @Nonnull Type type) {
+        checkNotNull(rawType, "Argument 'rawType' must not be null");
+        checkNotNull(type, "Argument 'type' must not be null");
+        return new BeanPath<T>(null, "<root>", rawType, type, null);
     }
 
     /**
@@ -59,7 +83,82 @@ public class BeanPath<T> implements Iterable<BeanPath<?>>, Serializable {
     public @Nonnull <T1> BeanPath<T1> append(@Nonnull String name, @Nonnull Class<T1> type) {
         checkNotNull(name, "Argument 'name' must not be null");
         checkNotNull(type, "Argument 'type' must not be null");
-        return new BeanPath<T1>(this, name, type);
+        return new BeanPath<T1>(this, name, type, type, null);
+    }
+
+    /**
+     * Appends an element of generic type {@code genericType}, that is a parameterization
+     * of (or the same as) {@code type}, to this path and returns the new path.
+     * Creates new instance, leaves {@code this} intact.
+     */
+    public @Nonnull <T1> BeanPath<T1> append(@Nonnull String name, @Nonnull Class<T1> type, @Nonnull Type genericType) {
+        checkNotNull(name, "Argument 'name' must not be null");
+        checkNotNull(type, "Argument 'type' must not be null");
+        checkNotNull(genericType, "Argument 'genericType' must not be null");
+        return new BeanPath<T1>(this, name, type, genericType, null);
+    }
+
+    /**
+     * The same as {@link #append(String, Class, Type)}, with both types given by a type literal,
+     * e.g. {@code append("names", new TypeLiteral<List<String>>() {})}
+     */
+    @SuppressWarnings("unchecked")
+    public @Nonnull <T1> BeanPath<T1> append(@Nonnull String name, @Nonnull TypeLiteral<T1> type) {
+        checkNotNull(name, "Argument 'name' must not be null");
+        checkNotNull(type, "Argument 'type' must not be null");
+        final TypeToken<T1> token = type.toTypeToken();
+        return new BeanPath<T1>(this, name, (Class<T1>) token.getRawType(), token.getType(), null);
+    }
+
+    /**
+     * The same as {@link #append(String, Class, Type)}, but also keeps the {@code accessor}
+     * method the element is read with, i.e. its getter
+     */
+    public @Nonnull <T1> BeanPath<T1> append(@Nonnull String name, @Nonnull Class<T1> type, @Nonnull Type genericType,
+                                             @Nonnull Method accessor) {
+        checkNotNull(name, "Argument 'name' must not be null");
+        checkNotNull(type, "Argument 'type' must not be null");
+        checkNotNull(genericType, "Argument 'genericType' must not be null");
+        checkNotNull(accessor, "Argument 'accessor' must not be null");
+        return new BeanPath<T1>(this, name, type, genericType, accessor);
+    }
+
+    /**
+     * Appends an element that stands for each element of a collection,
+     * i.e. of {@code this} path, to this path and returns the new path.
+     * Such element has pseudo name {@code *}, e.g. {@code orders.*.total}.
+     * Creates new instance, leaves {@code this} intact.
+     */
+    public @Nonnull <E> BeanPath<E> appendEach(@Nonnull Class<E> elementType) {
+        checkNotNull(elementType, "Argument 'elementType' must not be null");
+        return new BeanPath<E>(this, EACH, elementType, elementType, null);
+    }
+
+    /**
+     * The same as {@link #appendEach(Class)}, but keeps the generic element type
+     */
+    public @Nonnull <E> BeanPath<E> appendEach(@Nonnull Class<E> elementType, @Nonnull Type genericElementType) {
+        checkNotNull(elementType, "Argument 'elementType' must not be null");
+        checkNotNull(genericElementType, "Argument 'genericElementType' must not be null");
+        return new BeanPath<E>(this, EACH, elementType, genericElementType, null);
+    }
+
+    private static final String EACH = "*";
+
+    /**
+     * Whether this path element stands for each element of a collection
+     *
+     * @see #appendEach(Class)
+     */
+    public boolean isEach() {
+        return (parent != null) && EACH.equals(name);
+    }
+
+    /**
+     * Whether this path or any of its parents is {@link #isEach() each-element}
+     */
+    public boolean hasEach() {
+        return isEach() || (parent != null && parent.hasEach());
     }
 
     /**
@@ -124,6 +223,125 @@ public class BeanPath<T> implements Iterable<BeanPath<?>>, Serializable {
         return type;
     }
 
+    /**
+     * Generic type of the path, e.g. {@code List<Order>} for a path of type {@code List},
+     * as resolved on capture; or just {@link #getType()} if it is not known
+     * (e.g. the path was deserialized or was created with {@link #append(String, Class)}).
+     * <p/>
+     * Primitive types are represented by their wrappers, like in {@link #getType()}.
+     * Generic type does not take part in equality of paths.
+     */
+    public @Nonnull Type getGenericType() {
+        return (genericType != null) ? genericType : type;
+    }
+
+    /**
+     * Method the last path element was read with, i.e. the getter intercepted on capture
+     * with {@link BeanPathMagic#$(Object)}; or {@code null} if it is not known
+     * (e.g. for a root or {@link #isEach() each-element}, or the path was deserialized
+     * or was created with {@link #append(String, Class)}).
+     * <p/>
+     * Accessor does not take part in equality of paths.
+     */
+    public @Nullable Method getAccessor() {
+        return accessor;
+    }
+
+    /**
+     * Annotation of the given type on the {@link #getAccessor() accessor} of the last path element;
+     * or {@code null} if there is no such annotation or the accessor is not known
+     */
+    public @Nullable <A extends Annotation> A getAnnotation(@Nonnull Class<A> annotationType) {
+        checkNotNull(annotationType, "Argument 'annotationType' must not be null");
+        return (accessor != null) ? accessor.getAnnotation(annotationType) : null;
+    }
+
+    /**
+     * Annotations on the {@link #getAccessor() accessor} of the last path element;
+     * or an empty array if the accessor is not known
+     */
+    public @Nonnull Annotation[] getAnnotations() {
+        return (accessor != null) ? accessor.getAnnotations() : NO_ANNOTATIONS;
+    }
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    /**
+     * Number of properties in the chain, i.e. number of path elements but root;
+     * zero for a root path
+     */
+    public int getDepth() {
+        return (parent == null) ? 0 : parent.getDepth() + 1;
+    }
+
+    /**
+     * Path of {@code relative} chain continuing {@code prefix} chain, e.g. {@code customer.address.city}
+     * of {@code customer} and {@code address.city} (the latter rooted at type of {@code customer}).
+     * Generic types and accessors of the elements are kept.
+     * <p/>
+     * Result is {@link #intern() canonical}, and is cached, so repeated concatenation is a lookup.
+     *
+     * @throws IllegalArgumentException if {@code relative} is not applicable to type of {@code prefix}
+     */
+    public static @Nonnull <R> BeanPath<R> concat(@Nonnull BeanPath<?> prefix, @Nonnull BeanPath<R> relative) {
+        checkNotNull(prefix, "Argument 'prefix' must not be null");
+        checkNotNull(relative, "Argument 'relative' must not be null");
+        return PathAlgebra.concat(prefix, relative);
+    }
+
+    /**
+     * This path relative to {@code base}, that is a prefix of this path, i.e. rooted at type of {@code base};
+     * e.g. {@code address.city} of {@code customer.address.city} relative to {@code customer}.
+     * Result is {@link #intern() canonical}, and is cached.
+     *
+     * @throws IllegalArgumentException if {@code base} is not a prefix of this path
+     */
+    public @Nonnull BeanPath<T> relativize(@Nonnull BeanPath<?> base) {
+        checkNotNull(base, "Argument 'base' must not be null");
+        return PathAlgebra.relativize(this, base);
+    }
+
+    /**
+     * The same property chain, but rooted at {@code rootType}, that is the type of the root
+     * or its subtype. Result is {@link #intern() canonical}, and is cached.
+     *
+     * @throws IllegalArgumentException if {@code rootType} is not a subtype of the root type
+     */
+    public @Nonnull BeanPath<T> rebase(@Nonnull Class<?> rootType) {
+        checkNotNull(rootType, "Argument 'rootType' must not be null");
+        return PathAlgebra.rebase(this, rootType);
+    }
+
+    /**
+     * Properties of the chain from {@code from}, inclusive, to {@code to}, exclusive (counting from zero),
+     * rooted at the owner of the {@code from} property; e.g. {@code address} of {@code customer.address.city}
+     * for {@code subPath(1, 2)}. Result is {@link #intern() canonical}, and is cached.
+     *
+     * @throws IndexOutOfBoundsException unless {@code 0 <= from <= to <= getDepth()}
+     */
+    public @Nonnull BeanPath<?> subPath(int from, int to) {
+        return PathAlgebra.subPath(this, from, to);
+    }
+
+    /**
+     * Canonical instance of this path: equal paths share the same canonical instance,
+     * whose parents are canonical too. It is the instance that was interned first,
+     * so it keeps generic types and accessors of that instance.
+     * <p/>
+     * Canonical paths are kept forever, so intern paths of a bounded set only,
+     * like it is done by other caches of paths (e.g. of {@link PathAccessor}).
+     */
+    public @Nonnull BeanPath<T> intern() {
+        return PathAlgebra.intern(this);
+    }
+
+    /**
+     * The same path element, but appended to {@code newParent}
+     */
+    @Nonnull BeanPath<T> reparent(@Nonnull BeanPath<?> newParent) {
+        return new BeanPath<T>(newParent, name, type, genericType, accessor);
+    }
+
     /**
      * Iterator over path elements, from {@code root} to {@code this}.
      * Contains at lest one path element — {@code this}, in case of
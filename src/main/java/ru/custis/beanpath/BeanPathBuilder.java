@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import com.google.common.reflect.TypeToken;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Builds paths from property names, without mocks:
+ * <pre><code>
+ *     BeanPath&lt;String&gt; path = BeanPathBuilder.of(Person.class).get("document").get("number", String.class).toPath();
+ * </code></pre>
+ * Every property is checked to have a public getter ({@code getX()}, {@code isX()} or {@code x()}),
+ * and its type is resolved from the getter the same way {@link BeanPathMagic} resolves it,
+ * so built paths are equal to captured ones. Unlike capture, it works for final classes and final getters.
+ * <p/>
+ * Resolved properties are cached per type, so building is cheap after the first time.
+ * Instances are immutable and thread safe.
+ */
+public final class BeanPathBuilder<T> {
+    private static final Type ITERABLE_ELEMENT_TYPE = Iterable.class.getTypeParameters()[0];
+
+    private final BeanPath<T> path;
+    private final TypeToken<?> type;
+
+    private BeanPathBuilder(BeanPath<T> path, TypeToken<?> type) {
+        this.path = path;
+        this.type = type;
+    }
+
+    public static @Nonnull <T> BeanPathBuilder<T> of(@Nonnull Class<T> rootType) {
+        checkNotNull(rootType, "Argument 'rootType' must not be null");
+        return new BeanPathBuilder<T>(BeanPath.root(rootType), TypeToken.of(rootType));
+    }
+
+    /**
+     * Builder of a root of parameterized type, so that generic property types can be resolved
+     */
+    @SuppressWarnings("unchecked")
+    public static @Nonnull <T> BeanPathBuilder<T> of(@Nonnull TypeLiteral<T> rootType) {
+        checkNotNull(rootType, "Argument 'rootType' must not be null");
+        final TypeToken<T> type = rootType.toTypeToken();
+        return new BeanPathBuilder<T>(BeanPath.root((Class<T>) type.getRawType(), type.getType()), type);
+    }
+
+    /**
+     * Appends a property, of the type its getter returns
+     *
+     * @param name name of the property, e.g. {@code "document"}, or name of its getter, e.g. {@code "getDocument"}
+     * @throws IllegalArgumentException if there is no such getter
+     */
+    public @Nonnull BeanPathBuilder<?> get(@Nonnull String name) {
+        checkNotNull(name, "Argument 'name' must not be null");
+        final Property property = Property.of(type, name);
+        return new BeanPathBuilder<Object>(path.append(property.name, property.rawType, property.genericType, property.getter), property.type);
+    }
+
+    /**
+     * Appends a property, checking it to be of the given type
+     *
+     * @throws IllegalArgumentException if there is no such getter, or it returns another type
+     */
+    @SuppressWarnings("unchecked")
+    public @Nonnull <R> BeanPathBuilder<R> get(@Nonnull String name, @Nonnull Class<R> expectedType) {
+        checkNotNull(expectedType, "Argument 'expectedType' must not be null");
+        final BeanPathBuilder<?> next = get(name);
+        checkArgument(expectedType.isAssignableFrom(next.path.getType()),
+                      "Property %s is of type %s, not %s", next.path, next.path.getType().getName(), expectedType.getName());
+        return (BeanPathBuilder<R>) next;
+    }
+
+    /**
+     * Appends traversal of each element of the current collection, see {@link BeanPathMagic#each(Iterable)}
+     *
+     * @throws IllegalArgumentException if the current path is not {@link Iterable}
+     */
+    @SuppressWarnings("unchecked")
+    public @Nonnull BeanPathBuilder<?> each() {
+        checkArgument(Iterable.class.isAssignableFrom(path.getType()), "Path %s is not Iterable", path);
+        final TypeToken<?> elementType = type.resolveType(ITERABLE_ELEMENT_TYPE);
+        final Class<Object> rawType = (Class<Object>) elementType.getRawType();
+        return new BeanPathBuilder<Object>(path.appendEach(rawType, elementType.getType()), elementType);
+    }
+
+    /**
+     * The same path, but with the last element of a more specific type, if it is;
+     * e.g. as known from a cast of a generic getter value.
+     * Type arguments of the element are carried over to the subtype, where they can be resolved.
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull BeanPathBuilder<?> narrow(@Nonnull Class<?> subtype) {
+        if (!path.hasParent() || path.isEach()
+            || subtype == path.getType() || !path.getType().isAssignableFrom(subtype)) {
+            return this;
+        }
+        final Class<Object> rawType = (Class<Object>) subtype;
+        final TypeToken<?> narrowedType = subtypeOf(type, subtype);
+        final BeanPath<Object> narrowed = (path.getAccessor() != null)
+                                          ? path.getParent().append(path.getName(), rawType, narrowedType.getType(), path.getAccessor())
+                                          : path.getParent().append(path.getName(), rawType, narrowedType.getType());
+        return new BeanPathBuilder<Object>(narrowed, narrowedType);
+    }
+
+    // e.g. ArrayList<Order> of List<Order>; or the raw subtype, if its type arguments cannot be resolved
+    private static TypeToken<?> subtypeOf(TypeToken<?> type, Class<?> subtype) {
+        if (type.getRawType().isPrimitive()) {
+            return TypeToken.of(subtype);
+        }
+        try {
+            return type.getSubtype(subtype);
+        } catch (IllegalArgumentException x) {
+            return TypeToken.of(subtype);
+        }
+    }
+
+    public @Nonnull BeanPath<T> toPath() {
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        return "BeanPathBuilder(" + path + ")";
+    }
+
+    /**
+     * Property resolved from its getter
+     */
+    private static final class Property {
+        private static final Map<List<Object>, Property> cache = new ConcurrentHashMap<List<Object>, Property>();
+
+        private final String name;
+        private final Class<Object> rawType;
+        private final Type genericType;
+        private final TypeToken<?> type;
+        private final Method getter;
+
+        private Property(String name, Class<Object> rawType, TypeToken<?> type, Method getter) {
+            this.name = name;
+            this.rawType = rawType;
+            this.genericType = type.getRawType().isPrimitive() ? rawType : type.getType();
+            this.type = type;
+            this.getter = getter;
+        }
+
+        public static Property of(TypeToken<?> owner, String name) {
+            final List<Object> key = Arrays.<Object>asList(owner, name);
+            Property property = cache.get(key);
+            if (property == null) {
+                property = resolve(owner, name);
+                cache.put(key, property); // its ok if two threads resolve it twice concurrently
+            }
+            return property;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Property resolve(TypeToken<?> owner, String name) {
+            final String propertyName = BeanPathMagic.NameUtils.stripGetIsPrefixIfAny(name);
+            final Method getter = PropertyMethods.getter(owner.getRawType(), propertyName);
+
+            // the same as in BeanPathMagic.Mocker.MockInvocationHandler
+            final TypeToken<?> type = owner.resolveType(getter.getGenericReturnType());
+            final Class<?> rawType = type.getRawType();
+            final Class<?> pathType = rawType.isPrimitive() ? Primitives.getWrapperClass(rawType) : rawType;
+
+            return new Property(BeanPathMagic.NameUtils.stripGetIsPrefixIfAny(getter.getName()),
+                                (Class<Object>) pathType, type, getter);
+        }
+    }
+}
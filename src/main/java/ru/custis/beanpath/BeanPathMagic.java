@@ -16,15 +16,32 @@
 
 package ru.custis.beanpath;
 
+import com.google.common.base.Function;
+import com.google.common.reflect.ClassPath;
 import com.google.common.reflect.TypeToken;
 import ru.custis.beanpath.MockMaker.InvocationCallback;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.Character.isUpperCase;
@@ -60,15 +77,168 @@ public final class BeanPathMagic {
         return $(callChain).toDotDelimitedString();
     }
 
+    /**
+     * Captures several paths at once, one per argument, e.g.
+     * <pre><code>
+     *     List&lt;BeanPath&lt;?&gt;&gt; columns = $all(person.getName(), person.getAge(), person.getDocument().getNumber());
+     * </code></pre>
+     * A call chain continues while each call is made on the mock returned by the previous one.
+     * So a chain ending with a mockable type followed by a chain starting from the same mock
+     * (e.g. {@code $all(person.getBestFriend(), person.getName())}, since mocks are shared by type)
+     * cannot be told apart, that is reported as the wrong number of captured paths.
+     *
+     * @throws BeanPathMagicException if the number of captured call chains differs from the number of arguments
+     */
+    @SuppressWarnings("UnusedParameters")
+    public static @Nonnull List<BeanPath<?>> $all(Object... callChains) {
+        final List<BeanPath<?>> paths = CurrentPath.evictAll();
+        final int expected = (callChains != null) ? callChains.length : 1; // $all(null) passes null array
+        if (paths.size() != expected) {
+            throw new BeanPathMagicException("Captured %s call chains %s, but %s arguments were given. "
+                                             + "Probably some call chain contains a final method, or chains are not delimited",
+                                             paths.size(), paths, expected);
+        }
+        return Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * Marks traversal of each element of a collection in a call chain, e.g.
+     * <pre><code>
+     *     $(each(customer.getOrders()).getTotal())
+     * </code></pre>
+     * stands for totals of all the orders of the customer.
+     * <p/>
+     * {@code collection} must be returned by a call chain, so that its element type is known.
+     * Returns a mock of element type, to continue the chain.
+     */
+    public static <E> E each(Iterable<E> collection) {
+        final TypeToken<?> type = (collection != null) ? Mocker.typeOf(collection) : null;
+        if (type == null) {
+            throw new BeanPathMagicException("Argument of each() must be a collection returned by a call chain");
+        }
+        final TypeToken<?> elementType = type.resolveType(ITERABLE_ELEMENT_TYPE);
+
+        @SuppressWarnings("unchecked")
+        final E element = (E) CurrentPath.appendEach(elementType.getRawType(), elementType.getType(),
+                                                     Mocker.valueOf(elementType, elementType.getRawType()));
+        return element;
+    }
+
+    private static final Type ITERABLE_ELEMENT_TYPE = Iterable.class.getTypeParameters()[0];
+
+    /**
+     * Path of a getter chain, derived from the bytecode of the function without calling it,
+     * so neither mocks nor capture are involved:
+     * <pre><code>
+     *     BeanPath&lt;String&gt; path = path(new Function&lt;Person, String&gt;() {
+     *         public String apply(Person person) {
+     *             return person.getDocument().getNumber();
+     *         }
+     *     });
+     * </code></pre>
+     * Paths are cached per function class, so steady-state cost is a single map lookup.
+     *
+     * @throws IllegalArgumentException if the function is anything but a plain getter chain
+     *                                  over its argument, or if its bytecode is not available
+     */
+    @SuppressWarnings("unchecked")
+    public static @Nonnull <T, R> BeanPath<R> path(@Nonnull Function<T, R> function) {
+        checkNotNull(function, "Argument 'function' must not be null");
+        return (BeanPath<R>) FunctionPaths.pathOf(function);
+    }
+
+    /**
+     * Sets the directory where generated mock classes are persisted, so that they are loaded from it
+     * on the next start of the JVM instead of being generated again; or disables persisting, if {@code null}.
+     * The same as {@code -Dru.custis.beanpath.mockCache=<directory>}.
+     * <p/>
+     * Should be set before the first mock is created. Mocks are keyed by a fingerprint
+     * of the bytecode of mocked types, so changed types are mocked anew.
+     */
+    public static void setMockCacheDirectory(@Nullable File directory) {
+        MockClassCache.setDirectory(directory);
+    }
+
+    /**
+     * Generates mocks of {@code roots} and of all the types reachable from them via getters
+     * (and via elements of returned collections), so that first captures do not pay for mock generation.
+     * Different types are mocked in parallel, one thread per available processor.
+     * <p/>
+     * Blocks until all the reachable types are mocked.
+     */
+    public static void prewarm(@Nonnull Class<?>... roots) {
+        checkNotNull(roots, "Argument 'roots' must not be null");
+        final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            prewarm(executor, roots);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The same as {@link #prewarm(Class[])}, but runs on the given {@code executor}
+     */
+    public static void prewarm(@Nonnull ExecutorService executor, @Nonnull Class<?>... roots) {
+        checkNotNull(executor, "Argument 'executor' must not be null");
+        checkNotNull(roots, "Argument 'roots' must not be null");
+        new Prewarmer(executor).run(roots);
+    }
+
+    /**
+     * Prewarms all the public mockable top-level classes of the given package and its subpackages,
+     * see {@link #prewarm(Class[])}
+     */
+    public static void prewarmPackage(@Nonnull String packageName) {
+        checkNotNull(packageName, "Argument 'packageName' must not be null");
+
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader == null) {
+            loader = BeanPathMagic.class.getClassLoader();
+        }
+
+        final List<Class<?>> roots = new ArrayList<Class<?>>();
+        try {
+            for (ClassPath.ClassInfo info : ClassPath.from(loader).getTopLevelClassesRecursive(packageName)) {
+                final Class<?> clazz;
+                try {
+                    clazz = info.load();
+                } catch (LinkageError ignored) { // e.g. references an optional dependency
+                    continue;
+                }
+                if (Modifier.isPublic(clazz.getModifiers()) && !clazz.isAnnotation() && !clazz.isEnum()
+                    && Prewarmer.isMockable(clazz)) {
+                    roots.add(clazz);
+                }
+            }
+        } catch (IOException x) {
+            throw new BeanPathMagicException("Failed to scan package [%s]", packageName, x);
+        }
+
+        prewarm(roots.toArray(new Class<?>[roots.size()]));
+    }
+
     private static final class Mocker {
-        private static final Map<TypeToken, Object> cache = new ConcurrentHashMap<TypeToken, Object>();
-        private static final Object mockCreationGuard = new Object();
+        private static final Map<TypeToken<?>, Object> cache = new ConcurrentHashMap<TypeToken<?>, Object>();
+
+        // per type, so that different types may be mocked in parallel
+        private static final ConcurrentMap<TypeToken<?>, Object> mockCreationGuards = new ConcurrentHashMap<TypeToken<?>, Object>();
+
+        // mocks implement equals() and hashCode() by identity
+        private static final Map<Object, TypeToken<?>> types = new ConcurrentHashMap<Object, TypeToken<?>>();
 
         @SuppressWarnings("unchecked")
-        public static <T> T mock(TypeToken type) {
+        public static <T> T mock(TypeToken<?> type) {
             Object mock = cache.get(type);
+            if (BeanPathMagicMetrics.enabled) {
+                if (mock != null) {
+                    BeanPathMagicMetrics.mockCacheHits.increment();
+                } else {
+                    BeanPathMagicMetrics.mockCacheMisses.increment();
+                }
+            }
             if (mock == null) {
-                synchronized (mockCreationGuard) { // we do not want to generate a mock twice
+                synchronized (guardOf(type)) { // we do not want to generate a mock twice
                     mock = cache.get(type);
                     if (mock == null) {
                         try {
@@ -76,6 +246,7 @@ public final class BeanPathMagic {
                         } catch (Exception x) {
                             throw new BeanPathMagicException("Failed to mock type [%s]", type, x);
                         }
+                        types.put(mock, type);
                         cache.put(type, mock);
                     }
                 }
@@ -83,26 +254,84 @@ public final class BeanPathMagic {
             return (T) mock;
         }
 
+        private static Object guardOf(TypeToken<?> type) {
+            final Object guard = new Object();
+            final Object existing = mockCreationGuards.putIfAbsent(type, guard);
+            return (existing != null) ? existing : guard;
+        }
+
+        /**
+         * Type of the given mock; or {@code null} if it is not a mock
+         */
+        public static TypeToken<?> typeOf(Object mock) {
+            return types.get(mock);
+        }
+
+        /**
+         * Value to be returned from an intercepted call chain element of given type
+         */
+        public static Object valueOf(TypeToken<?> type, Class<?> rawType) {
+            if (rawType.isPrimitive()) {
+                // including void.class, that makes no sense,
+                // but anyway we can handle it
+                return Primitives.getDefaultValue(rawType);
+            } else if (Modifier.isFinal(rawType.getModifiers())) {
+                // for String, primitive wrappers, enums and arrays,
+                // that we can't proxy, but must handle
+                // when they close property chain
+                return null;
+            } else {
+                return mock(type);
+            }
+        }
+
         private static class MockInvocationHandler implements InvocationCallback {
             // rawMockType can be inferred from mockType,
             // but TypeToken.getRawType() is relatively slow,
             // so avoid it in time critical invoke()
 
-            private final TypeToken mockType;
-            private final Class rawMockType;
+            private final TypeToken<?> mockType;
+            private final Class<?> rawMockType;
+            private final Type genericMockType;
+
+            // generic resolution is slow too, so it is done once per method
+            private final Map<Method, Interception> interceptions = new ConcurrentHashMap<Method, Interception>();
 
-            private MockInvocationHandler(TypeToken mockType) {
+            private MockInvocationHandler(TypeToken<?> mockType) {
                 this.mockType = mockType;
                 this.rawMockType = mockType.getRawType();
+                this.genericMockType = mockType.getType();
             }
 
             @Override
             public Object invoke(Object target, Method method, Object[] args) throws Throwable {
-                CurrentPath.initIfNotAlready(rawMockType);
+                CurrentPath.enter(target, rawMockType, genericMockType);
 
+                Interception interception = interceptions.get(method);
+                if (interception == null) {
+                    interception = new Interception(mockType, method);
+                    interceptions.put(method, interception); // its ok if two threads resolve it twice concurrently
+                }
+
+                return CurrentPath.append(interception.name, interception.type, interception.genericType, method,
+                                          valueOf(interception.returnType, interception.rawReturnType));
+            }
+        }
+
+        /**
+         * What an intercepted call appends to the path, resolved in context of the mock type
+         */
+        private static final class Interception {
+            private final String name;
+            private final Class<?> type;
+            private final Type genericType;
+            private final TypeToken<?> returnType;
+            private final Class<?> rawReturnType;
+
+            private Interception(TypeToken<?> mockType, Method method) {
                 final Type genericReturnType = method.getGenericReturnType();
-                Class rawReturnType = method.getReturnType();
-                TypeToken returnType;
+                Class<?> rawReturnType = method.getReturnType();
+                TypeToken<?> returnType;
 
                 // again, TypeToken.getRawType() is slow, avoid it in simple cases
                 if (genericReturnType == rawReturnType) {
@@ -112,50 +341,257 @@ public final class BeanPathMagic {
                     rawReturnType = returnType.getRawType();
                 }
 
-                final String name = NameUtils.stripGetIsPrefixIfAny(method.getName());
-                final Class type = rawReturnType.isPrimitive() ? Primitives.getWrapperClass(rawReturnType) : rawReturnType;
-
-                CurrentPath.append(name, type);
-
-                if (rawReturnType.isPrimitive()) {
-                    // including void.class, that makes no sense,
-                    // but anyway we can handle it
-                    return Primitives.getDefaultValue(rawReturnType);
-                } else if (Modifier.isFinal(rawReturnType.getModifiers())) {
-                    // for String, primitive wrappers, enums and arrays,
-                    // that we can't proxy, but must handle
-                    // when they close property chain
-                    return null;
-                } else {
-                    return mock(returnType);
-                }
+                this.name = NameUtils.stripGetIsPrefixIfAny(method.getName());
+                this.type = rawReturnType.isPrimitive() ? Primitives.getWrapperClass(rawReturnType) : rawReturnType;
+                this.genericType = rawReturnType.isPrimitive() ? type : returnType.getType();
+                this.returnType = returnType;
+                this.rawReturnType = rawReturnType;
             }
         }
     }
 
+    /**
+     * Records call chains of the current thread.
+     * <p/>
+     * A call on the very mock the previous call returned continues the chain,
+     * a call on any other mock starts a new one. So chains are delimited, unless
+     * a chain ends with a mock, and the next one starts with the same mock
+     * (e.g. {@code person.getBestFriend()} followed by {@code person.getName()},
+     * as mocks are shared by type).
+     */
     private static final class CurrentPath {
-        private static final ThreadLocal<BeanPath<?>> currentPathTL = new ThreadLocal<BeanPath<?>>();
+        private static final ThreadLocal<Capture> currentCaptureTL = new ThreadLocal<Capture>() {
+            @Override
+            protected Capture initialValue() {
+                return new Capture();
+            }
+        };
+
+        // Mutable, but confined to its thread
+        private static final class Capture {
+            private BeanPath<?> path;
+            private Object lastReturned;
+            private long startNanos; // of the first chain
+            private long chainStartNanos; // of the current chain
+
+            // chains completed before the current one, reused between captures
+            private final List<BeanPath<?>> completed = new ArrayList<BeanPath<?>>();
 
-        public static void initIfNotAlready(Class<?> clazz) {
-            if (currentPathTL.get() == null) {
-                currentPathTL.set(BeanPath.root(clazz));
+            private void clear() {
+                path = null;
+                lastReturned = null;
+                completed.clear();
             }
         }
 
-        public static void append(String name, Class<?> type) {
-            final BeanPath<?> path = currentPathTL.get();
-            assert (path != null);
-            currentPathTL.set(path.append(name, type));
+        public static void enter(Object target, Class<?> clazz, Type genericType) {
+            final Capture capture = currentCaptureTL.get();
+            if (capture.path == null) {
+                capture.path = BeanPath.root(clazz, genericType);
+                capture.startNanos = capture.chainStartNanos = startNanos();
+            } else if (target != capture.lastReturned) {
+                capture.completed.add(capture.path);
+                capture.path = BeanPath.root(clazz, genericType);
+                capture.chainStartNanos = startNanos(); // an abandoned chain must not count
+            }
+        }
+
+        private static long startNanos() {
+            return (BeanPathMagicMetrics.enabled || BeanPathMagicEvents.hasListeners) ? System.nanoTime() : 0;
+        }
+
+        public static Object append(String name, Class<?> type, Type genericType, Method accessor, Object returned) {
+            final Capture capture = currentCaptureTL.get();
+            assert (capture.path != null);
+            capture.path = capture.path.append(name, type, genericType, accessor);
+            capture.lastReturned = returned;
+            return returned;
+        }
+
+        public static Object appendEach(Class<?> elementType, Type genericElementType, Object returned) {
+            final Capture capture = currentCaptureTL.get();
+            if (capture.path == null) {
+                throw new BeanPathMagicException("No current path. Argument of each() must be a collection returned by a call chain");
+            }
+            capture.path = capture.path.appendEach(elementType, genericElementType);
+            capture.lastReturned = returned;
+            return returned;
+        }
+
+        /**
+         * Forgets the current paths, if any, as if they were never captured
+         */
+        public static void discard() {
+            currentCaptureTL.get().clear();
         }
 
+        /**
+         * The last captured path, i.e. the one of the argument of {@code $()}; or {@code null} if none.
+         * Earlier chains are leftovers, e.g. of a capture failed with an exception, and are dropped.
+         */
         public static BeanPath<?> evict() {
-            final BeanPath<?> path = currentPathTL.get();
-            currentPathTL.set(null);
+            final Capture capture = currentCaptureTL.get();
+            final BeanPath<?> path = capture.path;
+            capture.clear();
+            recordCapture(capture.chainStartNanos, path);
             return path;
         }
+
+        /**
+         * All the captured paths, in order of capture
+         */
+        public static List<BeanPath<?>> evictAll() {
+            final Capture capture = currentCaptureTL.get();
+            if (capture.path == null) {
+                return Collections.emptyList();
+            }
+            final List<BeanPath<?>> paths = new ArrayList<BeanPath<?>>(capture.completed.size() + 1);
+            paths.addAll(capture.completed);
+            paths.add(capture.path);
+            capture.clear();
+            recordCapture(capture.startNanos, paths.get(0));
+            return paths;
+        }
+
+        private static void recordCapture(long startNanos, BeanPath<?> path) {
+            if (path != null && startNanos != 0) {
+                final long duration = System.nanoTime() - startNanos;
+                if (BeanPathMagicMetrics.enabled) {
+                    BeanPathMagicMetrics.capture.record(duration);
+                }
+                if (BeanPathMagicEvents.hasListeners) {
+                    BeanPathMagicEvents.fireCaptured(path, duration);
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks the graph of types reachable from roots, calling getters of their mocks
+     * the very same way user call chains do. Every type is visited in its own task.
+     */
+    private static final class Prewarmer {
+        // guards against infinitely growing parameterizations, e.g. Node<T> with Node<List<T>> getChild()
+        private static final int MAX_DEPTH = 32;
+
+        private final ExecutorService executor;
+        private final Set<TypeToken<?>> visited = Collections.newSetFromMap(new ConcurrentHashMap<TypeToken<?>, Boolean>());
+        private final AtomicInteger pending = new AtomicInteger(0);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        private Prewarmer(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        public void run(Class<?>[] roots) {
+            pending.incrementAndGet(); // not done until all the roots are submitted
+            try {
+                for (Class<?> root : roots) {
+                    visit(TypeToken.of(checkNotNull(root, "Argument 'roots' must not contain nulls")), 0);
+                }
+            } finally {
+                release();
+            }
+
+            try {
+                done.await();
+            } catch (InterruptedException x) {
+                Thread.currentThread().interrupt();
+                throw new BeanPathMagicException("Interrupted while prewarming", x);
+            }
+            if (failure.get() != null) {
+                throw new BeanPathMagicException("Failed to prewarm mocks of %s", Arrays.toString(roots), failure.get());
+            }
+        }
+
+        public static boolean isMockable(Class<?> rawType) {
+            // the same as in Mocker.valueOf()
+            return !rawType.isPrimitive() && !Modifier.isFinal(rawType.getModifiers());
+        }
+
+        private void visit(final TypeToken<?> type, final int depth) {
+            if (depth > MAX_DEPTH || !isMockable(type.getRawType()) || !visited.add(type)) {
+                return;
+            }
+            pending.incrementAndGet();
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            warm(type, depth);
+                        } catch (Throwable x) {
+                            failure.compareAndSet(null, x);
+                        } finally {
+                            release();
+                        }
+                    }
+                });
+            } catch (RuntimeException x) { // rejected
+                release();
+                throw x;
+            }
+        }
+
+        private void release() {
+            if (pending.decrementAndGet() == 0) {
+                done.countDown();
+            }
+        }
+
+        private void warm(TypeToken<?> type, int depth) throws Exception {
+            final Object mock = Mocker.mock(type);
+            for (Method method : type.getRawType().getMethods()) {
+                if (!isIntercepted(method)) {
+                    continue;
+                }
+
+                final Object value;
+                try {
+                    value = method.invoke(mock);
+                } catch (InvocationTargetException x) {
+                    throw new BeanPathMagicException("Failed to call %s on mock", method, x.getCause());
+                } finally {
+                    CurrentPath.discard();
+                }
+
+                final TypeToken<?> valueType = (value != null) ? Mocker.typeOf(value) : null;
+                if (valueType != null) {
+                    visit(valueType, depth + 1);
+                    if (Iterable.class.isAssignableFrom(valueType.getRawType())) {
+                        visit(valueType.resolveType(ITERABLE_ELEMENT_TYPE), depth + 1);
+                    }
+                }
+            }
+        }
+
+        // bean getters only, like the ones PropertyMethods resolves properties to;
+        // other no-arg methods may be intercepted too, but are not properties worth warming
+        private static boolean isIntercepted(Method method) {
+            final int modifiers = method.getModifiers();
+            return method.getParameterTypes().length == 0
+                   && isGetterName(method.getName(), method.getReturnType())
+                   && method.getDeclaringClass() != Object.class
+                   && Modifier.isPublic(method.getDeclaringClass().getModifiers())
+                   && !Modifier.isStatic(modifiers)
+                   && !Modifier.isFinal(modifiers)
+                   && !method.isBridge();
+        }
+
+        private static boolean isGetterName(String name, Class<?> returnType) {
+            if (returnType == void.class) {
+                return false;
+            } else if (name.length() > 3 && name.startsWith("get")) {
+                return isUpperCase(name.charAt(3));
+            } else if (name.length() > 2 && name.startsWith("is")) {
+                return isUpperCase(name.charAt(2)) && (returnType == boolean.class || returnType == Boolean.class);
+            }
+            return false;
+        }
     }
 
-    private static final class NameUtils {
+    static final class NameUtils {
         private static final String IS = "is", GET = "get";
 
         public static String stripGetIsPrefixIfAny(final String name) {
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Registry of {@link BeanPathMagicListener}s.
+ * <p/>
+ * When there are no listeners, firing an event costs a single volatile read.
+ * Exceptions thrown by listeners are ignored, so that diagnostics never break the application.
+ */
+public final class BeanPathMagicEvents {
+    private BeanPathMagicEvents() {}
+
+    private static final List<BeanPathMagicListener> listeners = new CopyOnWriteArrayList<BeanPathMagicListener>();
+
+    // read on hot paths, written under the lock of the class along with the listeners
+    static volatile boolean hasListeners = false;
+
+    private static volatile long slowCaptureThresholdNanos = TimeUnit.MILLISECONDS.toNanos(1);
+
+    public static synchronized void addListener(@Nonnull BeanPathMagicListener listener) {
+        checkNotNull(listener, "Argument 'listener' must not be null");
+        listeners.add(listener);
+        hasListeners = true;
+    }
+
+    public static synchronized void removeListener(@Nonnull BeanPathMagicListener listener) {
+        checkNotNull(listener, "Argument 'listener' must not be null");
+        listeners.remove(listener);
+        hasListeners = !listeners.isEmpty();
+    }
+
+    /**
+     * Captures that take longer are reported with {@link BeanPathMagicListener#onSlowCapture(BeanPath, long)}.
+     * One millisecond by default.
+     */
+    public static void setSlowCaptureThreshold(long threshold, @Nonnull TimeUnit unit) {
+        checkNotNull(unit, "Argument 'unit' must not be null");
+        checkArgument(threshold >= 0, "Argument 'threshold' must not be negative");
+        slowCaptureThresholdNanos = unit.toNanos(threshold);
+    }
+
+    public static long getSlowCaptureThresholdNanos() {
+        return slowCaptureThresholdNanos;
+    }
+
+    static void fireMockGenerated(Class<?> mockedType, String mockClassName, int bytecodeSize, long durationNanos) {
+        for (BeanPathMagicListener listener : listeners) {
+            try {
+                listener.onMockGenerated(mockedType, mockClassName, bytecodeSize, durationNanos);
+            } catch (RuntimeException ignored) {
+            }
+        }
+    }
+
+    static void fireClassCompiled(Class<?> baseType, String className, int bytecodeSize, long durationNanos) {
+        for (BeanPathMagicListener listener : listeners) {
+            try {
+                listener.onClassCompiled(baseType, className, bytecodeSize, durationNanos);
+            } catch (RuntimeException ignored) {
+            }
+        }
+    }
+
+    static void fireCaptured(BeanPath<?> path, long durationNanos) {
+        if (durationNanos < slowCaptureThresholdNanos) {
+            return;
+        }
+        for (BeanPathMagicListener listener : listeners) {
+            try {
+                listener.onSlowCapture(path, durationNanos);
+            } catch (RuntimeException ignored) {
+            }
+        }
+    }
+}
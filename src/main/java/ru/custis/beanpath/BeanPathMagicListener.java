@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives diagnostic events of {@link BeanPathMagic}, e.g. to forward them
+ * to a profiler or a log. Register listeners with {@link BeanPathMagicEvents#addListener(BeanPathMagicListener)}.
+ * <p/>
+ * Methods are called synchronously on the thread that caused the event,
+ * so they should be fast. All of them do nothing by default.
+ */
+public abstract class BeanPathMagicListener {
+
+    /**
+     * A mock class is generated for {@code mockedType}
+     */
+    public void onMockGenerated(@Nonnull Class<?> mockedType, @Nonnull String mockClassName,
+                                int bytecodeSize, long durationNanos) {
+    }
+
+    /**
+     * A class is generated for a compiled helper, e.g. {@link PathAccessor}
+     */
+    public void onClassCompiled(@Nonnull Class<?> baseType, @Nonnull String className,
+                                int bytecodeSize, long durationNanos) {
+    }
+
+    /**
+     * Capture of {@code path} took longer than {@link BeanPathMagicEvents#getSlowCaptureThresholdNanos()},
+     * measuring from the first intercepted call of the call chain
+     */
+    public void onSlowCapture(@Nonnull BeanPath<?> path, long durationNanos) {
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import javax.annotation.Nonnull;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Runtime metrics of {@link BeanPathMagic}: mock generation, mock cache efficiency,
+ * compilation of helpers and path capturing.
+ * <p/>
+ * Counters are striped, so recording on hot paths does not contend.
+ * Collection is enabled by default, and can be disabled entirely
+ * with {@code -Dru.custis.beanpath.metrics=false} or {@link #setEnabled(boolean)}.
+ * <p/>
+ * Metrics are not exposed via JMX until {@link #registerMBean()} is called.
+ */
+public final class BeanPathMagicMetrics implements BeanPathMagicMetricsMBean {
+    public static final String OBJECT_NAME = "ru.custis.beanpath:type=BeanPathMagicMetrics";
+
+    private static final BeanPathMagicMetrics INSTANCE = new BeanPathMagicMetrics();
+
+    // read on hot paths, so a plain static field rather than an instance one
+    static volatile boolean enabled = !"false".equalsIgnoreCase(System.getProperty("ru.custis.beanpath.metrics"));
+
+    static final LatencyHistogram mockGeneration = new LatencyHistogram();
+    static final StripedCounter mockCacheHits = new StripedCounter();
+    static final StripedCounter mockCacheMisses = new StripedCounter();
+    static final LatencyHistogram compilation = new LatencyHistogram();
+    static final LatencyHistogram capture = new LatencyHistogram();
+
+    private BeanPathMagicMetrics() {}
+
+    public static @Nonnull BeanPathMagicMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers metrics in the platform MBean server under {@link #OBJECT_NAME},
+     * does nothing if already registered
+     */
+    public static void registerMBean() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException ignored) {
+        } catch (JMException x) {
+            throw new BeanPathMagicException("Failed to register MBean [%s]", OBJECT_NAME, x);
+        }
+    }
+
+    public static void unregisterMBean() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException x) {
+            throw new BeanPathMagicException("Failed to unregister MBean [%s]", OBJECT_NAME, x);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        BeanPathMagicMetrics.enabled = enabled;
+    }
+
+    @Override
+    public long getMockCount() {
+        return mockGeneration.getCount();
+    }
+
+    @Override
+    public long getMockGenerationTotalMillis() {
+        return mockGeneration.getTotalNanos() / 1000000;
+    }
+
+    @Override
+    public long getMockGenerationMeanMicros() {
+        return mockGeneration.getMeanNanos() / 1000;
+    }
+
+    @Override
+    public long getMockGenerationMaxMicros() {
+        return mockGeneration.getPercentileNanos(100) / 1000;
+    }
+
+    @Override
+    public long getMockCacheHits() {
+        return mockCacheHits.sum();
+    }
+
+    @Override
+    public long getMockCacheMisses() {
+        return mockCacheMisses.sum();
+    }
+
+    @Override
+    public long getCompiledClassCount() {
+        return compilation.getCount();
+    }
+
+    @Override
+    public long getCompilationTotalMillis() {
+        return compilation.getTotalNanos() / 1000000;
+    }
+
+    @Override
+    public long getCaptureCount() {
+        return capture.getCount();
+    }
+
+    @Override
+    public long getCaptureMeanNanos() {
+        return capture.getMeanNanos();
+    }
+
+    @Override
+    public long getCaptureP99Nanos() {
+        return capture.getPercentileNanos(99);
+    }
+
+    @Override
+    public void reset() {
+        mockGeneration.reset();
+        mockCacheHits.reset();
+        mockCacheMisses.reset();
+        compilation.reset();
+        capture.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "BeanPathMagicMetrics{"
+               + "enabled=" + isEnabled()
+               + ", mocks=" + getMockCount()
+               + ", mockCacheHits=" + getMockCacheHits()
+               + ", mockCacheMisses=" + getMockCacheMisses()
+               + ", compiledClasses=" + getCompiledClassCount()
+               + ", captures=" + getCaptureCount()
+               + '}';
+    }
+}
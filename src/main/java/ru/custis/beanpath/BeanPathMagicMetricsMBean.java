@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+/**
+ * Management interface of {@link BeanPathMagicMetrics}
+ */
+public interface BeanPathMagicMetricsMBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * Number of mock classes generated by ByteBuddy
+     */
+    long getMockCount();
+
+    long getMockGenerationTotalMillis();
+
+    long getMockGenerationMeanMicros();
+
+    long getMockGenerationMaxMicros();
+
+    long getMockCacheHits();
+
+    long getMockCacheMisses();
+
+    /**
+     * Number of classes generated for compiled helpers
+     * ({@link BeanMapper}, {@link PathAccessor} etc.)
+     */
+    long getCompiledClassCount();
+
+    long getCompilationTotalMillis();
+
+    /**
+     * Number of paths captured with {@link BeanPathMagic#$(Object)}
+     */
+    long getCaptureCount();
+
+    /**
+     * Mean time from the first intercepted call of a call chain to its capture
+     */
+    long getCaptureMeanNanos();
+
+    long getCaptureP99Nanos();
+
+    void reset();
+}
@@ -0,0 +1,684 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.ClassFileVersion;
+import net.bytebuddy.NamingStrategy;
+import net.bytebuddy.asm.ClassVisitorWrapper;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.scaffold.InstrumentedType;
+import net.bytebuddy.implementation.Implementation;
+import net.bytebuddy.implementation.bytecode.ByteCodeAppender;
+import net.bytebuddy.jar.asm.ClassVisitor;
+import net.bytebuddy.jar.asm.ClassWriter;
+import net.bytebuddy.jar.asm.Label;
+import net.bytebuddy.jar.asm.MethodVisitor;
+import net.bytebuddy.jar.asm.Opcodes;
+import net.bytebuddy.jar.asm.Type;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static net.bytebuddy.dynamic.loading.ClassLoadingStrategy.Default.WRAPPER;
+import static net.bytebuddy.dynamic.scaffold.subclass.ConstructorStrategy.Default.DEFAULT_CONSTRUCTOR;
+import static net.bytebuddy.matcher.ElementMatchers.isAbstract;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+
+/**
+ * Generates subclasses of abstract "compiled" helpers (mappers, accessors etc.)
+ * whose abstract methods are implemented with hand written bytecode,
+ * so that generated code calls bean getters and setters directly, without reflection.
+ * <p/>
+ * Classes are generated in Java 6 class file format, that does not require stack map frames,
+ * so bodies can branch freely without computing frames. Operand stack size is computed by ASM.
+ * <p/>
+ * Generated code can refer to public classes only, e.g. package-private beans are rejected
+ * with {@link IllegalArgumentException} while generating. Classes are defined in a class loader
+ * of their own, whose parent sees both this library and all the referred classes, e.g. in the
+ * class loader of a web application, if beans come from it and this library from its parent.
+ */
+final class BytecodeMaker {
+    private BytecodeMaker() {}
+
+    /**
+     * Body of a generated method
+     */
+    public interface MethodBody {
+        void emit(Emitter emitter);
+    }
+
+    private static final ByteBuddy buddy = new ByteBuddy(ClassFileVersion.JAVA_V6);
+
+    private static final AtomicLong counter = new AtomicLong(0);
+
+    /**
+     * Generates a subclass of {@code base} implementing given abstract methods
+     * and creates its instance via no-arg constructor
+     *
+     * @param base   public abstract class with public or protected no-arg constructor
+     * @param hint   human readable part of the generated class name, e.g. name of the bean class
+     * @param bodies abstract method name to its body
+     * @throws IllegalArgumentException if the bodies refer to non-public classes,
+     *                                  or no class loader sees all of the referred classes
+     */
+    public static <T> T createInstance(Class<T> base, String hint, Map<String, MethodBody> bodies) {
+        checkNotNull(base, "Argument 'base' must not be null");
+        checkNotNull(bodies, "Argument 'bodies' must not be null");
+
+        final boolean timed = BeanPathMagicMetrics.enabled || BeanPathMagicEvents.hasListeners;
+        final long start = timed ? System.nanoTime() : 0;
+        final DynamicType.Loaded<? extends T> type = generateClass(base, hint, bodies);
+        final Class<? extends T> clazz = type.getLoaded();
+        if (timed) {
+            final long duration = System.nanoTime() - start;
+            if (BeanPathMagicMetrics.enabled) {
+                BeanPathMagicMetrics.compilation.record(duration);
+            }
+            if (BeanPathMagicEvents.hasListeners) {
+                BeanPathMagicEvents.fireClassCompiled(base, clazz.getName(), type.getBytes().length, duration);
+            }
+        }
+
+        try {
+            // default constructor inherits visibility of the base one,
+            // that is usually protected
+            final Constructor<? extends T> constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return base.cast(constructor.newInstance());
+        } catch (Exception x) {
+            throw new BeanPathMagicException("Failed to instantiate generated class [%s]", clazz.getName(), x);
+        }
+    }
+
+    /**
+     * Shortcut of {@link #createInstance(Class, String, Map)} for a single method
+     */
+    public static <T> T createInstance(Class<T> base, String hint, String methodName, MethodBody body) {
+        final Map<String, MethodBody> bodies = new LinkedHashMap<String, MethodBody>();
+        bodies.put(methodName, body);
+        return createInstance(base, hint, bodies);
+    }
+
+    private static <T> DynamicType.Loaded<? extends T> generateClass(Class<T> base, String hint, Map<String, MethodBody> bodies) {
+        DynamicType.Builder<T> builder =
+                buddy
+                        .withNamingStrategy(new CompiledNamingStrategy(base, hint))
+                        .subclass(base, DEFAULT_CONSTRUCTOR);
+
+        final Set<Class<?>> referenced = new LinkedHashSet<Class<?>>();
+        referenced.add(base);
+        for (Map.Entry<String, MethodBody> entry : bodies.entrySet()) {
+            builder = builder.method(named(entry.getKey()).and(isAbstract()))
+                    .intercept(new BodyImplementation(entry.getValue(), referenced));
+        }
+
+        // bodies are emitted while making the type, so the referred classes are known before loading
+        final DynamicType.Unloaded<T> unloaded = builder.classVisitor(ComputeMaxs.INSTANCE).make();
+        return unloaded.load(loaderSeeing(referenced), WRAPPER);
+    }
+
+    /**
+     * This library class loader, if it sees all the given classes (that is usual);
+     * otherwise a loader of one of them that sees all the others and this library
+     */
+    private static ClassLoader loaderSeeing(Set<Class<?>> classes) {
+        final ClassLoader own = BytecodeMaker.class.getClassLoader();
+        if (seesAll(own, classes)) {
+            return own;
+        }
+        for (Class<?> type : classes) {
+            final ClassLoader candidate = type.getClassLoader();
+            if (candidate != null && candidate != own && seesAll(candidate, classes)) {
+                return candidate;
+            }
+        }
+        throw new IllegalArgumentException("No class loader sees all of " + classes + " to generate code referring to them");
+    }
+
+    private static boolean seesAll(ClassLoader loader, Set<Class<?>> classes) {
+        for (Class<?> type : classes) {
+            try {
+                if (Class.forName(type.getName(), false, loader) != type) {
+                    return false;
+                }
+            } catch (ClassNotFoundException x) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lets ASM compute operand stack sizes, that {@link Emitter} does not track
+     */
+    private enum ComputeMaxs implements ClassVisitorWrapper {
+        INSTANCE;
+
+        @Override
+        public int mergeWriter(int flags) {
+            return flags | ClassWriter.COMPUTE_MAXS;
+        }
+
+        @Override
+        public int mergeReader(int flags) {
+            return flags;
+        }
+
+        @Override
+        public ClassVisitor wrap(ClassVisitor classVisitor) {
+            return classVisitor;
+        }
+    }
+
+    private static class CompiledNamingStrategy implements NamingStrategy {
+        private final Class<?> base;
+        private final String hint;
+
+        private CompiledNamingStrategy(Class<?> base, String hint) {
+            this.base = base;
+            this.hint = hint;
+        }
+
+        @Override
+        public String name(UnnamedType unnamedType) {
+            return BytecodeMaker.class.getPackage().getName()
+                   + ".BeanPathCompiled" + base.getSimpleName() + "_of_" + hint + "_$" + counter.getAndIncrement();
+        }
+    }
+
+    private static class BodyImplementation implements Implementation, ByteCodeAppender {
+        private final MethodBody body;
+        private final Set<Class<?>> referenced;
+
+        private BodyImplementation(MethodBody body, Set<Class<?>> referenced) {
+            this.body = body;
+            this.referenced = referenced;
+        }
+
+        @Override
+        public InstrumentedType prepare(InstrumentedType instrumentedType) {
+            return instrumentedType;
+        }
+
+        @Override
+        public ByteCodeAppender appender(Target implementationTarget) {
+            return this;
+        }
+
+        @Override
+        public Size apply(MethodVisitor methodVisitor, Context implementationContext, MethodDescription instrumentedMethod) {
+            final Emitter emitter = new Emitter(methodVisitor, instrumentedMethod.getStackSize(), referenced);
+            body.emit(emitter);
+            return new Size(emitter.getMaxStack(), emitter.getMaxLocals());
+        }
+    }
+
+    /**
+     * Thin typed facade over ASM {@link MethodVisitor}.
+     * <p/>
+     * Local variable {@code 0} is {@code this}, method arguments follow as usual.
+     * Operand stack size is not tracked, ASM computes it.
+     * <p/>
+     * Classes the code refers to are collected, and are checked to be public.
+     */
+    public static final class Emitter implements Opcodes {
+        private final MethodVisitor mv;
+        private final Set<Class<?>> referenced;
+        private int nextLocal;
+
+        private Emitter(MethodVisitor mv, int argumentsSize, Set<Class<?>> referenced) {
+            this.mv = mv;
+            this.nextLocal = argumentsSize;
+            this.referenced = referenced;
+        }
+
+        public MethodVisitor visitor() {
+            return mv;
+        }
+
+        int getMaxStack() {
+            return 0; // computed by ASM
+        }
+
+        /**
+         * Records a class the code accesses, i.e. casts to, instantiates or calls methods of
+         */
+        private String access(Class<?> type) {
+            for (Class<?> c = type; c != null; c = c.getDeclaringClass()) {
+                if (!Modifier.isPublic(c.getModifiers())) {
+                    throw new IllegalArgumentException("Generated code cannot access " + type.getName()
+                                                       + ", because " + c.getName() + " is not public");
+                }
+            }
+            see(type);
+            return Type.getInternalName(type);
+        }
+
+        /**
+         * Records a class the code mentions, e.g. in a method descriptor
+         */
+        private void see(Class<?> type) {
+            while (type.isArray()) {
+                type = type.getComponentType();
+            }
+            if (!type.isPrimitive()) {
+                referenced.add(type);
+            }
+        }
+
+        int getMaxLocals() {
+            return nextLocal;
+        }
+
+        /**
+         * Allocates a new local variable slot for a value of given type
+         */
+        public int newLocal(Class<?> type) {
+            final int local = nextLocal;
+            nextLocal += (type == long.class || type == double.class) ? 2 : 1;
+            return local;
+        }
+
+        public void load(Class<?> type, int local) {
+            mv.visitVarInsn(Type.getType(type).getOpcode(ILOAD), local);
+        }
+
+        public void store(Class<?> type, int local) {
+            mv.visitVarInsn(Type.getType(type).getOpcode(ISTORE), local);
+        }
+
+        public void loadThis() {
+            mv.visitVarInsn(ALOAD, 0);
+        }
+
+        /**
+         * Loads argument {@code index} (zero based, of an instance method),
+         * assuming all the preceding arguments take one slot
+         */
+        public void loadArgument(Class<?> type, int index) {
+            load(type, index + 1);
+        }
+
+        /**
+         * Loads an element of an array, both the array and the index are on stack
+         */
+        public void loadArrayElement(Class<?> componentType) {
+            mv.visitInsn(Type.getType(componentType).getOpcode(IALOAD));
+        }
+
+        /**
+         * Stores an element of an array, the array, the index and the value are on stack
+         */
+        public void storeArrayElement(Class<?> componentType) {
+            mv.visitInsn(Type.getType(componentType).getOpcode(IASTORE));
+        }
+
+        public void checkCast(Class<?> type) {
+            if (type != Object.class) {
+                mv.visitTypeInsn(CHECKCAST, access(type));
+            }
+        }
+
+        /**
+         * Casts an object on stack to {@code to}, if declared type of the value
+         * ({@code from}) is not already a subtype of it
+         */
+        public void checkCast(Class<?> from, Class<?> to) {
+            if (!from.isPrimitive() && !to.isAssignableFrom(from)) {
+                checkCast(to);
+            }
+        }
+
+        public void invoke(Class<?> owner, Method method) {
+            see(method.getReturnType());
+            for (Class<?> parameterType : method.getParameterTypes()) {
+                see(parameterType);
+            }
+            if (Modifier.isStatic(method.getModifiers())) {
+                mv.visitMethodInsn(INVOKESTATIC, access(method.getDeclaringClass()),
+                                   method.getName(), Type.getMethodDescriptor(method), method.getDeclaringClass().isInterface());
+            } else if (owner.isInterface()) {
+                mv.visitMethodInsn(INVOKEINTERFACE, access(owner),
+                                   method.getName(), Type.getMethodDescriptor(method), true);
+            } else {
+                mv.visitMethodInsn(INVOKEVIRTUAL, access(owner),
+                                   method.getName(), Type.getMethodDescriptor(method), false);
+            }
+        }
+
+        public void invokeStatic(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+            mv.visitMethodInsn(INVOKESTATIC, access(owner), name, descriptor(returnType, parameterTypes), false);
+        }
+
+        public void invokeVirtual(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+            if (owner.isInterface()) {
+                mv.visitMethodInsn(INVOKEINTERFACE, access(owner), name, descriptor(returnType, parameterTypes), true);
+            } else {
+                mv.visitMethodInsn(INVOKEVIRTUAL, access(owner), name, descriptor(returnType, parameterTypes), false);
+            }
+        }
+
+        public void newInstance(Class<?> type) {
+            final String internalName = access(type);
+            mv.visitTypeInsn(NEW, internalName);
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKESPECIAL, internalName, "<init>", "()V", false);
+        }
+
+        public void dup() {
+            mv.visitInsn(DUP);
+        }
+
+        public void pop(Class<?> type) {
+            if (type == void.class) {
+                return;
+            }
+            mv.visitInsn((type == long.class || type == double.class) ? POP2 : POP);
+        }
+
+        public void pushNull() {
+            mv.visitInsn(ACONST_NULL);
+        }
+
+        public void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                mv.visitInsn(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                mv.visitIntInsn(BIPUSH, value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                mv.visitIntInsn(SIPUSH, value);
+            } else {
+                mv.visitLdcInsn(value);
+            }
+        }
+
+        /**
+         * Pushes default value ({@code 0}, {@code false} or {@code null}) of given type
+         */
+        public void pushDefault(Class<?> type) {
+            if (type == long.class) {
+                mv.visitInsn(LCONST_0);
+            } else if (type == float.class) {
+                mv.visitInsn(FCONST_0);
+            } else if (type == double.class) {
+                mv.visitInsn(DCONST_0);
+            } else if (type.isPrimitive()) {
+                mv.visitInsn(ICONST_0);
+            } else {
+                mv.visitInsn(ACONST_NULL);
+            }
+        }
+
+        public void label(Label label) {
+            mv.visitLabel(label);
+        }
+
+        public void jump(Label label) {
+            mv.visitJumpInsn(GOTO, label);
+        }
+
+        public void ifNull(Label label) {
+            mv.visitJumpInsn(IFNULL, label);
+        }
+
+        public void ifNonNull(Label label) {
+            mv.visitJumpInsn(IFNONNULL, label);
+        }
+
+        /**
+         * Jumps if {@code boolean} value on stack is {@code true}
+         */
+        public void ifTrue(Label label) {
+            mv.visitJumpInsn(IFNE, label);
+        }
+
+        /**
+         * Jumps if {@code boolean} value on stack is {@code false}
+         */
+        public void ifFalse(Label label) {
+            mv.visitJumpInsn(IFEQ, label);
+        }
+
+        /**
+         * Jumps if two primitive values of given type on stack are not equal;
+         * floating point values are compared like their wrappers do,
+         * i.e. {@code NaN} is equal to itself and {@code -0.0} is not equal to {@code 0.0}
+         */
+        public void ifNotEqual(Class<?> type, Label label) {
+            if (type == long.class) {
+                mv.visitInsn(LCMP);
+                mv.visitJumpInsn(IFNE, label);
+            } else if (type == float.class) {
+                invokeStatic(Float.class, "compare", int.class, float.class, float.class);
+                mv.visitJumpInsn(IFNE, label);
+            } else if (type == double.class) {
+                invokeStatic(Double.class, "compare", int.class, double.class, double.class);
+                mv.visitJumpInsn(IFNE, label);
+            } else {
+                mv.visitJumpInsn(IF_ICMPNE, label);
+            }
+        }
+
+        public void returnValue(Class<?> type) {
+            mv.visitInsn((type == void.class) ? RETURN : Type.getType(type).getOpcode(IRETURN));
+        }
+
+        public void box(Class<?> primitive) {
+            final Class<?> wrapper = Primitives.getWrapperClass(primitive);
+            invokeStatic(wrapper, "valueOf", wrapper, primitive);
+        }
+
+        /**
+         * Unboxes a non-null wrapper on stack, casting it to the wrapper type beforehand
+         */
+        public void unbox(Class<?> primitive) {
+            final Class<?> wrapper = Primitives.getWrapperClass(primitive);
+            checkCast(wrapper);
+            invokeVirtual(wrapper, primitive.getName() + "Value", primitive);
+        }
+
+        /**
+         * Widens a primitive value on stack from {@code from} to {@code to},
+         * e.g. {@code int} to {@code long}. Both must be numeric primitives
+         * ({@code char} and integer types smaller than {@code int} are treated as {@code int}).
+         */
+        public void widen(Class<?> from, Class<?> to) {
+            final Class<?> f = isIntLike(from) ? int.class : from;
+            final Class<?> t = isIntLike(to) ? int.class : to;
+            if (f == t) {
+                return;
+            }
+            if (f == int.class && t == long.class) {
+                mv.visitInsn(I2L);
+            } else if (f == int.class && t == float.class) {
+                mv.visitInsn(I2F);
+            } else if (f == int.class && t == double.class) {
+                mv.visitInsn(I2D);
+            } else if (f == long.class && t == float.class) {
+                mv.visitInsn(L2F);
+            } else if (f == long.class && t == double.class) {
+                mv.visitInsn(L2D);
+            } else if (f == float.class && t == double.class) {
+                mv.visitInsn(F2D);
+            } else {
+                throw new IllegalArgumentException("Cannot widen " + from + " to " + to);
+            }
+        }
+
+        private static boolean isIntLike(Class<?> type) {
+            return type == int.class || type == short.class || type == byte.class || type == char.class;
+        }
+
+        /**
+         * Converts a value on stack as approved by {@link PropertyMethods#isConvertible(Class, Class)}.
+         * If unboxing is required and the value is {@code null}, the value is popped
+         * and control is transferred to {@code ifNull}; or, if {@code ifNull} itself is {@code null},
+         * the value is assumed to be not {@code null}.
+         */
+        public void convert(Class<?> from, Class<?> to, @Nullable Label ifNull) {
+            if (from == to) {
+                return;
+            }
+            if (from.isPrimitive()) {
+                box(from);
+            } else if (to.isPrimitive() && ifNull == null) {
+                unbox(to);
+            } else if (to.isPrimitive()) {
+                final Label nonNull = new Label();
+                dup();
+                ifNonNull(nonNull);
+                pop(from);
+                jump(ifNull);
+                label(nonNull);
+                unbox(to);
+            } else {
+                checkCast(from, to);
+            }
+        }
+
+        /**
+         * Invokes the chain of getters on a bean on stack. After the chain is done
+         * the value of the last getter (of its declared return type) is on stack.
+         * If any intermediate value is {@code null}, the stack is cleared
+         * and control is transferred to {@code ifUnreachable}.
+         *
+         * @param path    path the getters are resolved for, with {@code getters.size()} elements after root
+         * @param getters see {@link PropertyMethods#getters(BeanPath)}
+         * @return type of the value left on stack
+         */
+        public Class<?> readChain(BeanPath<?> path, List<Method> getters, Label ifUnreachable) {
+            final BeanPath<?>[] elements = elementsOf(path);
+            Class<?> current = path.getRoot().getType();
+            for (int i = 0; i < getters.size(); i++) {
+                final Method getter = getters.get(i);
+                invoke(current, getter);
+                final Class<?> returnType = getter.getReturnType();
+                if (returnType.isPrimitive()) {
+                    current = returnType;
+                } else {
+                    current = elements[i + 1].getType();
+                    checkCast(returnType, current);
+                }
+                if (i < getters.size() - 1) {
+                    final Label nonNull = new Label();
+                    dup();
+                    ifNonNull(nonNull);
+                    pop(current);
+                    jump(ifUnreachable);
+                    label(nonNull);
+                }
+            }
+            return current;
+        }
+
+        /**
+         * Same as {@link #readChain(BeanPath, List, Label)} but also
+         * leaves {@code null} for a reference leaf (or default value for a primitive one)
+         * on stack, instead of jumping, if the path is unreachable
+         */
+        public Class<?> readChainOrDefault(BeanPath<?> path, List<Method> getters) {
+            final Label unreachable = new Label();
+            final Label done = new Label();
+            final Class<?> type = readChain(path, getters, unreachable);
+            jump(done);
+            label(unreachable);
+            pushDefault(type);
+            label(done);
+            return type;
+        }
+
+        /**
+         * Navigates from a bean on stack to the owner of the last element of {@code path}
+         * and leaves the owner on stack. Missing (i.e. {@code null}) intermediate beans
+         * are created with their no-arg constructors and set to their owners.
+         *
+         * @param getters see {@link PropertyMethods#getters(BeanPath)}
+         * @param setters see {@link PropertyMethods#setters(BeanPath, List)}
+         * @return type of the owner left on stack
+         */
+        public Class<?> navigateForWrite(BeanPath<?> path, List<Method> getters, List<Method> setters) {
+            final BeanPath<?>[] elements = elementsOf(path);
+            Class<?> current = path.getRoot().getType();
+            if (getters.size() < 2) {
+                return current;
+            }
+
+            final int parentLocal = newLocal(Object.class);
+            final int childLocal = newLocal(Object.class);
+            for (int i = 0; i < getters.size() - 1; i++) {
+                final Method getter = getters.get(i);
+                final Method setter = setters.get(i);
+                final Class<?> childType = elements[i + 1].getType();
+                final Label present = new Label();
+
+                store(current, parentLocal);
+                load(current, parentLocal);
+                invoke(current, getter);
+                checkCast(getter.getReturnType(), childType);
+                dup();
+                ifNonNull(present);
+                pop(childType);
+                newInstance(childType);
+                store(childType, childLocal);
+                load(current, parentLocal);
+                load(childType, childLocal);
+                invoke(current, setter);
+                pop(setter.getReturnType());
+                load(childType, childLocal);
+                label(present);
+
+                current = childType;
+            }
+            return current;
+        }
+
+        private static BeanPath<?>[] elementsOf(BeanPath<?> path) {
+            int size = 0;
+            for (BeanPath<?> p = path; p != null; p = p.getParent()) {
+                size++;
+            }
+            final BeanPath<?>[] elements = new BeanPath<?>[size];
+            for (BeanPath<?> p = path; p != null; p = p.getParent()) {
+                elements[--size] = p;
+            }
+            return elements;
+        }
+
+        private String descriptor(Class<?> returnType, Class<?>... parameterTypes) {
+            see(returnType);
+            for (Class<?> parameterType : parameterTypes) {
+                see(parameterType);
+            }
+            final Type[] types = new Type[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                types[i] = Type.getType(parameterTypes[i]);
+            }
+            return Type.getMethodDescriptor(Type.getType(returnType), types);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import com.google.common.base.Function;
+import com.google.common.io.Closeables;
+import net.bytebuddy.jar.asm.ClassReader;
+import net.bytebuddy.jar.asm.ClassVisitor;
+import net.bytebuddy.jar.asm.Handle;
+import net.bytebuddy.jar.asm.Label;
+import net.bytebuddy.jar.asm.MethodVisitor;
+import net.bytebuddy.jar.asm.Opcodes;
+import net.bytebuddy.jar.asm.Type;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Derives paths from functions by static analysis of their bytecode, without calling them.
+ * <p/>
+ * Body of {@code apply()} must be a plain getter chain over its argument, e.g.
+ * <pre><code>
+ *     new Function&lt;Person, String&gt;() {
+ *         public String apply(Person person) {
+ *             return person.getDocument().getNumber();
+ *         }
+ *     }
+ * </code></pre>
+ * that compiles to loading of the argument, no-arg calls, optional casts and boxing, and return.
+ * Every call must be a property of a bean: a public {@code getX()} or boolean {@code isX()} method,
+ * or any other method a mock would intercept, e.g. {@code x()} of a non-final class;
+ * so that e.g. {@code person.getName().length()} or {@code String.valueOf(person.getAge())} are rejected.
+ */
+final class FunctionPaths {
+    private FunctionPaths() {}
+
+    private static final Map<Class<?>, BeanPath<?>> cache = new ConcurrentHashMap<Class<?>, BeanPath<?>>();
+
+    public static @Nonnull BeanPath<?> pathOf(@Nonnull Function<?, ?> function) {
+        final Class<?> functionClass = function.getClass();
+        BeanPath<?> path = cache.get(functionClass);
+        if (path == null) {
+            path = analyze(functionClass);
+            cache.put(functionClass, path); // its ok if two threads analyze it twice concurrently
+        }
+        return path;
+    }
+
+    private static BeanPath<?> analyze(Class<?> functionClass) {
+        final ChainRecorder recorder = new ChainRecorder();
+        readClass(functionClass).accept(new ApplyFinder(recorder), ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        if (recorder.argumentType == null) {
+            throw new IllegalArgumentException("No apply() method found in " + functionClass.getName());
+        }
+        if (!recorder.isComplete()) {
+            throw new IllegalArgumentException("Function " + functionClass.getName()
+                                               + " is not a plain getter chain over its argument");
+        }
+
+        final ClassLoader loader = functionClass.getClassLoader();
+        BeanPathBuilder<?> builder = BeanPathBuilder.of(load(recorder.argumentType, loader));
+        for (Call call : recorder.calls) {
+            if (!isProperty(load(call.owner, loader), call.name)) {
+                throw new IllegalArgumentException("Function " + functionClass.getName() + " calls "
+                                                   + call.owner.getClassName() + "." + call.name
+                                                   + "(), that is not a property of a bean");
+            }
+            builder = builder.get(call.name);
+            if (call.castTo != null) {
+                builder = builder.narrow(load(call.castTo, loader));
+            }
+        }
+        return builder.toPath();
+    }
+
+    private static boolean isProperty(Class<?> owner, String name) {
+        final Method method;
+        try {
+            method = owner.getMethod(name);
+        } catch (NoSuchMethodException x) {
+            return false;
+        }
+        if (Modifier.isStatic(method.getModifiers()) || method.getDeclaringClass() == Object.class) {
+            return false;
+        }
+        // the same as in BeanPathMagic.Mocker.valueOf()
+        final boolean mockable = !Modifier.isFinal(owner.getModifiers());
+        if (isGetterName(name, method.getReturnType())) {
+            // final beans are fine for BeanPathBuilder, but not final JDK types, e.g. String
+            return mockable || owner.getClassLoader() != null;
+        }
+        return mockable && !Modifier.isFinal(method.getModifiers()); // intercepted by a mock
+    }
+
+    private static boolean isGetterName(String name, Class<?> returnType) {
+        if (name.length() > 3 && name.startsWith("get")) {
+            return Character.isUpperCase(name.charAt(3));
+        } else if (name.length() > 2 && name.startsWith("is")) {
+            return Character.isUpperCase(name.charAt(2)) && (returnType == boolean.class || returnType == Boolean.class);
+        }
+        return false;
+    }
+
+    private static ClassReader readClass(Class<?> clazz) {
+        final String resource = clazz.getName().replace('.', '/') + ".class";
+        final ClassLoader loader = clazz.getClassLoader();
+        final InputStream in = (loader != null) ? loader.getResourceAsStream(resource)
+                                                : ClassLoader.getSystemResourceAsStream(resource);
+        if (in == null) {
+            // e.g. lambdas and other runtime generated classes
+            throw new IllegalArgumentException("Bytecode of " + clazz.getName() + " is not available");
+        }
+        try {
+            return new ClassReader(in);
+        } catch (IOException x) {
+            throw new IllegalArgumentException("Failed to read bytecode of " + clazz.getName(), x);
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    private static Class<?> load(Type type, ClassLoader loader) {
+        try {
+            return Class.forName(type.getClassName(), false, loader);
+        } catch (ClassNotFoundException x) {
+            throw new IllegalArgumentException("Failed to load " + type.getClassName(), x);
+        }
+    }
+
+    private static final class Call {
+        private final Type owner;
+        private final String name;
+        private final Type returnType;
+        private Type castTo;
+
+        private Call(Type owner, String name, Type returnType) {
+            this.owner = owner;
+            this.name = name;
+            this.returnType = returnType;
+        }
+    }
+
+    /**
+     * Picks the non-bridge single-argument {@code apply()}
+     */
+    private static final class ApplyFinder extends ClassVisitor {
+        private final ChainRecorder recorder;
+
+        private ApplyFinder(ChainRecorder recorder) {
+            super(Opcodes.ASM5);
+            this.recorder = recorder;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            if (name.equals("apply")
+                && (access & (Opcodes.ACC_BRIDGE | Opcodes.ACC_STATIC | Opcodes.ACC_ABSTRACT)) == 0
+                && Type.getArgumentTypes(desc).length == 1) {
+
+                recorder.argumentType = Type.getArgumentTypes(desc)[0];
+                return recorder;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Accepts {@code ALOAD 1, (INVOKE* no-arg [CHECKCAST])+, [INVOKESTATIC valueOf], ARETURN}
+     * and records the calls; anything else makes the chain invalid.
+     * {@code valueOf} is accepted only as autoboxing of the primitive the last call returns.
+     */
+    private static final class ChainRecorder extends MethodVisitor {
+        private static final int START = 0, LOADED = 1, CALLED = 2, BOXED = 3, RETURNED = 4, INVALID = -1;
+
+        private Type argumentType;
+        private final List<Call> calls = new ArrayList<Call>();
+        private int state = START;
+
+        private ChainRecorder() {
+            super(Opcodes.ASM5);
+        }
+
+        public boolean isComplete() {
+            return state == RETURNED && !calls.isEmpty();
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            state = (state == START && opcode == Opcodes.ALOAD && var == 1) ? LOADED : INVALID;
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+            if ((state == LOADED || state == CALLED)
+                && (opcode == Opcodes.INVOKEVIRTUAL || opcode == Opcodes.INVOKEINTERFACE)
+                && Type.getArgumentTypes(desc).length == 0
+                && Type.getReturnType(desc) != Type.VOID_TYPE) {
+
+                calls.add(new Call(Type.getObjectType(owner), name, Type.getReturnType(desc)));
+                state = CALLED;
+            } else if (state == CALLED && opcode == Opcodes.INVOKESTATIC && name.equals("valueOf")
+                       && isBoxing(calls.get(calls.size() - 1).returnType, owner, desc)) {
+                state = BOXED; // autoboxing of a primitive getter
+            } else {
+                state = INVALID;
+            }
+        }
+
+        private static boolean isBoxing(Type primitive, String owner, String desc) {
+            final String wrapper;
+            switch (primitive.getSort()) {
+                case Type.BOOLEAN:
+                    wrapper = "java/lang/Boolean";
+                    break;
+                case Type.CHAR:
+                    wrapper = "java/lang/Character";
+                    break;
+                case Type.BYTE:
+                    wrapper = "java/lang/Byte";
+                    break;
+                case Type.SHORT:
+                    wrapper = "java/lang/Short";
+                    break;
+                case Type.INT:
+                    wrapper = "java/lang/Integer";
+                    break;
+                case Type.FLOAT:
+                    wrapper = "java/lang/Float";
+                    break;
+                case Type.LONG:
+                    wrapper = "java/lang/Long";
+                    break;
+                case Type.DOUBLE:
+                    wrapper = "java/lang/Double";
+                    break;
+                default:
+                    return false;
+            }
+            return owner.equals(wrapper) && desc.equals("(" + primitive.getDescriptor() + ")L" + wrapper + ";");
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            if (state == CALLED && opcode == Opcodes.CHECKCAST) {
+                calls.get(calls.size() - 1).castTo = Type.getObjectType(type);
+            } else {
+                state = INVALID;
+            }
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            state = ((state == CALLED || state == BOXED) && opcode == Opcodes.ARETURN) ? RETURNED : INVALID;
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            state = INVALID;
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+            state = INVALID;
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+            state = INVALID;
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            state = INVALID;
+        }
+
+        @Override
+        public void visitLdcInsn(Object cst) {
+            state = INVALID;
+        }
+
+        @Override
+        public void visitIincInsn(int var, int increment) {
+            state = INVALID;
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+            state = INVALID;
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+            state = INVALID;
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String desc, int dims) {
+            state = INVALID;
+        }
+
+        @Override
+        public void visitTryCatchBlock(Label start, Label end,
+                                       Label handler, String type) {
+            state = INVALID;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations (in nanoseconds) with power-of-two buckets,
+ * i.e. a value falls into the bucket of its highest set bit.
+ * <p/>
+ * Like {@link StripedCounter}, it is striped: each thread updates its own region,
+ * so concurrent recording does not contend. Percentiles are estimated
+ * with bucket precision, i.e. within factor of two.
+ */
+final class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    // region of a stripe: BUCKETS bucket counters followed by total count and total sum
+    private static final int COUNT = BUCKETS;
+    private static final int SUM = BUCKETS + 1;
+    private static final int REGION = BUCKETS + 2;
+
+    private final AtomicLongArray cells = new AtomicLongArray(StripedCounter.STRIPES * REGION);
+
+    public void record(long nanos) {
+        final long value = Math.max(0, nanos);
+        final int region = StripedCounter.stripe() * REGION;
+        cells.getAndIncrement(region + bucket(value));
+        cells.getAndIncrement(region + COUNT);
+        cells.getAndAdd(region + SUM, value);
+    }
+
+    public long getCount() {
+        return sumOf(COUNT);
+    }
+
+    public long getTotalNanos() {
+        return sumOf(SUM);
+    }
+
+    public long getMeanNanos() {
+        final long count = getCount();
+        return (count == 0) ? 0 : getTotalNanos() / count;
+    }
+
+    /**
+     * Upper bound of the bucket the given percentile (from 0 to 100) falls into;
+     * or zero if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        final long[] buckets = new long[BUCKETS];
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            buckets[bucket] = sumOf(bucket);
+            count += buckets[bucket];
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        final long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100.0);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= rank && buckets[bucket] > 0) {
+                return upperBound(bucket);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    public void reset() {
+        for (int i = 0; i < cells.length(); i++) {
+            cells.set(i, 0);
+        }
+    }
+
+    private long sumOf(int offset) {
+        long sum = 0;
+        for (int stripe = 0; stripe < StripedCounter.STRIPES; stripe++) {
+            sum += cells.get(stripe * REGION + offset);
+        }
+        return sum;
+    }
+
+    private static int bucket(long value) {
+        return (value == 0) ? 0 : 64 - Long.numberOfLeadingZeros(value) - 1;
+    }
+
+    private static long upperBound(int bucket) {
+        return (bucket >= 62) ? Long.MAX_VALUE : (2L << bucket) - 1;
+    }
+}
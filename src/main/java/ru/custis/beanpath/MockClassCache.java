@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import net.bytebuddy.ByteBuddy;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Persistent cache of generated mock classes, so that mocks are not generated again
+ * on every start of the JVM. Disabled unless a directory is given,
+ * with {@code -Dru.custis.beanpath.mockCache=<directory>}
+ * or {@link BeanPathMagic#setMockCacheDirectory(File)}.
+ * <p/>
+ * Mock classes are keyed by a fingerprint of the bytecode of the mocked type and all its supertypes,
+ * of the mock generator, and of the Java version; so a changed type never gets a stale mock.
+ * Classes of stale fingerprints are not removed from the directory.
+ * <p/>
+ * Cache is best effort: any failure to read or to write it results in generating the mock as usual.
+ */
+final class MockClassCache {
+    private MockClassCache() {}
+
+    private static volatile File directory = directoryOf(System.getProperty("ru.custis.beanpath.mockCache"));
+
+    private static File directoryOf(String property) {
+        return (property == null || property.isEmpty()) ? null : new File(property);
+    }
+
+    public static @Nullable File getDirectory() {
+        return directory;
+    }
+
+    public static void setDirectory(@Nullable File directory) {
+        MockClassCache.directory = directory;
+    }
+
+    /**
+     * Fingerprint of the mock class of {@code type}, that is a part of its name;
+     * or {@code null} if the cache is disabled, or bytecode of the type is not available
+     * (e.g. the type is generated itself)
+     */
+    public static @Nullable String fingerprintOf(@Nonnull Class<?> type) {
+        if (directory == null) {
+            return null;
+        }
+        final Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putUnencodedChars(generatorFingerprint());
+        for (Class<?> clazz : hierarchyOf(type)) {
+            if (clazz.getClassLoader() == null) { // JDK classes, covered by the Java version
+                continue;
+            }
+            final byte[] bytes = bytecodeOf(clazz);
+            if (bytes == null) {
+                return null;
+            }
+            hasher.putUnencodedChars(clazz.getName());
+            hasher.putBytes(bytes);
+        }
+        return hasher.hash().toString().substring(0, 16);
+    }
+
+    /**
+     * Mock class named {@code className} loaded from the cache; or {@code null} if there is none
+     */
+    public static @Nullable Class<?> load(@Nonnull String className, @Nonnull ClassLoader parent) {
+        final File file = fileOf(className);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        try {
+            return new CachedClassLoader(parent).define(className, Files.toByteArray(file));
+        } catch (IOException ignored) {
+            return null;
+        } catch (LinkageError ignored) { // corrupted or incompatible, will be overwritten
+            return null;
+        }
+    }
+
+    /**
+     * Stores bytecode of the mock class named {@code className}.
+     * File is written under a temporary name and then renamed,
+     * so that concurrently starting JVMs never read a partially written class.
+     */
+    public static void store(@Nonnull String className, @Nonnull byte[] bytecode) {
+        final File file = fileOf(className);
+        if (file == null) {
+            return;
+        }
+        try {
+            final File dir = file.getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                return;
+            }
+            final File temp = File.createTempFile(className, ".tmp", dir);
+            Files.write(bytecode, temp);
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+                temp.delete();
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static File fileOf(String className) {
+        final File dir = directory;
+        return (dir != null) ? new File(dir, className + ".class") : null;
+    }
+
+    private static Set<Class<?>> hierarchyOf(Class<?> type) {
+        final Set<Class<?>> hierarchy = new LinkedHashSet<Class<?>>();
+        collectHierarchy(type, hierarchy);
+        return hierarchy;
+    }
+
+    private static void collectHierarchy(Class<?> type, Set<Class<?>> hierarchy) {
+        if (type == null || !hierarchy.add(type)) {
+            return;
+        }
+        collectHierarchy(type.getSuperclass(), hierarchy);
+        for (Class<?> iface : type.getInterfaces()) {
+            collectHierarchy(iface, hierarchy);
+        }
+    }
+
+    private static byte[] bytecodeOf(Class<?> clazz) {
+        final InputStream in = clazz.getClassLoader().getResourceAsStream(clazz.getName().replace('.', '/') + ".class");
+        if (in == null) {
+            return null;
+        }
+        try {
+            return ByteStreams.toByteArray(in);
+        } catch (IOException ignored) {
+            return null;
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    private static String generatorFingerprint() {
+        String fingerprint = cachedGeneratorFingerprint;
+        if (fingerprint == null) {
+            final Hasher hasher = Hashing.sha1().newHasher();
+            hasher.putUnencodedChars(String.valueOf(System.getProperty("java.specification.version")));
+            hasher.putUnencodedChars(String.valueOf(ByteBuddy.class.getPackage().getImplementationVersion()));
+            for (Class<?> generator : generatorClasses()) {
+                final byte[] bytes = bytecodeOf(generator);
+                if (bytes != null) {
+                    hasher.putUnencodedChars(generator.getName());
+                    hasher.putBytes(bytes);
+                }
+            }
+            cachedGeneratorFingerprint = fingerprint = hasher.hash().toString();
+        }
+        return fingerprint;
+    }
+
+    /**
+     * The mock generator, with all its nested classes, as generated code links against some of them;
+     * ordered by name
+     */
+    static List<Class<?>> generatorClasses() {
+        final List<Class<?>> classes = new ArrayList<Class<?>>();
+        collectNested(MockMaker.class, classes);
+        classes.add(ByteBuddy.class);
+        Collections.sort(classes, new Comparator<Class<?>>() {
+            @Override
+            public int compare(Class<?> a, Class<?> b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        return classes;
+    }
+
+    private static void collectNested(Class<?> type, List<Class<?>> classes) {
+        classes.add(type);
+        for (Class<?> nested : type.getDeclaredClasses()) {
+            collectNested(nested, classes);
+        }
+    }
+
+    // its ok if two threads compute it twice concurrently
+    private static volatile String cachedGeneratorFingerprint = null;
+
+    private static final class CachedClassLoader extends ClassLoader {
+        private CachedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String className, byte[] bytecode) {
+            return defineClass(className, bytecode, 0, bytecode.length);
+        }
+    }
+}
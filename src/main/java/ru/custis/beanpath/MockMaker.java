@@ -17,20 +17,25 @@
 package ru.custis.beanpath;
 
 import net.bytebuddy.ByteBuddy;
-import net.bytebuddy.NamingStrategy;
+import net.bytebuddy.dynamic.DynamicType;
 import net.bytebuddy.implementation.bind.annotation.AllArguments;
 import net.bytebuddy.implementation.bind.annotation.Argument;
 import net.bytebuddy.implementation.bind.annotation.Origin;
 import net.bytebuddy.implementation.bind.annotation.RuntimeType;
 import net.bytebuddy.implementation.bind.annotation.This;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static net.bytebuddy.dynamic.loading.ClassLoadingStrategy.Default.WRAPPER;
 import static net.bytebuddy.dynamic.scaffold.subclass.ConstructorStrategy.Default.NO_CONSTRUCTORS;
 import static net.bytebuddy.implementation.MethodDelegation.to;
+import static net.bytebuddy.implementation.MethodDelegation.toInstanceField;
 import static net.bytebuddy.matcher.ElementMatchers.isBridge;
 import static net.bytebuddy.matcher.ElementMatchers.named;
 import static net.bytebuddy.matcher.ElementMatchers.not;
@@ -44,25 +49,136 @@ final class MockMaker {
         Object invoke(Object proxy, Method method, Object[] args) throws Throwable;
     }
 
+    /**
+     * Creates an instance of the mock class of {@code type}, that delegates every call to {@code handler}.
+     * <p/>
+     * Mock class is generated once per type, and then shared by all its mocks,
+     * each mock having its own handler.
+     */
     public static <T> T createMock(Class<T> type, InvocationCallback handler) throws InstantiationException {
         checkNotNull(type, "Argument 'type' must not be null");
         checkNotNull(handler, "Argument 'handler' must not be null");
 
-        final Class<? extends T> mockClass = generateClass(type, handler);
-        final Object mock = instantiateClass(mockClass);
-
+        final MockClass mockClass = mockClassOf(type);
+        final Object mock = instantiateClass(mockClass.clazz);
+        try {
+            mockClass.callbackField.set(mock, new InvocationCallbackAdapter(handler));
+        } catch (IllegalAccessException x) {
+            throw new BeanPathMagicException("Failed to bind handler to mock of [%s]", type.getName(), x);
+        }
         return type.cast(mock);
     }
 
-    private static final ByteBuddy buddy = new ByteBuddy().withNamingStrategy(new MockNamingStrategy());
+    private static final String CALLBACK_FIELD = "$$beanPathCallback";
+
+    private static final Map<Class<?>, MockClass> classCache = new ConcurrentHashMap<Class<?>, MockClass>();
+
+    // per type, so that different types may be mocked in parallel
+    private static final ConcurrentMap<Class<?>, Object> classCreationGuards = new ConcurrentHashMap<Class<?>, Object>();
+
+    private static final class MockClass {
+        private final Class<?> clazz;
+        private final Field callbackField;
+
+        private MockClass(Class<?> clazz, Field callbackField) {
+            this.clazz = clazz;
+            this.callbackField = callbackField;
+        }
+    }
+
+    private static MockClass mockClassOf(Class<?> type) {
+        MockClass mockClass = classCache.get(type);
+        if (mockClass == null) {
+            synchronized (guardOf(type)) { // we do not want to generate a class twice
+                mockClass = classCache.get(type);
+                if (mockClass == null) {
+                    mockClass = generateMockClass(type);
+                    classCache.put(type, mockClass);
+                }
+            }
+        }
+        return mockClass;
+    }
+
+    private static Object guardOf(Class<?> type) {
+        final Object guard = new Object();
+        final Object existing = classCreationGuards.putIfAbsent(type, guard);
+        return (existing != null) ? existing : guard;
+    }
+
+    private static MockClass generateMockClass(Class<?> type) {
+        final String fingerprint = MockClassCache.fingerprintOf(type);
+        final String className = mockClassName(type, fingerprint);
+        if (fingerprint != null) {
+            final Class<?> cached = MockClassCache.load(className, MockMaker.class.getClassLoader());
+            if (cached != null && type.isAssignableFrom(cached)) {
+                final Field callbackField = callbackFieldOf(cached);
+                if (callbackField != null) {
+                    return new MockClass(cached, callbackField);
+                }
+            }
+        }
+
+        final boolean timed = BeanPathMagicMetrics.enabled || BeanPathMagicEvents.hasListeners;
+        final long start = timed ? System.nanoTime() : 0;
+
+        final DynamicType.Unloaded<?> unloaded = generateClass(type, className);
+        final Class<?> clazz = unloaded.load(MockMaker.class.getClassLoader(), WRAPPER).getLoaded();
+        final Field callbackField = callbackFieldOf(clazz);
+        if (callbackField == null) {
+            throw new BeanPathMagicException("Generated class [%s] has no handler field", clazz.getName());
+        }
 
-    private static <T> Class<? extends T> generateClass(Class<T> clazzToMock, InvocationCallback handler) {
+        if (timed) {
+            final long duration = System.nanoTime() - start;
+            if (BeanPathMagicMetrics.enabled) {
+                BeanPathMagicMetrics.mockGeneration.record(duration);
+            }
+            if (BeanPathMagicEvents.hasListeners) {
+                BeanPathMagicEvents.fireMockGenerated(type, clazz.getName(), unloaded.getBytes().length, duration);
+            }
+        }
+
+        // a class that needs initialization after loading, or auxiliary classes, cannot be just reloaded
+        if (fingerprint != null && !unloaded.hasAliveLoadedTypeInitializers() && unloaded.getRawAuxiliaryTypes().isEmpty()) {
+            MockClassCache.store(className, unloaded.getBytes());
+        }
+
+        return new MockClass(clazz, callbackField);
+    }
+
+    private static Field callbackFieldOf(Class<?> clazz) {
+        try {
+            final Field callbackField = clazz.getDeclaredField(CALLBACK_FIELD);
+            callbackField.setAccessible(true);
+            return callbackField;
+        } catch (NoSuchFieldException x) {
+            return null;
+        }
+    }
+
+    private static final AtomicLong counter = new AtomicLong(0);
+
+    /**
+     * Name of the mock class of {@code type}, that is deterministic if {@code fingerprint} is given,
+     * see {@link MockClassCache#fingerprintOf(Class)}; or unique otherwise
+     */
+    static String mockClassName(Class<?> type, String fingerprint) {
+        final String suffix = (fingerprint != null) ? fingerprint : String.valueOf(counter.getAndIncrement());
+        return MockMaker.class.getPackage().getName() + ".BeanPathMagicMock_of_" + type.getName() + "_$" + suffix;
+    }
+
+    private static final ByteBuddy buddy = new ByteBuddy();
+
+    private static <T> DynamicType.Unloaded<? extends T> generateClass(Class<T> clazzToMock, String className) {
         return
                 buddy
                         .subclass(clazzToMock, NO_CONSTRUCTORS)
+                        .name(className)
 
                         .method(not(isBridge()))
-                        .intercept(to(new InvocationCallbackAdapter(handler)))
+                        .intercept(toInstanceField(InvocationCallbackAdapter.class, CALLBACK_FIELD)
+                                           .filter(named("defaultHandler")))
 
                         .method(named("equals").and(returns(boolean.class)).and(takesArguments(Object.class)))
                         .intercept(to(ObjectMethodsHandler.class))
@@ -74,8 +190,6 @@ final class MockMaker {
                         .intercept(to(ObjectMethodsHandler.class))
 
                         .make()
-                        .load(MockMaker.class.getClassLoader(), WRAPPER)
-                        .getLoaded()
         ;
     }
 
@@ -83,16 +197,6 @@ final class MockMaker {
         return StolenUnsafe.getUnsafe().allocateInstance(mockClass);
     }
 
-    private static class MockNamingStrategy implements NamingStrategy {
-        private final AtomicLong counter = new AtomicLong(0);
-
-        @Override
-        public String name(UnnamedType unnamedType) {
-            String prefix = unnamedType.getSuperClass().getTypeName();
-            return getClass().getPackage().getName() + ".BeanPathMagicMock_of_" + prefix + "_$" + counter.getAndIncrement();
-        }
-    }
-
     @SuppressWarnings("unused")
     public static class InvocationCallbackAdapter {
         private final InvocationCallback callback;
@@ -0,0 +1,372 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import net.bytebuddy.jar.asm.Label;
+import ru.custis.beanpath.BytecodeMaker.Emitter;
+import ru.custis.beanpath.BytecodeMaker.MethodBody;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Reads the value of a path from a bean with compiled code, i.e. calling getters directly.
+ * <p/>
+ * Reading is null-safe: if some intermediate bean is {@code null}, the path is considered
+ * unreachable and its value is {@code null}. Primitive views ({@link #getLong(Object)} etc.)
+ * read primitive and wrapper leaves without boxing and return zero (or {@code false})
+ * for unreachable paths and {@code null} values; use {@link #isNull(Object)} to tell them apart.
+ * <p/>
+ * Accessors are cached per path, so {@link #of(BeanPath)} is cheap after the first call.
+ * Instances are immutable and thread safe.
+ */
+public abstract class PathAccessor<T> {
+    private BeanPath<T> path;
+    private Class<?> primitiveType;
+
+    protected PathAccessor() {}
+
+    /**
+     * Accessor of the given path
+     *
+     * @throws IllegalArgumentException if some path element has no public getter
+     */
+    @SuppressWarnings("unchecked")
+    public static @Nonnull <T> PathAccessor<T> of(@Nonnull BeanPath<T> path) {
+        checkNotNull(path, "Argument 'path' must not be null");
+        return (PathAccessor<T>) Compiler.compile(path);
+    }
+
+    /**
+     * The path this accessor reads
+     */
+    public final @Nonnull BeanPath<T> getPath() {
+        return path;
+    }
+
+    /**
+     * Value of the path; or {@code null} if the path is unreachable.
+     * Primitive leaves are boxed.
+     */
+    @SuppressWarnings("unchecked")
+    public final @Nullable T get(@Nonnull Object bean) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        return (T) read(bean);
+    }
+
+    /**
+     * Whether the path is unreachable or its value is {@code null}
+     */
+    public final boolean isNull(@Nonnull Object bean) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        return readIsNull(bean);
+    }
+
+    /**
+     * Whether the path is of {@code long}, {@code int}, {@code short}, {@code byte} or {@code char} type
+     * (or of their wrappers), i.e. {@link #getLong(Object)} is applicable
+     */
+    public final boolean isIntegral() {
+        return primitiveType == long.class || isIntLike();
+    }
+
+    /**
+     * Whether the path is of {@code double} or {@code float} type (or of their wrappers)
+     */
+    public final boolean isFloating() {
+        return primitiveType == double.class || primitiveType == float.class;
+    }
+
+    /**
+     * Whether the path is of {@code boolean} type (or of its wrapper)
+     */
+    public final boolean isBoolean() {
+        return primitiveType == boolean.class;
+    }
+
+    /**
+     * Value of an {@link #isIntegral() integral} path widened to {@code long}
+     */
+    public final long getLong(@Nonnull Object bean) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        checkState(isIntegral(), "Path %s is not integral", path);
+        return readLong(bean, null);
+    }
+
+    /**
+     * Same as {@link #getLong(Object)}, but also sets {@code isNull[0]} to whether the path
+     * is unreachable or its value is {@code null}, reading the path once rather than twice
+     * as {@link #isNull(Object)} followed by {@link #getLong(Object)} does
+     */
+    public final long getLong(@Nonnull Object bean, @Nonnull boolean[] isNull) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        checkArgument(isNull.length > 0, "Argument 'isNull' must not be empty");
+        checkState(isIntegral(), "Path %s is not integral", path);
+        return readLong(bean, isNull);
+    }
+
+    /**
+     * Value of an {@code int}, {@code short}, {@code byte} or {@code char} path widened to {@code int}
+     */
+    public final int getInt(@Nonnull Object bean) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        checkState(isIntLike(), "Path %s is not of int type", path);
+        return readInt(bean, null);
+    }
+
+    /**
+     * Same as {@link #getInt(Object)}, but also sets {@code isNull[0]} to whether the path
+     * is unreachable or its value is {@code null}, reading the path once rather than twice
+     * as {@link #isNull(Object)} followed by {@link #getInt(Object)} does
+     */
+    public final int getInt(@Nonnull Object bean, @Nonnull boolean[] isNull) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        checkArgument(isNull.length > 0, "Argument 'isNull' must not be empty");
+        checkState(isIntLike(), "Path %s is not of int type", path);
+        return readInt(bean, isNull);
+    }
+
+    /**
+     * Value of an {@link #isIntegral() integral} or {@link #isFloating() floating} path widened to {@code double}
+     */
+    public final double getDouble(@Nonnull Object bean) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        checkState(isIntegral() || isFloating(), "Path %s is not numeric", path);
+        return readDouble(bean, null);
+    }
+
+    /**
+     * Same as {@link #getDouble(Object)}, but also sets {@code isNull[0]} to whether the path
+     * is unreachable or its value is {@code null}, reading the path once rather than twice
+     * as {@link #isNull(Object)} followed by {@link #getDouble(Object)} does
+     */
+    public final double getDouble(@Nonnull Object bean, @Nonnull boolean[] isNull) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        checkArgument(isNull.length > 0, "Argument 'isNull' must not be empty");
+        checkState(isIntegral() || isFloating(), "Path %s is not numeric", path);
+        return readDouble(bean, isNull);
+    }
+
+    /**
+     * Value of a {@link #isBoolean() boolean} path
+     */
+    public final boolean getBoolean(@Nonnull Object bean) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        checkState(isBoolean(), "Path %s is not boolean", path);
+        return readBoolean(bean, null);
+    }
+
+    /**
+     * Same as {@link #getBoolean(Object)}, but also sets {@code isNull[0]} to whether the path
+     * is unreachable or its value is {@code null}, reading the path once rather than twice
+     * as {@link #isNull(Object)} followed by {@link #getBoolean(Object)} does
+     */
+    public final boolean getBoolean(@Nonnull Object bean, @Nonnull boolean[] isNull) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        checkArgument(isNull.length > 0, "Argument 'isNull' must not be empty");
+        checkState(isBoolean(), "Path %s is not boolean", path);
+        return readBoolean(bean, isNull);
+    }
+
+    private boolean isIntLike() {
+        return primitiveType == int.class || primitiveType == short.class
+               || primitiveType == byte.class || primitiveType == char.class;
+    }
+
+    @Override
+    public String toString() {
+        return "PathAccessor(" + path + ")";
+    }
+
+    // Implemented by generated code
+
+    protected abstract Object read(Object bean);
+
+    protected abstract boolean readIsNull(Object bean);
+
+    protected abstract long readLong(Object bean, boolean[] isNull);
+
+    protected abstract int readInt(Object bean, boolean[] isNull);
+
+    protected abstract double readDouble(Object bean, boolean[] isNull);
+
+    protected abstract boolean readBoolean(Object bean, boolean[] isNull);
+
+    private static final class Compiler {
+        private static final Map<BeanPath<?>, PathAccessor<?>> cache = new ConcurrentHashMap<BeanPath<?>, PathAccessor<?>>();
+        private static final Object compilationGuard = new Object();
+
+        public static PathAccessor<?> compile(BeanPath<?> path) {
+            PathAccessor<?> accessor = cache.get(path);
+            if (accessor == null) {
+                synchronized (compilationGuard) { // we do not want to generate an accessor twice
+                    accessor = cache.get(path);
+                    if (accessor == null) {
+                        accessor = generate(path);
+                        cache.put(path, accessor);
+                    }
+                }
+            }
+            return accessor;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> PathAccessor<T> generate(final BeanPath<T> path) {
+            checkArgument(!path.isRoot(), "Root path has no value");
+
+            final List<Method> getters = PropertyMethods.getters(path);
+            final Class<?> leafType = getters.get(getters.size() - 1).getReturnType();
+            final Class<?> primitiveType = leafType.isPrimitive() ? leafType : Primitives.getPrimitiveClass(path.getType());
+
+            final Map<String, MethodBody> bodies = new LinkedHashMap<String, MethodBody>();
+            bodies.put("read", new MethodBody() {
+                @Override
+                public void emit(Emitter emitter) {
+                    loadBean(emitter, path);
+                    final Class<?> type = emitter.readChainOrDefault(path, getters);
+                    if (type.isPrimitive()) {
+                        emitter.box(type);
+                    }
+                    emitter.returnValue(Object.class);
+                }
+            });
+            bodies.put("readIsNull", new MethodBody() {
+                @Override
+                public void emit(Emitter emitter) {
+                    final Label isNull = new Label();
+                    loadBean(emitter, path);
+                    final Class<?> type = emitter.readChain(path, getters, isNull);
+                    if (type.isPrimitive()) {
+                        emitter.pop(type);
+                    } else {
+                        emitter.ifNull(isNull);
+                    }
+                    emitter.pushInt(0);
+                    emitter.returnValue(boolean.class);
+                    emitter.label(isNull);
+                    emitter.pushInt(1);
+                    emitter.returnValue(boolean.class);
+                }
+            });
+            bodies.put("readLong", new PrimitiveRead(path, getters, primitiveType, long.class));
+            bodies.put("readInt", new PrimitiveRead(path, getters, primitiveType, int.class));
+            bodies.put("readDouble", new PrimitiveRead(path, getters, primitiveType, double.class));
+            bodies.put("readBoolean", new PrimitiveRead(path, getters, primitiveType, boolean.class));
+
+            final PathAccessor<T> accessor = BytecodeMaker.createInstance(
+                    PathAccessor.class, path.getRoot().getType().getSimpleName(), bodies);
+            accessor.path = path;
+            accessor.primitiveType = primitiveType;
+            return accessor;
+        }
+
+        private static void loadBean(Emitter emitter, BeanPath<?> path) {
+            emitter.loadArgument(Object.class, 0);
+            emitter.checkCast(path.getRoot().getType());
+        }
+    }
+
+    /**
+     * Reads a primitive or wrapper leaf as a primitive {@code resultType},
+     * that is zero for unreachable path or {@code null} value.
+     * If the second argument, a {@code boolean[]}, is not {@code null}, its first element
+     * is set to whether the value is {@code null} or unreachable.
+     * Body is trivial if the leaf is not convertible to {@code resultType},
+     * public methods do not let it be called.
+     */
+    private static final class PrimitiveRead implements MethodBody {
+        private final BeanPath<?> path;
+        private final List<Method> getters;
+        private final Class<?> primitiveType;
+        private final Class<?> resultType;
+
+        private PrimitiveRead(BeanPath<?> path, List<Method> getters, Class<?> primitiveType, Class<?> resultType) {
+            this.path = path;
+            this.getters = getters;
+            this.primitiveType = primitiveType;
+            this.resultType = resultType;
+        }
+
+        @Override
+        public void emit(Emitter emitter) {
+            if (!isApplicable()) {
+                emitter.pushDefault(resultType);
+                emitter.returnValue(resultType);
+                return;
+            }
+
+            final Label isNull = new Label();
+            final Label unreachable = new Label();
+
+            Compiler.loadBean(emitter, path);
+            final Class<?> type = emitter.readChain(path, getters, unreachable);
+            if (!type.isPrimitive()) {
+                emitter.dup();
+                emitter.ifNull(isNull);
+                emitter.unbox(primitiveType);
+            }
+            if (resultType != boolean.class) {
+                emitter.widen(primitiveType, resultType);
+            }
+            flagNull(emitter, false);
+            emitter.returnValue(resultType);
+
+            if (!type.isPrimitive()) {
+                emitter.label(isNull);
+                emitter.pop(Object.class);
+            }
+            emitter.label(unreachable);
+            flagNull(emitter, true);
+            emitter.pushDefault(resultType);
+            emitter.returnValue(resultType);
+        }
+
+        private static void flagNull(Emitter emitter, boolean isNull) {
+            final Label noFlag = new Label();
+            emitter.loadArgument(boolean[].class, 1);
+            emitter.ifNull(noFlag);
+            emitter.loadArgument(boolean[].class, 1);
+            emitter.pushInt(0);
+            emitter.pushInt(isNull ? 1 : 0);
+            emitter.storeArrayElement(boolean.class);
+            emitter.label(noFlag);
+        }
+
+        private boolean isApplicable() {
+            if (primitiveType == null || primitiveType == void.class) {
+                return false;
+            } else if (resultType == boolean.class || primitiveType == boolean.class) {
+                return resultType == primitiveType;
+            } else if (resultType == int.class) {
+                return primitiveType != long.class && primitiveType != float.class && primitiveType != double.class;
+            } else if (resultType == long.class) {
+                return primitiveType != float.class && primitiveType != double.class;
+            } else {
+                return true;
+            }
+        }
+    }
+}
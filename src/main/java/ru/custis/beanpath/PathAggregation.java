@@ -0,0 +1,493 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Groups beans by values of some paths and aggregates values of other paths
+ * ({@code count}, {@code sum}, {@code avg}, {@code min}, {@code max}) within each group:
+ * <pre><code>
+ *     Order order = root(Order.class);
+ *     PathAggregation&lt;Order&gt; aggregation = PathAggregation.of(Order.class)
+ *             .groupBy($(order.getCustomer().getName()))
+ *             .count()
+ *             .sum($(order.getTotal()))
+ *             .max($(order.getQuantity()))
+ *             .build();
+ *
+ *     for (PathAggregation.Group group : aggregation.aggregate(orders)) {
+ *         group.getKey(0); // customer name
+ *         group.getDouble(1); // sum of totals
+ *     }
+ * </code></pre>
+ * <p/>
+ * Values are read with {@link PathAccessor}s and accumulated into primitive
+ * {@code long} (for integral paths) or {@code double} (for floating ones) accumulators,
+ * so aggregated values are never boxed. Group keys are boxed if primitive.
+ * Unreachable paths and {@code null} values are skipped by all the functions but {@link Builder#count()}.
+ * <p/>
+ * For parallel processing, use separate {@link Accumulator}s per thread
+ * and {@link Accumulator#merge(Accumulator) merge} them, or just
+ * {@link #aggregate(List, ExecutorService, int)}.
+ * <p/>
+ * Instances are immutable and thread safe, accumulators are not.
+ */
+public final class PathAggregation<B> {
+
+    private enum Function {
+        COUNT, SUM, AVG, MIN, MAX
+    }
+
+    private final PathAccessor<?>[] keys;
+    private final Measure[] measures;
+
+    private PathAggregation(List<PathAccessor<?>> keys, List<Measure> measures) {
+        this.keys = keys.toArray(new PathAccessor<?>[keys.size()]);
+        this.measures = measures.toArray(new Measure[measures.size()]);
+    }
+
+    /**
+     * Starts aggregation definition over beans of {@code beanType}
+     */
+    public static @Nonnull <B> Builder<B> of(@Nonnull Class<B> beanType) {
+        checkNotNull(beanType, "Argument 'beanType' must not be null");
+        return new Builder<B>(beanType);
+    }
+
+    /**
+     * Aggregates all the {@code beans} at once.
+     * Groups are listed in order of their first occurrence.
+     */
+    public @Nonnull List<Group> aggregate(@Nonnull Iterable<? extends B> beans) {
+        checkNotNull(beans, "Argument 'beans' must not be null");
+        final Accumulator accumulator = newAccumulator();
+        accumulator.addAll(beans);
+        return accumulator.getGroups();
+    }
+
+    /**
+     * Aggregates {@code beans} in (at most) {@code parallelism} parts on given {@code executor}
+     * and merges partial results. Groups are listed in order of their first occurrence.
+     */
+    public @Nonnull List<Group> aggregate(@Nonnull List<? extends B> beans,
+                                          @Nonnull ExecutorService executor,
+                                          int parallelism) {
+        checkNotNull(beans, "Argument 'beans' must not be null");
+        checkNotNull(executor, "Argument 'executor' must not be null");
+        checkArgument(parallelism > 0, "Argument 'parallelism' must be positive");
+
+        final int partSize = Math.max(1, (beans.size() + parallelism - 1) / parallelism);
+        final List<Future<Accumulator>> parts = new ArrayList<Future<Accumulator>>();
+        for (int from = 0; from < beans.size(); from += partSize) {
+            final List<? extends B> part = beans.subList(from, Math.min(beans.size(), from + partSize));
+            parts.add(executor.submit(new Callable<Accumulator>() {
+                @Override
+                public Accumulator call() {
+                    final Accumulator accumulator = newAccumulator();
+                    accumulator.addAll(part);
+                    return accumulator;
+                }
+            }));
+        }
+
+        final Accumulator result = newAccumulator();
+        try {
+            for (Future<Accumulator> part : parts) {
+                result.merge(part.get());
+            }
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+            throw new BeanPathMagicException("Interrupted while aggregating", x);
+        } catch (ExecutionException x) {
+            throw new BeanPathMagicException("Failed to aggregate", x.getCause());
+        }
+        return result.getGroups();
+    }
+
+    /**
+     * New empty accumulator for incremental aggregation
+     */
+    public @Nonnull Accumulator newAccumulator() {
+        return new Accumulator();
+    }
+
+    /**
+     * Mutable aggregation state. Not thread safe.
+     */
+    public final class Accumulator {
+        private final Map<Key, Group> groups = new LinkedHashMap<Key, Group>();
+
+        // reused for lookups, so that existing groups are found without allocation
+        private final Key probe = new Key(new Object[keys.length]);
+        // reused for reading values along with their nullness
+        private final boolean[] isNull = new boolean[1];
+
+        private Accumulator() {}
+
+        public void add(@Nonnull B bean) {
+            checkNotNull(bean, "Argument 'bean' must not be null");
+            final Object[] values = probe.values;
+            for (int i = 0; i < keys.length; i++) {
+                values[i] = keys[i].get(bean);
+            }
+            probe.rehash();
+
+            Group group = groups.get(probe);
+            if (group == null) {
+                final Key key = new Key(values.clone());
+                group = new Group(key, measures);
+                groups.put(key, group);
+            }
+            Arrays.fill(values, null); // not to retain key values of the bean
+            group.accumulate(bean, measures, isNull);
+        }
+
+        public void addAll(@Nonnull Iterable<? extends B> beans) {
+            checkNotNull(beans, "Argument 'beans' must not be null");
+            for (B bean : beans) {
+                add(bean);
+            }
+        }
+
+        /**
+         * Adds all the state of {@code other} accumulator (of the same aggregation) into this one
+         */
+        public void merge(@Nonnull Accumulator other) {
+            checkNotNull(other, "Argument 'other' must not be null");
+            checkArgument(other.getAggregation() == getAggregation(), "Accumulator of another aggregation");
+            for (Map.Entry<Key, Group> entry : other.groups.entrySet()) {
+                final Group group = groups.get(entry.getKey());
+                if (group == null) {
+                    groups.put(entry.getKey(), entry.getValue().copy());
+                } else {
+                    group.merge(entry.getValue(), measures);
+                }
+            }
+        }
+
+        /**
+         * Snapshot of the current groups, in order of their first occurrence
+         */
+        public @Nonnull List<Group> getGroups() {
+            final List<Group> result = new ArrayList<Group>(groups.size());
+            for (Group group : groups.values()) {
+                result.add(group.copy());
+            }
+            return Collections.unmodifiableList(result);
+        }
+
+        private PathAggregation<B> getAggregation() {
+            return PathAggregation.this;
+        }
+    }
+
+    /**
+     * Aggregated values of a single group.
+     * Measures are indexed in order of their definition.
+     */
+    public static final class Group {
+        private final Key key;
+        private final long[] counts;
+        private final long[] longs;
+        private final double[] doubles;
+        private final Measure[] measures;
+
+        private Group(Key key, Measure[] measures) {
+            this.key = key;
+            this.measures = measures;
+            this.counts = new long[measures.length];
+            this.longs = new long[measures.length];
+            this.doubles = new double[measures.length];
+        }
+
+        private Group(Group that) {
+            this.key = that.key;
+            this.measures = that.measures;
+            this.counts = that.counts.clone();
+            this.longs = that.longs.clone();
+            this.doubles = that.doubles.clone();
+        }
+
+        /**
+         * Values of group-by paths, in order of their definition
+         */
+        public @Nonnull List<Object> getKey() {
+            return Collections.unmodifiableList(Arrays.asList(key.values));
+        }
+
+        /**
+         * Value of the {@code index}-th group-by path
+         */
+        public @Nullable Object getKey(int index) {
+            return key.values[index];
+        }
+
+        /**
+         * Number of aggregated values of the {@code index}-th measure,
+         * i.e. number of beans for {@link Builder#count()}
+         */
+        public long getCount(int index) {
+            return counts[index];
+        }
+
+        /**
+         * Value of the {@code index}-th measure of integral path or of {@code count} function
+         * ({@code min} or {@code max} is zero if there were no values)
+         */
+        public long getLong(int index) {
+            final Measure measure = measures[index];
+            checkArgument(measure.isIntegral() && measure.function != Function.AVG,
+                          "Measure %s is not integral", index);
+            return (measure.function == Function.COUNT) ? counts[index] : longs[index];
+        }
+
+        /**
+         * Value of the {@code index}-th measure, widened to {@code double} if integral
+         * ({@code min}, {@code max} or {@code avg} is {@code NaN} if there were no values)
+         */
+        public double getDouble(int index) {
+            final Measure measure = measures[index];
+            final long count = counts[index];
+            final boolean undefined = (count == 0 && measure.function != Function.COUNT && measure.function != Function.SUM);
+
+            if (undefined) {
+                return Double.NaN;
+            } else if (measure.function == Function.COUNT) {
+                return count;
+            } else if (measure.function == Function.AVG) {
+                return (measure.isIntegral() ? (double) longs[index] : doubles[index]) / count;
+            } else {
+                return measure.isIntegral() ? longs[index] : doubles[index];
+            }
+        }
+
+        // reads each value once, along with its nullness
+        private void accumulate(Object bean, Measure[] measures, boolean[] isNull) {
+            for (int i = 0; i < measures.length; i++) {
+                final Measure measure = measures[i];
+                if (measure.accessor == null) {
+                    counts[i]++;
+                } else if (measure.function == Function.COUNT) {
+                    if (!measure.accessor.isNull(bean)) {
+                        counts[i]++;
+                    }
+                } else if (measure.isIntegral()) {
+                    final long value = measure.accessor.getLong(bean, isNull);
+                    if (!isNull[0]) {
+                        longs[i] = accumulate(measure.function, counts[i]++, longs[i], value);
+                    }
+                } else {
+                    final double value = measure.accessor.getDouble(bean, isNull);
+                    if (!isNull[0]) {
+                        doubles[i] = accumulate(measure.function, counts[i]++, doubles[i], value);
+                    }
+                }
+            }
+        }
+
+        private void merge(Group that, Measure[] measures) {
+            for (int i = 0; i < measures.length; i++) {
+                final Measure measure = measures[i];
+                if (that.counts[i] == 0) {
+                    continue;
+                }
+                final long count = counts[i];
+                counts[i] += that.counts[i];
+                if (measure.function == Function.COUNT) {
+                    continue;
+                }
+                if (measure.isIntegral()) {
+                    longs[i] = accumulate(measure.function, count, longs[i], that.longs[i]);
+                } else {
+                    doubles[i] = accumulate(measure.function, count, doubles[i], that.doubles[i]);
+                }
+            }
+        }
+
+        private static long accumulate(Function function, long count, long accumulated, long value) {
+            switch (function) {
+                case MIN:
+                    return (count == 0) ? value : Math.min(accumulated, value);
+                case MAX:
+                    return (count == 0) ? value : Math.max(accumulated, value);
+                default:
+                    return accumulated + value;
+            }
+        }
+
+        private static double accumulate(Function function, long count, double accumulated, double value) {
+            switch (function) {
+                case MIN:
+                    return (count == 0) ? value : Math.min(accumulated, value);
+                case MAX:
+                    return (count == 0) ? value : Math.max(accumulated, value);
+                default:
+                    return accumulated + value;
+            }
+        }
+
+        private Group copy() {
+            return new Group(this);
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("Group").append(getKey()).append('{');
+            for (int i = 0; i < measures.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(measures[i]).append('=');
+                if (measures[i].isIntegral() && measures[i].function != Function.AVG) {
+                    sb.append(getLong(i));
+                } else {
+                    sb.append(getDouble(i));
+                }
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    public static final class Builder<B> {
+        private final Class<B> beanType;
+        private final List<PathAccessor<?>> keys = new ArrayList<PathAccessor<?>>();
+        private final List<Measure> measures = new ArrayList<Measure>();
+
+        private Builder(Class<B> beanType) {
+            this.beanType = beanType;
+        }
+
+        /**
+         * Adds group-by paths. If none is added, all the beans fall into a single group.
+         */
+        public @Nonnull Builder<B> groupBy(@Nonnull BeanPath<?>... paths) {
+            checkNotNull(paths, "Argument 'paths' must not be null");
+            for (BeanPath<?> path : paths) {
+                keys.add(accessor(path));
+            }
+            return this;
+        }
+
+        /**
+         * Number of beans
+         */
+        public @Nonnull Builder<B> count() {
+            measures.add(new Measure(Function.COUNT, null));
+            return this;
+        }
+
+        /**
+         * Number of non-null values of the path
+         */
+        public @Nonnull Builder<B> count(@Nonnull BeanPath<?> path) {
+            return measure(Function.COUNT, path);
+        }
+
+        public @Nonnull Builder<B> sum(@Nonnull BeanPath<? extends Number> path) {
+            return measure(Function.SUM, path);
+        }
+
+        public @Nonnull Builder<B> avg(@Nonnull BeanPath<? extends Number> path) {
+            return measure(Function.AVG, path);
+        }
+
+        public @Nonnull Builder<B> min(@Nonnull BeanPath<? extends Number> path) {
+            return measure(Function.MIN, path);
+        }
+
+        public @Nonnull Builder<B> max(@Nonnull BeanPath<? extends Number> path) {
+            return measure(Function.MAX, path);
+        }
+
+        private Builder<B> measure(Function function, BeanPath<?> path) {
+            final PathAccessor<?> accessor = accessor(path);
+            checkArgument(function == Function.COUNT || accessor.isIntegral() || accessor.isFloating(),
+                          "Path %s is not numeric", path);
+            measures.add(new Measure(function, accessor));
+            return this;
+        }
+
+        private PathAccessor<?> accessor(BeanPath<?> path) {
+            checkNotNull(path, "Argument 'path' must not be null");
+            checkArgument(path.getRoot().getType().isAssignableFrom(beanType),
+                          "Path %s is not applicable to %s", path, beanType);
+            return PathAccessor.of(path);
+        }
+
+        public @Nonnull PathAggregation<B> build() {
+            return new PathAggregation<B>(keys, measures);
+        }
+    }
+
+    private static final class Measure {
+        private final Function function;
+        private final @Nullable PathAccessor<?> accessor;
+
+        private Measure(Function function, @Nullable PathAccessor<?> accessor) {
+            this.function = function;
+            this.accessor = accessor;
+        }
+
+        boolean isIntegral() {
+            return accessor == null || function == Function.COUNT || accessor.isIntegral();
+        }
+
+        @Override
+        public String toString() {
+            return function.name().toLowerCase() + "(" + ((accessor != null) ? accessor.getPath().toDotDelimitedString() : "*") + ")";
+        }
+    }
+
+    private static final class Key {
+        private final Object[] values;
+        private int hashCode;
+
+        private Key(Object[] values) {
+            this.values = values;
+            rehash();
+        }
+
+        void rehash() {
+            hashCode = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (this == obj) || (obj instanceof Key && Arrays.equals(values, ((Key) obj).values));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
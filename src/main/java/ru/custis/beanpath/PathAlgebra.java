@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+/**
+ * Implementation of composition operations of {@link BeanPath}.
+ * <p/>
+ * Results are built of canonical nodes, so that paths composed of the same fragments
+ * share their common prefixes, and are cached per operation and arguments.
+ */
+final class PathAlgebra {
+    private PathAlgebra() {}
+
+    private static final ConcurrentMap<BeanPath<?>, BeanPath<?>> canonical = new ConcurrentHashMap<BeanPath<?>, BeanPath<?>>();
+
+    private static final ConcurrentMap<List<Object>, BeanPath<?>> results = new ConcurrentHashMap<List<Object>, BeanPath<?>>();
+
+    @SuppressWarnings("unchecked")
+    public static @Nonnull <T> BeanPath<T> intern(@Nonnull BeanPath<T> path) {
+        final BeanPath<?> existing = canonical.get(path);
+        if (existing != null) {
+            return (BeanPath<T>) existing;
+        }
+
+        BeanPath<T> candidate = path;
+        if (path.hasParent()) {
+            final BeanPath<?> parent = intern(path.getParent());
+            if (parent != path.getParent()) {
+                candidate = path.reparent(parent);
+            }
+        }
+        final BeanPath<?> raced = canonical.putIfAbsent(candidate, candidate);
+        return (raced != null) ? (BeanPath<T>) raced : candidate;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static @Nonnull <R> BeanPath<R> concat(@Nonnull BeanPath<?> prefix, @Nonnull BeanPath<R> relative) {
+        final List<Object> key = Arrays.<Object>asList("concat", prefix, relative);
+        BeanPath<?> result = results.get(key);
+        if (result == null) {
+            checkArgument(relative.getRoot().getType().isAssignableFrom(prefix.getType()),
+                          "Path %s is not applicable to %s", relative, prefix);
+            result = appendElements(intern(prefix), relative, 0);
+            results.put(key, result); // its ok if two threads compute it twice concurrently
+        }
+        return (BeanPath<R>) result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static @Nonnull <T> BeanPath<T> relativize(@Nonnull BeanPath<T> path, @Nonnull BeanPath<?> base) {
+        final List<Object> key = Arrays.<Object>asList("relativize", path, base);
+        BeanPath<?> result = results.get(key);
+        if (result == null) {
+            final int baseDepth = base.getDepth();
+            checkArgument(baseDepth <= path.getDepth() && base.equals(ancestorOf(path, path.getDepth() - baseDepth)),
+                          "Path %s is not a prefix of %s", base, path);
+            result = appendElements(intern(rootOf(base)), path, baseDepth);
+            results.put(key, result); // its ok if two threads compute it twice concurrently
+        }
+        return (BeanPath<T>) result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static @Nonnull <T> BeanPath<T> rebase(@Nonnull BeanPath<T> path, @Nonnull Class<?> rootType) {
+        final List<Object> key = Arrays.<Object>asList("rebase", path, rootType);
+        BeanPath<?> result = results.get(key);
+        if (result == null) {
+            checkArgument(path.getRoot().getType().isAssignableFrom(rootType),
+                          "Type %s is not a subtype of the root of %s", rootType.getName(), path);
+            result = appendElements(intern(BeanPath.root(rootType)), path, 0);
+            results.put(key, result); // its ok if two threads compute it twice concurrently
+        }
+        return (BeanPath<T>) result;
+    }
+
+    public static @Nonnull BeanPath<?> subPath(@Nonnull BeanPath<?> path, int from, int to) {
+        final int depth = path.getDepth();
+        checkPositionIndexes(from, to, depth);
+        final List<Object> key = Arrays.<Object>asList("subPath", path, from, to);
+        BeanPath<?> result = results.get(key);
+        if (result == null) {
+            final BeanPath<?> end = ancestorOf(path, depth - to);
+            result = relativize(end, ancestorOf(end, to - from));
+            results.put(key, result); // its ok if two threads compute it twice concurrently
+        }
+        return result;
+    }
+
+    /**
+     * {@code path} continued with elements of {@code elements} deeper than {@code skipDepth}
+     */
+    private static BeanPath<?> appendElements(BeanPath<?> path, BeanPath<?> elements, int skipDepth) {
+        BeanPath<?> result = path;
+        int depth = 0;
+        for (BeanPath<?> element : elements) {
+            if (depth++ > skipDepth) {
+                result = intern(element.reparent(result));
+            }
+        }
+        return result;
+    }
+
+    private static BeanPath<?> ancestorOf(BeanPath<?> path, int generations) {
+        BeanPath<?> ancestor = path;
+        for (int i = 0; i < generations; i++) {
+            ancestor = ancestor.getParent();
+        }
+        return ancestor;
+    }
+
+    private static <T> BeanPath<T> rootOf(BeanPath<T> base) {
+        return base.isRoot() ? base : BeanPath.root(base.getType(), base.getGenericType());
+    }
+}
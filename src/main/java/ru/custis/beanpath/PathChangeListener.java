@@ -0,0 +1,31 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives changes of paths it is subscribed to with {@link PathListeners#subscribe(BeanPath, PathChangeListener)}
+ */
+public interface PathChangeListener {
+
+    /**
+     * Value of {@code changed} path has changed; it is the path this listener is subscribed to,
+     * or its ancestor, or its descendant
+     */
+    void pathChanged(@Nonnull BeanPath<?> changed);
+}
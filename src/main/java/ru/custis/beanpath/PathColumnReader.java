@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import com.google.common.base.Charsets;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static ru.custis.beanpath.PathColumnWriter.BOOLEAN;
+import static ru.custis.beanpath.PathColumnWriter.DOUBLE;
+import static ru.custis.beanpath.PathColumnWriter.INT;
+import static ru.custis.beanpath.PathColumnWriter.LONG;
+import static ru.custis.beanpath.PathColumnWriter.MAGIC;
+import static ru.custis.beanpath.PathColumnWriter.STRING;
+import static ru.custis.beanpath.PathColumnWriter.VERSION;
+
+/**
+ * Maps a file written by {@link PathColumnWriter} into memory
+ * and reads its cells in place, without deserializing rows:
+ * <pre><code>
+ *     PathColumnReader reader = PathColumnReader.open(file);
+ *     PathColumnReader.Column totals = reader.getColumn($(order.getTotal()));
+ *     for (int row = 0; row &lt; reader.getRowCount(); row++) {
+ *         sum += totals.getDouble(row);
+ *     }
+ * </code></pre>
+ * Only the dictionary of a string column is decoded, once, on its first access.
+ * <p/>
+ * The mapping stays valid after {@link #close()}, until the reader is garbage collected.
+ * Readers are thread safe.
+ */
+public final class PathColumnReader implements Closeable {
+    private final RandomAccessFile file;
+    private final int rowCount;
+    private final Map<String, Column> columns;
+
+    private PathColumnReader(RandomAccessFile file, ByteBuffer buffer) {
+        this.file = file;
+
+        checkArgument(buffer.getInt() == MAGIC, "Not a column file");
+        final int version = buffer.getInt();
+        checkArgument(version == VERSION, "Unsupported column file version %s", version);
+        this.rowCount = buffer.getInt();
+
+        final int columnCount = buffer.getInt();
+        final Map<String, Column> columns = new LinkedHashMap<String, Column>();
+        for (int i = 0; i < columnCount; i++) {
+            final byte[] name = new byte[buffer.getInt()];
+            buffer.get(name);
+            final byte type = buffer.get();
+            final int offset = (int) buffer.getLong();
+            final int length = (int) buffer.getLong();
+            final int dictionaryOffset = (int) buffer.getLong();
+            final int dictionaryLength = (int) buffer.getLong();
+
+            final String path = new String(name, Charsets.UTF_8);
+            columns.put(path, new Column(path, type, slice(buffer, offset, length),
+                    slice(buffer, dictionaryOffset, dictionaryLength), rowCount));
+        }
+        this.columns = Collections.unmodifiableMap(columns);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        final ByteBuffer result = buffer.duplicate();
+        result.position(offset);
+        result.limit(offset + length);
+        return result.slice();
+    }
+
+    public static @Nonnull PathColumnReader open(@Nonnull File file) throws IOException {
+        checkNotNull(file, "Argument 'file' must not be null");
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            return new PathColumnReader(raf, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException x) {
+            raf.close();
+            throw x;
+        } catch (RuntimeException x) {
+            raf.close();
+            throw x;
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Dot delimited paths of the columns, in order of export
+     */
+    public @Nonnull List<String> getColumnNames() {
+        return new ArrayList<String>(columns.keySet());
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public @Nonnull Column getColumn(@Nonnull String dotDelimitedPath) {
+        checkNotNull(dotDelimitedPath, "Argument 'dotDelimitedPath' must not be null");
+        final Column column = columns.get(dotDelimitedPath);
+        checkArgument(column != null, "No column %s", dotDelimitedPath);
+        return column;
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public @Nonnull Column getColumn(@Nonnull BeanPath<?> path) {
+        checkNotNull(path, "Argument 'path' must not be null");
+        return getColumn(path.toDotDelimitedString());
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Column of the file. Typed getters must match the column type;
+     * they return zero (or {@code false}) for nulls, use {@link #isNull(int)} to tell them apart.
+     */
+    public static final class Column {
+        private final String name;
+        private final byte type;
+        private final ByteBuffer data;
+        private final ByteBuffer dictionaryData;
+        private final int rowCount;
+        private final int valuesOffset;
+        private volatile String[] dictionary; // decoded lazily
+
+        private Column(String name, byte type, ByteBuffer data, ByteBuffer dictionaryData, int rowCount) {
+            this.name = name;
+            this.type = type;
+            this.data = data;
+            this.dictionaryData = dictionaryData;
+            this.rowCount = rowCount;
+            this.valuesOffset = (rowCount + 7) / 8;
+        }
+
+        public @Nonnull String getName() {
+            return name;
+        }
+
+        public boolean isNull(int row) {
+            checkElementIndex(row, rowCount, "row");
+            return (data.get(row >> 3) & (1 << (row & 7))) != 0;
+        }
+
+        public int getInt(int row) {
+            checkType(INT, "int");
+            return isNull(row) ? 0 : data.getInt(valuesOffset + 4 * row);
+        }
+
+        public long getLong(int row) {
+            checkState(type == LONG || type == INT, "Column %s is not integral", name);
+            if (isNull(row)) {
+                return 0;
+            }
+            return (type == LONG) ? data.getLong(valuesOffset + 8 * row) : data.getInt(valuesOffset + 4 * row);
+        }
+
+        public double getDouble(int row) {
+            checkType(DOUBLE, "double");
+            return isNull(row) ? 0 : data.getDouble(valuesOffset + 8 * row);
+        }
+
+        public boolean getBoolean(int row) {
+            checkType(BOOLEAN, "boolean");
+            return !isNull(row) && data.get(valuesOffset + row) != 0;
+        }
+
+        public @Nullable String getString(int row) {
+            checkType(STRING, "string");
+            return isNull(row) ? null : dictionary()[data.getInt(valuesOffset + 4 * row)];
+        }
+
+        /**
+         * Value of any type, boxed; or {@code null}
+         */
+        public @Nullable Object get(int row) {
+            if (isNull(row)) {
+                return null;
+            }
+            switch (type) {
+                case INT:
+                    return getInt(row);
+                case LONG:
+                    return getLong(row);
+                case DOUBLE:
+                    return getDouble(row);
+                case BOOLEAN:
+                    return getBoolean(row);
+                default:
+                    return getString(row);
+            }
+        }
+
+        private void checkType(byte expected, String typeName) {
+            checkState(type == expected, "Column %s is not of %s type", name, typeName);
+        }
+
+        private String[] dictionary() {
+            String[] result = dictionary;
+            if (result == null) { // its ok if two threads decode it twice concurrently
+                result = new String[dictionaryData.getInt(0)];
+                int offset = 4;
+                for (int i = 0; i < result.length; i++) {
+                    final int length = dictionaryData.getInt(offset);
+                    final byte[] bytes = new byte[length];
+                    final ByteBuffer view = dictionaryData.duplicate();
+                    view.position(offset + 4);
+                    view.get(bytes);
+                    result[i] = new String(bytes, Charsets.UTF_8);
+                    offset += 4 + length;
+                }
+                dictionary = result;
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Column(" + name + ")";
+        }
+    }
+}
@@ -0,0 +1,788 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import com.google.common.base.Charsets;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Keeps values of selected paths of many beans outside of the heap, one column per path:
+ * <pre><code>
+ *     Order order = root(Order.class);
+ *     PathColumnStore&lt;Order&gt; store = PathColumnStore.of(Order.class)
+ *             .columns($(order.getId()), $(order.getCustomer().getName()), $(order.getTotal()))
+ *             .build();
+ *
+ *     store.addAll(orders);
+ *     double total = store.getDouble(row, $(order.getTotal()));
+ *     store.set(row, $(order.getCustomer().getName()), "John Smith");
+ * </code></pre>
+ * Columns live in direct byte buffers or, if built with {@link Builder#build(File)}, in memory-mapped files,
+ * so that the heap holds only a fixed number of objects per column, regardless of the number of rows.
+ * Primitives and their wrappers are stored in their natural width, enums as ordinals,
+ * strings as UTF-8 bytes in a per-column area; unreachable paths and {@code null} values
+ * are marked in a per-column null bitmap. Columns grow twice at a time, up to 2 GB each.
+ * <p/>
+ * Strings are appended to their area and never reclaimed, so overwriting them leaves garbage
+ * until the store is {@link #clear() cleared}.
+ * <p/>
+ * Loading beans reads their paths with {@link PathAccessor}s, primitives are not boxed.
+ * Typed getters and setters follow {@link PathAccessor} conventions: {@link Column#getLong(int)}
+ * reads integral columns, {@link Column#getDouble(int)} numeric ones, and so on;
+ * getters return zero (or {@code false}) for nulls, use {@link Column#isNull(int)} to tell them apart.
+ * <p/>
+ * Stores are not thread safe, but may be read concurrently if nobody writes them.
+ * Direct memory is released when the store is garbage collected.
+ */
+public final class PathColumnStore<B> implements Closeable {
+    static final int DEFAULT_CAPACITY = 1024;
+    static final int MAX_CAPACITY = Integer.MAX_VALUE / 8; // of the widest column
+
+    private static final byte BOOLEAN = 1, BYTE = 2, SHORT = 3, CHAR = 4, INT = 5, LONG = 6,
+            FLOAT = 7, DOUBLE = 8, STRING = 9, ENUM = 10;
+
+    private final Memory memory;
+    private final Column[] columns;
+    private final Map<BeanPath<?>, Column> columnsByPath = new HashMap<BeanPath<?>, Column>();
+
+    private int size = 0;
+    private int capacity;
+
+    private PathColumnStore(List<BeanPath<?>> paths, int capacity, Memory memory) {
+        this.memory = memory;
+        this.capacity = capacity;
+        this.columns = new Column[paths.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column(this, i, paths.get(i));
+            columnsByPath.put(paths.get(i), columns[i]);
+        }
+    }
+
+    /**
+     * Starts store definition for beans of {@code beanType}
+     */
+    public static @Nonnull <B> Builder<B> of(@Nonnull Class<B> beanType) {
+        checkNotNull(beanType, "Argument 'beanType' must not be null");
+        return new Builder<B>(beanType);
+    }
+
+    /**
+     * Number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a row of nulls
+     *
+     * @return index of the row
+     */
+    public int addRow() {
+        if (size == capacity) {
+            grow(size + 1);
+        }
+        final int row = size++;
+        for (Column column : columns) {
+            column.setNull(row);
+        }
+        return row;
+    }
+
+    /**
+     * Adds a row of values of {@code bean}
+     *
+     * @return index of the row
+     */
+    public int add(@Nonnull B bean) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        if (size == capacity) {
+            grow(size + 1);
+        }
+        final int row = size++;
+        final boolean[] isNull = new boolean[1];
+        for (Column column : columns) {
+            column.load(row, bean, isNull);
+        }
+        return row;
+    }
+
+    /**
+     * Adds a row per bean, in order of iteration
+     */
+    public void addAll(@Nonnull Iterable<? extends B> beans) {
+        checkNotNull(beans, "Argument 'beans' must not be null");
+        for (B bean : beans) {
+            add(bean);
+        }
+    }
+
+    /**
+     * Removes all rows, keeping the memory allocated
+     */
+    public void clear() {
+        size = 0;
+        for (Column column : columns) {
+            column.stringsSize = 0;
+        }
+    }
+
+    private void grow(int minCapacity) {
+        checkState(minCapacity <= MAX_CAPACITY, "Store exceeds the limit of %s rows", MAX_CAPACITY);
+        capacity = (int) Math.min(Math.max(2L * capacity, minCapacity), MAX_CAPACITY);
+        for (Column column : columns) {
+            column.grow(capacity);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the path is not stored
+     */
+    public @Nonnull Column getColumn(@Nonnull BeanPath<?> path) {
+        checkNotNull(path, "Argument 'path' must not be null");
+        final Column column = columnsByPath.get(path);
+        checkArgument(column != null, "Path %s is not stored", path);
+        return column;
+    }
+
+    /**
+     * Stored paths, in order of definition
+     */
+    public @Nonnull List<BeanPath<?>> getPaths() {
+        final List<BeanPath<?>> paths = new ArrayList<BeanPath<?>>(columns.length);
+        for (Column column : columns) {
+            paths.add(column.path);
+        }
+        return paths;
+    }
+
+    public boolean isNull(int row, @Nonnull BeanPath<?> path) {
+        return getColumn(path).isNull(row);
+    }
+
+    @SuppressWarnings("unchecked")
+    public @Nullable <T> T get(int row, @Nonnull BeanPath<T> path) {
+        return (T) getColumn(path).get(row);
+    }
+
+    public long getLong(int row, @Nonnull BeanPath<?> path) {
+        return getColumn(path).getLong(row);
+    }
+
+    public int getInt(int row, @Nonnull BeanPath<?> path) {
+        return getColumn(path).getInt(row);
+    }
+
+    public double getDouble(int row, @Nonnull BeanPath<?> path) {
+        return getColumn(path).getDouble(row);
+    }
+
+    public boolean getBoolean(int row, @Nonnull BeanPath<?> path) {
+        return getColumn(path).getBoolean(row);
+    }
+
+    public <T> void set(int row, @Nonnull BeanPath<T> path, @Nullable T value) {
+        getColumn(path).set(row, value);
+    }
+
+    public void setLong(int row, @Nonnull BeanPath<?> path, long value) {
+        getColumn(path).setLong(row, value);
+    }
+
+    public void setInt(int row, @Nonnull BeanPath<?> path, int value) {
+        getColumn(path).setInt(row, value);
+    }
+
+    public void setDouble(int row, @Nonnull BeanPath<?> path, double value) {
+        getColumn(path).setDouble(row, value);
+    }
+
+    public void setBoolean(int row, @Nonnull BeanPath<?> path, boolean value) {
+        getColumn(path).setBoolean(row, value);
+    }
+
+    /**
+     * Releases files of a store built with {@link Builder#build(File)}, does nothing otherwise
+     */
+    @Override
+    public void close() throws IOException {
+        memory.close();
+    }
+
+    /**
+     * Column of a path. Typed getters and setters must match the column type.
+     */
+    public static final class Column {
+        private final PathColumnStore<?> store;
+        private final BeanPath<?> path;
+        private final String name;
+        private final PathAccessor<?> accessor;
+        private final byte type;
+        private final int width;
+        private final Object[] constants; // of enum columns
+
+        private ByteBuffer nulls;
+        private ByteBuffer values;
+        private ByteBuffer strings;
+        private int stringsSize = 0;
+
+        private Column(PathColumnStore<?> store, int index, BeanPath<?> path) {
+            this.store = store;
+            this.path = path;
+            this.name = path.toDotDelimitedString();
+            this.accessor = PathAccessor.of(path);
+            this.type = typeOf(path);
+            this.width = widthOf(type);
+            this.constants = (type == ENUM) ? path.getType().getEnumConstants() : null;
+
+            final String prefix = "column-" + index;
+            this.nulls = store.memory.allocate(prefix + ".nulls", (store.capacity + 7) / 8);
+            this.values = store.memory.allocate(prefix + ".values", store.capacity * width);
+            this.strings = (type == STRING) ? store.memory.allocate(prefix + ".strings", (int) Math.min(16L * store.capacity, Integer.MAX_VALUE)) : null;
+        }
+
+        private static byte typeOf(BeanPath<?> path) {
+            final Class<?> type = path.getType();
+            if (type == String.class) {
+                return STRING;
+            } else if (type.isEnum()) {
+                return ENUM;
+            }
+            final Class<?> primitive = type.isPrimitive() ? type : Primitives.getPrimitiveClass(type);
+            if (primitive == boolean.class) {
+                return BOOLEAN;
+            } else if (primitive == byte.class) {
+                return BYTE;
+            } else if (primitive == short.class) {
+                return SHORT;
+            } else if (primitive == char.class) {
+                return CHAR;
+            } else if (primitive == int.class) {
+                return INT;
+            } else if (primitive == long.class) {
+                return LONG;
+            } else if (primitive == float.class) {
+                return FLOAT;
+            } else if (primitive == double.class) {
+                return DOUBLE;
+            }
+            throw new IllegalArgumentException("Path " + path.toDotDelimitedString() + " is of type "
+                                               + type.getName() + ", that cannot be stored in columns");
+        }
+
+        private static int widthOf(byte type) {
+            switch (type) {
+                case BOOLEAN:
+                case BYTE:
+                    return 1;
+                case SHORT:
+                case CHAR:
+                    return 2;
+                case INT:
+                case FLOAT:
+                case ENUM:
+                    return 4;
+                default:
+                    return 8; // long, double, offset and length of a string
+            }
+        }
+
+        public @Nonnull BeanPath<?> getPath() {
+            return path;
+        }
+
+        public boolean isNull(int row) {
+            checkElementIndex(row, store.size, "row");
+            return (nulls.get(row >> 3) & (1 << (row & 7))) != 0;
+        }
+
+        /**
+         * Value of an {@code int}, {@code short}, {@code byte} or {@code char} column widened to {@code int}
+         */
+        public int getInt(int row) {
+            checkState(isIntLike(), "Column %s is not of int type", name);
+            return isNull(row) ? 0 : readInt(row);
+        }
+
+        /**
+         * Value of an integral column widened to {@code long}
+         */
+        public long getLong(int row) {
+            checkState(type == LONG || isIntLike(), "Column %s is not integral", name);
+            if (isNull(row)) {
+                return 0;
+            }
+            return (type == LONG) ? values.getLong(row << 3) : readInt(row);
+        }
+
+        /**
+         * Value of a numeric column widened to {@code double}
+         */
+        public double getDouble(int row) {
+            checkState(type != BOOLEAN && type != STRING && type != ENUM, "Column %s is not numeric", name);
+            if (isNull(row)) {
+                return 0;
+            }
+            switch (type) {
+                case DOUBLE:
+                    return values.getDouble(row << 3);
+                case FLOAT:
+                    return values.getFloat(row << 2);
+                case LONG:
+                    return values.getLong(row << 3);
+                default:
+                    return readInt(row);
+            }
+        }
+
+        public boolean getBoolean(int row) {
+            checkState(type == BOOLEAN, "Column %s is not boolean", name);
+            return !isNull(row) && values.get(row) != 0;
+        }
+
+        public @Nullable String getString(int row) {
+            checkState(type == STRING, "Column %s is not of string type", name);
+            if (isNull(row)) {
+                return null;
+            }
+            final byte[] bytes = new byte[values.getInt((row << 3) + 4)];
+            final ByteBuffer view = strings.duplicate();
+            view.position(values.getInt(row << 3));
+            view.get(bytes);
+            return new String(bytes, Charsets.UTF_8);
+        }
+
+        /**
+         * Value of any type, boxed to the type of the path; or {@code null}
+         */
+        public @Nullable Object get(int row) {
+            if (isNull(row)) {
+                return null;
+            }
+            switch (type) {
+                case BOOLEAN:
+                    return values.get(row) != 0;
+                case BYTE:
+                    return values.get(row);
+                case SHORT:
+                    return values.getShort(row << 1);
+                case CHAR:
+                    return values.getChar(row << 1);
+                case INT:
+                    return values.getInt(row << 2);
+                case LONG:
+                    return values.getLong(row << 3);
+                case FLOAT:
+                    return values.getFloat(row << 2);
+                case DOUBLE:
+                    return values.getDouble(row << 3);
+                case ENUM:
+                    return constants[values.getInt(row << 2)];
+                default:
+                    return getString(row);
+            }
+        }
+
+        private boolean isIntLike() {
+            return type == INT || type == SHORT || type == BYTE || type == CHAR;
+        }
+
+        private int readInt(int row) {
+            switch (type) {
+                case BYTE:
+                    return values.get(row);
+                case SHORT:
+                    return values.getShort(row << 1);
+                case CHAR:
+                    return values.getChar(row << 1);
+                default:
+                    return values.getInt(row << 2);
+            }
+        }
+
+        /**
+         * Sets value of an {@code int}, {@code short}, {@code byte} or {@code char} column
+         *
+         * @throws IllegalArgumentException if the value does not fit the column type
+         */
+        public void setInt(int row, int value) {
+            checkState(isIntLike(), "Column %s is not of int type", name);
+            checkElementIndex(row, store.size, "row");
+            writeInt(row, value);
+        }
+
+        /**
+         * Sets value of an integral column
+         *
+         * @throws IllegalArgumentException if the value does not fit the column type
+         */
+        public void setLong(int row, long value) {
+            checkState(type == LONG || isIntLike(), "Column %s is not integral", name);
+            checkElementIndex(row, store.size, "row");
+            if (type == LONG) {
+                values.putLong(row << 3, value);
+                setNonNull(row);
+            } else {
+                checkArgument((int) value == value, "Value %s does not fit column %s", value, name);
+                writeInt(row, (int) value);
+            }
+        }
+
+        /**
+         * Sets value of a {@code double} or {@code float} column
+         */
+        public void setDouble(int row, double value) {
+            checkState(type == DOUBLE || type == FLOAT, "Column %s is not floating", name);
+            checkElementIndex(row, store.size, "row");
+            writeDouble(row, value);
+        }
+
+        public void setBoolean(int row, boolean value) {
+            checkState(type == BOOLEAN, "Column %s is not boolean", name);
+            checkElementIndex(row, store.size, "row");
+            values.put(row, (byte) (value ? 1 : 0));
+            setNonNull(row);
+        }
+
+        /**
+         * Sets value of any type, boxed to the type of the path; or {@code null}
+         */
+        public void set(int row, @Nullable Object value) {
+            checkElementIndex(row, store.size, "row");
+            if (value == null) {
+                setNull(row);
+                return;
+            }
+            final Class<?> pathType = path.getType().isPrimitive() ? Primitives.getWrapperClass(path.getType()) : path.getType();
+            checkArgument(pathType.isInstance(value), "Value %s is not applicable to column %s", value, name);
+            writeObject(row, value);
+        }
+
+        // reads each value once, along with its nullness
+        private void load(int row, Object bean, boolean[] isNull) {
+            switch (type) {
+                case BOOLEAN:
+                    final boolean flag = accessor.getBoolean(bean, isNull);
+                    if (!isNull[0]) {
+                        values.put(row, (byte) (flag ? 1 : 0));
+                        setNonNull(row);
+                    }
+                    break;
+                case LONG:
+                    final long longValue = accessor.getLong(bean, isNull);
+                    if (!isNull[0]) {
+                        values.putLong(row << 3, longValue);
+                        setNonNull(row);
+                    }
+                    break;
+                case FLOAT:
+                case DOUBLE:
+                    final double doubleValue = accessor.getDouble(bean, isNull);
+                    if (!isNull[0]) {
+                        writeDouble(row, doubleValue);
+                    }
+                    break;
+                case STRING:
+                case ENUM:
+                    final Object value = accessor.get(bean);
+                    isNull[0] = (value == null);
+                    if (!isNull[0]) {
+                        writeObject(row, value);
+                    }
+                    break;
+                default:
+                    final int intValue = accessor.getInt(bean, isNull);
+                    if (!isNull[0]) {
+                        writeInt(row, intValue);
+                    }
+            }
+            if (isNull[0]) {
+                setNull(row);
+            }
+        }
+
+        private void writeInt(int row, int value) {
+            switch (type) {
+                case BYTE:
+                    checkArgument((byte) value == value, "Value %s does not fit column %s", value, name);
+                    values.put(row, (byte) value);
+                    break;
+                case SHORT:
+                    checkArgument((short) value == value, "Value %s does not fit column %s", value, name);
+                    values.putShort(row << 1, (short) value);
+                    break;
+                case CHAR:
+                    checkArgument((char) value == value, "Value %s does not fit column %s", value, name);
+                    values.putChar(row << 1, (char) value);
+                    break;
+                default:
+                    values.putInt(row << 2, value);
+            }
+            setNonNull(row);
+        }
+
+        private void writeDouble(int row, double value) {
+            if (type == FLOAT) {
+                values.putFloat(row << 2, (float) value);
+            } else {
+                values.putDouble(row << 3, value);
+            }
+            setNonNull(row);
+        }
+
+        private void writeObject(int row, Object value) {
+            switch (type) {
+                case BOOLEAN:
+                    values.put(row, (byte) ((Boolean) value ? 1 : 0));
+                    break;
+                case BYTE:
+                    values.put(row, (Byte) value);
+                    break;
+                case SHORT:
+                    values.putShort(row << 1, (Short) value);
+                    break;
+                case CHAR:
+                    values.putChar(row << 1, (Character) value);
+                    break;
+                case INT:
+                    values.putInt(row << 2, (Integer) value);
+                    break;
+                case LONG:
+                    values.putLong(row << 3, (Long) value);
+                    break;
+                case FLOAT:
+                    values.putFloat(row << 2, (Float) value);
+                    break;
+                case DOUBLE:
+                    values.putDouble(row << 3, (Double) value);
+                    break;
+                case ENUM:
+                    values.putInt(row << 2, ((Enum<?>) value).ordinal());
+                    break;
+                default:
+                    writeString(row, (String) value);
+            }
+            setNonNull(row);
+        }
+
+        private void writeString(int row, String value) {
+            final byte[] bytes = value.getBytes(Charsets.UTF_8);
+            final long required = (long) stringsSize + bytes.length;
+            if (required > strings.capacity()) {
+                checkState(required <= Integer.MAX_VALUE, "Strings of column %s exceed the limit of 2 GB", name);
+                strings = store.memory.grow(strings, (int) Math.min(Integer.MAX_VALUE, Math.max(2L * strings.capacity(), required)));
+            }
+            final ByteBuffer view = strings.duplicate();
+            view.position(stringsSize);
+            view.put(bytes);
+            values.putInt(row << 3, stringsSize);
+            values.putInt((row << 3) + 4, bytes.length);
+            stringsSize += bytes.length;
+        }
+
+        private void setNull(int row) {
+            nulls.put(row >> 3, (byte) (nulls.get(row >> 3) | (1 << (row & 7))));
+        }
+
+        private void setNonNull(int row) {
+            nulls.put(row >> 3, (byte) (nulls.get(row >> 3) & ~(1 << (row & 7))));
+        }
+
+        private void grow(int capacity) {
+            nulls = store.memory.grow(nulls, (capacity + 7) / 8);
+            values = store.memory.grow(values, capacity * width);
+        }
+
+        @Override
+        public String toString() {
+            return "Column(" + name + ")";
+        }
+    }
+
+    /**
+     * Allocates buffers of columns
+     */
+    private interface Memory extends Closeable {
+        ByteBuffer allocate(String name, int size);
+
+        /**
+         * Buffer of {@code size} bytes with the contents of {@code buffer}
+         */
+        ByteBuffer grow(ByteBuffer buffer, int size);
+    }
+
+    private static final class DirectMemory implements Memory {
+        @Override
+        public ByteBuffer allocate(String name, int size) {
+            return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        public ByteBuffer grow(ByteBuffer buffer, int size) {
+            final ByteBuffer grown = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+            final ByteBuffer contents = buffer.duplicate();
+            contents.clear();
+            grown.put(contents);
+            grown.clear();
+            return grown;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    /**
+     * Maps every buffer to a file of its own, that grows by remapping it
+     */
+    private static final class MappedMemory implements Memory {
+        private final File directory;
+        private final Map<ByteBuffer, RandomAccessFile> files = new IdentityHashMap<ByteBuffer, RandomAccessFile>();
+
+        private MappedMemory(File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public ByteBuffer allocate(String name, int size) {
+            final File file = new File(directory, name);
+            try {
+                final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                raf.setLength(0);
+                return map(raf, size);
+            } catch (IOException x) {
+                throw new BeanPathMagicException("Failed to map file [%s]", file, x);
+            }
+        }
+
+        @Override
+        public ByteBuffer grow(ByteBuffer buffer, int size) {
+            final RandomAccessFile raf = files.remove(buffer);
+            try {
+                return map(raf, size); // the file keeps the contents
+            } catch (IOException x) {
+                throw new BeanPathMagicException("Failed to grow mapped file in [%s]", directory, x);
+            }
+        }
+
+        private ByteBuffer map(RandomAccessFile raf, int size) throws IOException {
+            final ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size).order(ByteOrder.nativeOrder());
+            files.put(buffer, raf);
+            return buffer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (RandomAccessFile raf : files.values()) {
+                try {
+                    raf.close();
+                } catch (IOException x) {
+                    failure = x;
+                }
+            }
+            files.clear();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    public static final class Builder<B> {
+        private final Class<B> beanType;
+        private final List<BeanPath<?>> paths = new ArrayList<BeanPath<?>>();
+        private int capacity = DEFAULT_CAPACITY;
+
+        private Builder(Class<B> beanType) {
+            this.beanType = beanType;
+        }
+
+        /**
+         * @throws IllegalArgumentException if some path is not readable or is of a type that cannot be stored
+         */
+        public @Nonnull Builder<B> columns(@Nonnull BeanPath<?>... paths) {
+            checkNotNull(paths, "Argument 'paths' must not be null");
+            for (BeanPath<?> path : paths) {
+                checkNotNull(path, "Argument 'paths' must not contain nulls");
+                checkArgument(!path.isRoot(), "Root path cannot be stored");
+                checkArgument(path.getRoot().getType().isAssignableFrom(beanType),
+                              "Path %s is not applicable to %s", path, beanType);
+                checkArgument(!this.paths.contains(path), "Path %s is already stored", path);
+                Column.typeOf(path);
+                PathAccessor.of(path);
+                this.paths.add(path);
+            }
+            return this;
+        }
+
+        /**
+         * Number of rows to allocate memory for initially
+         */
+        public @Nonnull Builder<B> capacity(int capacity) {
+            checkArgument(capacity > 0 && capacity <= MAX_CAPACITY, "Capacity must be between 1 and %s", MAX_CAPACITY);
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Creates the store in direct memory
+         */
+        public @Nonnull PathColumnStore<B> build() {
+            checkArgument(!paths.isEmpty(), "No columns defined");
+            return new PathColumnStore<B>(paths, capacity, new DirectMemory());
+        }
+
+        /**
+         * Creates the store in files of {@code directory}, mapped into memory.
+         * Files are overwritten, and are left in place when the store is closed.
+         */
+        public @Nonnull PathColumnStore<B> build(@Nonnull File directory) {
+            checkNotNull(directory, "Argument 'directory' must not be null");
+            checkArgument(directory.isDirectory(), "%s is not a directory", directory);
+            checkArgument(!paths.isEmpty(), "No columns defined");
+            return new PathColumnStore<B>(paths, capacity, new MappedMemory(directory));
+        }
+    }
+
+    @Override
+    public String toString() {
+        final String[] names = new String[columns.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = columns[i].name;
+        }
+        return "PathColumnStore" + Arrays.toString(names);
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import com.google.common.base.Charsets;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Exports paths of beans into a columnar file, one column per path:
+ * <pre><code>
+ *     Order order = root(Order.class);
+ *     PathColumnWriter&lt;Order&gt; writer = PathColumnWriter.of(Order.class)
+ *             .columns($(order.getId()), $(order.getCustomer().getName()), $(order.getTotal()))
+ *             .build();
+ *
+ *     writer.write(orders, file);
+ * </code></pre>
+ * Integral paths are stored as {@code int} or {@code long}, floating ones as {@code double},
+ * booleans as bytes; all the other values as dictionary encoded strings of their {@code toString()}.
+ * Unreachable paths and {@code null} values are marked in a per-column null bitmap.
+ * The file is written through a memory mapping and read with {@link PathColumnReader}.
+ * <p/>
+ * Values are written straight into the mapping, row by row, each value is read once;
+ * only dictionaries of string columns are accumulated in heap, and are written after all the columns.
+ * No per-row objects are created. Files are limited to 2 GB.
+ * <p/>
+ * Instances are immutable and thread safe.
+ */
+public final class PathColumnWriter<B> {
+    static final int MAGIC = 0x42504346; // "BPCF"
+    static final int VERSION = 2;
+
+    static final byte INT = 1, LONG = 2, DOUBLE = 3, BOOLEAN = 4, STRING = 5;
+
+    private final PathAccessor<?>[] accessors;
+    private final byte[] types;
+
+    private PathColumnWriter(List<PathAccessor<?>> accessors) {
+        this.accessors = accessors.toArray(new PathAccessor<?>[accessors.size()]);
+        this.types = new byte[this.accessors.length];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = typeOf(this.accessors[i]);
+        }
+    }
+
+    /**
+     * Starts writer definition for beans of {@code beanType}
+     */
+    public static @Nonnull <B> Builder<B> of(@Nonnull Class<B> beanType) {
+        checkNotNull(beanType, "Argument 'beanType' must not be null");
+        return new Builder<B>(beanType);
+    }
+
+    private static byte typeOf(PathAccessor<?> accessor) {
+        final Class<?> type = accessor.getPath().getType();
+        if (type == Character.class) {
+            return STRING;
+        } else if (type == Long.class) {
+            return LONG;
+        } else if (accessor.isIntegral()) {
+            return INT;
+        } else if (accessor.isFloating()) {
+            return DOUBLE;
+        } else if (accessor.isBoolean()) {
+            return BOOLEAN;
+        } else {
+            return STRING;
+        }
+    }
+
+    /**
+     * Writes the beans into the file, replacing its contents
+     */
+    public void write(@Nonnull Collection<? extends B> beans, @Nonnull File file) throws IOException {
+        checkNotNull(beans, "Argument 'beans' must not be null");
+        checkNotNull(file, "Argument 'file' must not be null");
+
+        final int rows = beans.size();
+
+        // header: magic, version, rows, columns, then per column: name, type, data offset and length,
+        // dictionary offset and length; followed by data of the columns, then by dictionaries of string ones
+        final byte[][] names = new byte[accessors.length][];
+        long headerSize = 16;
+        for (int i = 0; i < accessors.length; i++) {
+            names[i] = accessors[i].getPath().toDotDelimitedString().getBytes(Charsets.UTF_8);
+            headerSize += 4 + names[i].length + 1 + 4 * 8;
+        }
+
+        long size = align(headerSize);
+        final long[] offsets = new long[accessors.length];
+        for (int i = 0; i < accessors.length; i++) {
+            offsets[i] = size;
+            size = align(size + dataSize(types[i], rows));
+        }
+        checkArgument(size <= Integer.MAX_VALUE, "Export of %s bytes exceeds the limit of 2 GB", size);
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            final FileChannel channel = raf.getChannel();
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            // values are written through the mapping row by row, only dictionaries are kept in heap
+            final Column[] columns = new Column[accessors.length];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new Column(types[i], (int) offsets[i], rows);
+            }
+            final boolean[] isNull = new boolean[1];
+            int row = 0;
+            for (B bean : beans) {
+                checkArgument(row < rows, "Collection of beans has grown while being written");
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i].write(buffer, accessors[i], bean, row, isNull);
+                }
+                row++;
+            }
+            checkArgument(row == rows, "Collection of beans has shrunk while being written");
+
+            final long[] dictionaryOffsets = new long[columns.length];
+            long end = size;
+            for (int i = 0; i < columns.length; i++) {
+                dictionaryOffsets[i] = end;
+                end += columns[i].dictionarySize();
+            }
+            checkArgument(end <= Integer.MAX_VALUE, "Export of %s bytes exceeds the limit of 2 GB", end);
+            if (end > size) {
+                final MappedByteBuffer dictionaries = channel.map(FileChannel.MapMode.READ_WRITE, size, end - size);
+                for (Column column : columns) {
+                    column.writeDictionary(dictionaries);
+                }
+                dictionaries.force();
+            }
+
+            buffer.position(0);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(columns.length);
+            for (int i = 0; i < columns.length; i++) {
+                buffer.putInt(names[i].length).put(names[i]).put(types[i])
+                        .putLong(offsets[i]).putLong(dataSize(types[i], rows))
+                        .putLong(dictionaryOffsets[i]).putLong(columns[i].dictionarySize());
+            }
+            buffer.force();
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Size of the null bitmap and the values (or dictionary codes) of a column
+     */
+    private static long dataSize(byte type, int rows) {
+        final long nullsSize = (rows + 7) / 8;
+        switch (type) {
+            case LONG:
+            case DOUBLE:
+                return nullsSize + 8L * rows;
+            case BOOLEAN:
+                return nullsSize + rows;
+            default:
+                return nullsSize + 4L * rows;
+        }
+    }
+
+    /**
+     * Column being written: null bitmap followed by values, at {@code offset} of the mapping.
+     * Strings are written as codes of a dictionary, that is accumulated to be written at the end.
+     */
+    private static final class Column {
+        private final byte type;
+        private final int offset;
+        private final int valuesOffset;
+        private final Map<String, Integer> codes;
+        private final List<byte[]> dictionary;
+        private long dictionarySize = 0;
+
+        private Column(byte type, int offset, int rows) {
+            this.type = type;
+            this.offset = offset;
+            this.valuesOffset = offset + (rows + 7) / 8;
+            if (type == STRING) {
+                codes = new HashMap<String, Integer>();
+                dictionary = new ArrayList<byte[]>();
+                dictionarySize = 4;
+            } else {
+                codes = null;
+                dictionary = null;
+            }
+        }
+
+        public void write(ByteBuffer buffer, PathAccessor<?> accessor, Object bean, int row, boolean[] isNull) {
+            switch (type) {
+                case INT:
+                    buffer.putInt(valuesOffset + 4 * row, accessor.getInt(bean, isNull));
+                    break;
+                case LONG:
+                    buffer.putLong(valuesOffset + 8 * row, accessor.getLong(bean, isNull));
+                    break;
+                case DOUBLE:
+                    buffer.putDouble(valuesOffset + 8 * row, accessor.getDouble(bean, isNull));
+                    break;
+                case BOOLEAN:
+                    buffer.put(valuesOffset + row, (byte) (accessor.getBoolean(bean, isNull) ? 1 : 0));
+                    break;
+                default:
+                    final Object value = accessor.get(bean);
+                    isNull[0] = (value == null);
+                    buffer.putInt(valuesOffset + 4 * row, isNull[0] ? 0 : codeOf(String.valueOf(value)));
+                    break;
+            }
+            if (isNull[0]) {
+                final int index = offset + (row >> 3);
+                buffer.put(index, (byte) (buffer.get(index) | (1 << (row & 7))));
+            }
+        }
+
+        private int codeOf(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                final byte[] bytes = value.getBytes(Charsets.UTF_8);
+                dictionary.add(bytes);
+                dictionarySize += 4 + bytes.length;
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        public long dictionarySize() {
+            return (dictionary != null) ? dictionarySize : 0;
+        }
+
+        public void writeDictionary(ByteBuffer buffer) {
+            if (dictionary != null) {
+                buffer.putInt(dictionary.size());
+                for (byte[] bytes : dictionary) {
+                    buffer.putInt(bytes.length).put(bytes);
+                }
+            }
+        }
+    }
+
+    public static final class Builder<B> {
+        private final Class<B> beanType;
+        private final List<PathAccessor<?>> accessors = new ArrayList<PathAccessor<?>>();
+
+        private Builder(Class<B> beanType) {
+            this.beanType = beanType;
+        }
+
+        public @Nonnull Builder<B> columns(@Nonnull BeanPath<?>... paths) {
+            checkNotNull(paths, "Argument 'paths' must not be null");
+            for (BeanPath<?> path : paths) {
+                checkNotNull(path, "Argument 'paths' must not contain nulls");
+                checkArgument(path.getRoot().getType().isAssignableFrom(beanType),
+                              "Path %s is not applicable to %s", path, beanType);
+                for (PathAccessor<?> accessor : accessors) {
+                    checkArgument(!accessor.getPath().equals(path), "Path %s is already exported", path);
+                }
+                accessors.add(PathAccessor.of(path));
+            }
+            return this;
+        }
+
+        public @Nonnull PathColumnWriter<B> build() {
+            checkArgument(!accessors.isEmpty(), "No columns defined");
+            return new PathColumnWriter<B>(accessors);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final String[] paths = new String[accessors.length];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = accessors[i].getPath().toDotDelimitedString();
+        }
+        return "PathColumnWriter" + Arrays.toString(paths);
+    }
+}
@@ -0,0 +1,356 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import com.google.common.base.Equivalence;
+import com.google.common.base.Objects;
+import com.google.common.primitives.Longs;
+import net.bytebuddy.jar.asm.Label;
+import net.bytebuddy.jar.asm.Opcodes;
+import ru.custis.beanpath.BytecodeMaker.Emitter;
+import ru.custis.beanpath.BytecodeMaker.MethodBody;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Equivalence of beans by values of the given paths, e.g. by a business key spread across nested beans:
+ * <pre><code>
+ *     Order order = root(Order.class);
+ *     PathEquivalence&lt;Order&gt; byKey = PathEquivalence.of(Order.class,
+ *             $(order.getCustomer().getName()), $(order.getCustomer().getAddress().getCity()));
+ *
+ *     Set&lt;Equivalence.Wrapper&lt;Order&gt;&gt; unique = new HashSet&lt;Equivalence.Wrapper&lt;Order&gt;&gt;();
+ *     for (Order o : orders) {
+ *         if (unique.add(byKey.wrap(o))) { ... }
+ *     }
+ * </code></pre>
+ * <p/>
+ * Equivalence is compiled into a generated class that calls getters directly.
+ * Common prefixes of the paths are read once per bean (e.g. {@code customer} in the example),
+ * primitive leaves are compared and hashed without boxing.
+ * <p/>
+ * Comparison is null-safe: unreachable paths are considered {@code null}, so they are equal
+ * to each other and to reachable {@code null} values. Unreachable primitive leaves
+ * are equal to each other only. Floating point leaves are compared like their wrappers do.
+ * <p/>
+ * Equivalences are cached per bean type and paths. Instances are immutable and thread safe.
+ */
+public abstract class PathEquivalence<T> extends Equivalence<T> {
+    private Class<T> beanType;
+    private List<BeanPath<?>> paths;
+
+    protected PathEquivalence() {}
+
+    /**
+     * Equivalence of beans of {@code beanType} by values of all the {@code paths}
+     *
+     * @throws IllegalArgumentException if some path is not applicable to the bean type,
+     *                                  or some path element has no public getter
+     */
+    @SuppressWarnings("unchecked")
+    public static @Nonnull <T> PathEquivalence<T> of(@Nonnull Class<T> beanType, @Nonnull BeanPath<?>... paths) {
+        checkNotNull(beanType, "Argument 'beanType' must not be null");
+        checkNotNull(paths, "Argument 'paths' must not be null");
+        checkArgument(paths.length > 0, "At least one path must be compared");
+
+        final List<Object> key = new ArrayList<Object>(paths.length + 1);
+        key.add(beanType);
+        key.addAll(Arrays.asList(paths));
+
+        PathEquivalence<?> equivalence = cache.get(key);
+        if (equivalence == null) {
+            equivalence = compile(beanType, paths);
+            cache.put(key, equivalence); // its ok if two threads compile it twice concurrently
+        }
+        return (PathEquivalence<T>) equivalence;
+    }
+
+    private static final Map<List<Object>, PathEquivalence<?>> cache = new ConcurrentHashMap<List<Object>, PathEquivalence<?>>();
+
+    /**
+     * The paths beans are compared by
+     */
+    public final @Nonnull List<BeanPath<?>> getPaths() {
+        return paths;
+    }
+
+    @Override
+    protected final boolean doEquivalent(T a, T b) {
+        return equalValues(a, b);
+    }
+
+    @Override
+    protected final int doHash(T bean) {
+        return hashValues(bean);
+    }
+
+    @Override
+    public String toString() {
+        return "PathEquivalence(" + beanType.getName() + ", " + paths + ")";
+    }
+
+    // Implemented by generated code
+
+    protected abstract boolean equalValues(Object a, Object b);
+
+    protected abstract int hashValues(Object bean);
+
+    /**
+     * Path element shared by one or more of the compared paths
+     */
+    private static final class Node {
+        private final Method getter;
+        private final Class<?> type;
+        private final Map<String, Node> children = new LinkedHashMap<String, Node>();
+        private boolean leaf = false;
+
+        private Node(Method getter, Class<?> type) {
+            this.getter = getter;
+            this.type = type;
+        }
+
+        private boolean isPrimitive() {
+            return getter != null && getter.getReturnType().isPrimitive();
+        }
+    }
+
+    private static <T> PathEquivalence<T> compile(final Class<T> beanType, BeanPath<?>[] paths) {
+        final Node root = new Node(null, beanType);
+        for (BeanPath<?> path : paths) {
+            checkNotNull(path, "Argument 'paths' must not contain nulls");
+            checkArgument(!path.isRoot(), "Root path cannot be compared");
+            checkArgument(path.getRoot().getType().isAssignableFrom(beanType),
+                          "Path %s is not applicable to %s", path, beanType);
+
+            final List<Method> getters = PropertyMethods.getters(path);
+            Node node = root;
+            int i = 0;
+            for (BeanPath<?> element : path) {
+                if (!element.hasParent()) {
+                    continue;
+                }
+                final Method getter = getters.get(i++);
+                final String key = getter.getName() + ':' + element.getType().getName(); // as it may be narrowed
+                Node child = node.children.get(key);
+                if (child == null) {
+                    child = new Node(getter, element.getType());
+                    node.children.put(key, child);
+                }
+                node = child;
+            }
+            node.leaf = true;
+        }
+
+        final Map<String, MethodBody> bodies = new LinkedHashMap<String, MethodBody>();
+        bodies.put("equalValues", new MethodBody() {
+            @Override
+            public void emit(Emitter emitter) {
+                final int a = emitter.newLocal(Object.class);
+                final int b = emitter.newLocal(Object.class);
+                emitter.loadArgument(Object.class, 0);
+                emitter.checkCast(beanType);
+                emitter.store(Object.class, a);
+                emitter.loadArgument(Object.class, 1);
+                emitter.checkCast(beanType);
+                emitter.store(Object.class, b);
+
+                final Label notEqual = new Label();
+                for (Node child : root.children.values()) {
+                    emitEqual(emitter, child, beanType, a, b, notEqual);
+                }
+                emitter.pushInt(1);
+                emitter.returnValue(boolean.class);
+                emitter.label(notEqual);
+                emitter.pushInt(0);
+                emitter.returnValue(boolean.class);
+            }
+        });
+        bodies.put("hashValues", new MethodBody() {
+            @Override
+            public void emit(Emitter emitter) {
+                final int bean = emitter.newLocal(Object.class);
+                final int hash = emitter.newLocal(int.class);
+                emitter.loadArgument(Object.class, 0);
+                emitter.checkCast(beanType);
+                emitter.store(Object.class, bean);
+                emitter.pushInt(1);
+                emitter.store(int.class, hash);
+
+                for (Node child : root.children.values()) {
+                    emitHash(emitter, child, beanType, bean, hash);
+                }
+                emitter.load(int.class, hash);
+                emitter.returnValue(int.class);
+            }
+        });
+
+        @SuppressWarnings("unchecked")
+        final PathEquivalence<T> equivalence = BytecodeMaker.createInstance(
+                PathEquivalence.class, beanType.getSimpleName(), bodies);
+        equivalence.beanType = beanType;
+        equivalence.paths = Collections.unmodifiableList(new ArrayList<BeanPath<?>>(Arrays.asList(paths)));
+        return equivalence;
+    }
+
+    /**
+     * Compares {@code node} of the beans, whose owners are in {@code a} and {@code b} locals
+     * ({@code null} if unreachable); jumps to {@code notEqual} if some leaf differs
+     */
+    private static void emitEqual(Emitter emitter, Node node, Class<?> ownerType, int a, int b, Label notEqual) {
+        if (node.isPrimitive()) {
+            final Label aPresent = new Label();
+            final Label done = new Label();
+            emitter.load(Object.class, a);
+            emitter.ifNonNull(aPresent);
+            emitter.load(Object.class, b);
+            emitter.ifNonNull(notEqual);
+            emitter.jump(done);
+            emitter.label(aPresent);
+            emitter.load(Object.class, b);
+            emitter.ifNull(notEqual);
+            emitter.load(Object.class, a);
+            emitter.invoke(ownerType, node.getter);
+            emitter.load(Object.class, b);
+            emitter.invoke(ownerType, node.getter);
+            emitter.ifNotEqual(node.getter.getReturnType(), notEqual);
+            emitter.label(done);
+            return;
+        }
+
+        final int aValue = readNullSafe(emitter, node, ownerType, a);
+        final int bValue = readNullSafe(emitter, node, ownerType, b);
+
+        if (node.leaf) {
+            emitter.load(Object.class, aValue);
+            emitter.load(Object.class, bValue);
+            emitter.invokeStatic(Objects.class, "equal", boolean.class, Object.class, Object.class);
+            emitter.ifFalse(notEqual);
+        }
+        if (!node.children.isEmpty()) {
+            // leaves of two unreachable subtrees are all null, so equal
+            final Label compare = new Label();
+            final Label skip = new Label();
+            emitter.load(Object.class, aValue);
+            emitter.ifNonNull(compare);
+            emitter.load(Object.class, bValue);
+            emitter.ifNull(skip);
+            emitter.label(compare);
+            for (Node child : node.children.values()) {
+                emitEqual(emitter, child, node.type, aValue, bValue, notEqual);
+            }
+            emitter.label(skip);
+        }
+    }
+
+    /**
+     * Mixes hashes of the leaves of {@code node} into {@code hash} local. Unreachable subtrees
+     * are not skipped, so that they hash the same as reachable {@code null} (or zero) leaves do
+     */
+    private static void emitHash(Emitter emitter, Node node, Class<?> ownerType, int owner, int hash) {
+        if (node.isPrimitive()) {
+            final Class<?> type = node.getter.getReturnType();
+            final Label absent = new Label();
+            final Label done = new Label();
+            emitter.load(int.class, hash);
+            emitter.pushInt(31);
+            emitter.visitor().visitInsn(Opcodes.IMUL);
+            emitter.load(Object.class, owner);
+            emitter.ifNull(absent);
+            emitter.load(Object.class, owner);
+            emitter.invoke(ownerType, node.getter);
+            hashPrimitive(emitter, type);
+            emitter.jump(done);
+            emitter.label(absent);
+            emitter.pushInt(0);
+            emitter.label(done);
+            emitter.visitor().visitInsn(Opcodes.IADD);
+            emitter.store(int.class, hash);
+            return;
+        }
+
+        final int value = readNullSafe(emitter, node, ownerType, owner);
+        if (node.leaf) {
+            final Label absent = new Label();
+            final Label done = new Label();
+            emitter.load(int.class, hash);
+            emitter.pushInt(31);
+            emitter.visitor().visitInsn(Opcodes.IMUL);
+            emitter.load(Object.class, value);
+            emitter.ifNull(absent);
+            emitter.load(Object.class, value);
+            emitter.invokeVirtual(Object.class, "hashCode", int.class);
+            emitter.jump(done);
+            emitter.label(absent);
+            emitter.pushInt(0);
+            emitter.label(done);
+            emitter.visitor().visitInsn(Opcodes.IADD);
+            emitter.store(int.class, hash);
+        }
+        for (Node child : node.children.values()) {
+            emitHash(emitter, child, node.type, value, hash);
+        }
+    }
+
+    /**
+     * Turns a primitive on stack into its {@code int} hash, the same way its wrapper does,
+     * but {@code boolean} that is hashed as {@code 0} or {@code 1}
+     */
+    private static void hashPrimitive(Emitter emitter, Class<?> type) {
+        if (type == long.class) {
+            emitter.invokeStatic(Longs.class, "hashCode", int.class, long.class);
+        } else if (type == float.class) {
+            emitter.invokeStatic(Float.class, "floatToIntBits", int.class, float.class);
+        } else if (type == double.class) {
+            emitter.invokeStatic(Double.class, "doubleToLongBits", long.class, double.class);
+            emitter.invokeStatic(Longs.class, "hashCode", int.class, long.class);
+        }
+        // int-like and boolean values are hashes of their own
+    }
+
+    /**
+     * Reads reference {@code node} of the owner in {@code owner} local into a new local,
+     * that is {@code null} if the owner is {@code null}
+     */
+    private static int readNullSafe(Emitter emitter, Node node, Class<?> ownerType, int owner) {
+        final int value = emitter.newLocal(Object.class);
+        final Label ownerNull = new Label();
+        final Label done = new Label();
+        emitter.load(Object.class, owner);
+        emitter.ifNull(ownerNull);
+        emitter.load(Object.class, owner);
+        emitter.invoke(ownerType, node.getter);
+        emitter.checkCast(node.getter.getReturnType(), node.type);
+        emitter.store(Object.class, value);
+        emitter.jump(done);
+        emitter.label(ownerNull);
+        emitter.pushNull();
+        emitter.store(Object.class, value);
+        emitter.label(done);
+        return value;
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import com.google.common.collect.AbstractIterator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Lazily evaluates a path that traverses collections
+ * (see {@link BeanPathMagic#each(Iterable)}) into a sequence of leaf values:
+ * <pre><code>
+ *     Customer customer = root(Customer.class);
+ *     PathEvaluator&lt;Double&gt; prices = PathEvaluator.of($(each(each(customer.getOrders()).getLines()).getPrice()));
+ *
+ *     for (Double price : prices.values(someCustomer)) { ... }
+ * </code></pre>
+ * <p/>
+ * Values are produced one by one, while iterating, without materializing intermediate collections.
+ * Unreachable branches (i.e. {@code null} intermediate beans, collections or collection elements)
+ * are skipped, {@code null} leaf values are not.
+ * <p/>
+ * Evaluators are cached per path. Instances are immutable and thread safe.
+ */
+public final class PathEvaluator<T> {
+    private final BeanPath<T> path;
+
+    // steps.length == (number of each-elements in the path) + 1,
+    // every step but the last reads a collection to traverse, the last one reads the leaf;
+    // null step stands for identity, e.g. for each(each(...)) or for a path ending with each()
+    private final PathAccessor<?>[] steps;
+
+    private PathEvaluator(BeanPath<T> path, PathAccessor<?>[] steps) {
+        this.path = path;
+        this.steps = steps;
+    }
+
+    /**
+     * Evaluator of the given path, that may or may not traverse collections
+     *
+     * @throws IllegalArgumentException if some path element has no public getter
+     */
+    @SuppressWarnings("unchecked")
+    public static @Nonnull <T> PathEvaluator<T> of(@Nonnull BeanPath<T> path) {
+        checkNotNull(path, "Argument 'path' must not be null");
+        PathEvaluator<?> evaluator = cache.get(path);
+        if (evaluator == null) {
+            evaluator = compile(path);
+            cache.put(path, evaluator);  // its ok if two threads compile it twice concurrently
+        }
+        return (PathEvaluator<T>) evaluator;
+    }
+
+    private static final Map<BeanPath<?>, PathEvaluator<?>> cache = new ConcurrentHashMap<BeanPath<?>, PathEvaluator<?>>();
+
+    private static <T> PathEvaluator<T> compile(BeanPath<T> path) {
+        final List<PathAccessor<?>> steps = new ArrayList<PathAccessor<?>>();
+        BeanPath<?> section = null;
+        for (BeanPath<?> element : path) {
+            if (section == null) {
+                section = BeanPath.root(element.getType());
+            } else if (element.isEach()) {
+                checkArgument(Iterable.class.isAssignableFrom(section.getType()),
+                              "Path %s traverses %s, that is not Iterable", path, section);
+                steps.add(section.isRoot() ? null : PathAccessor.of(section));
+                section = BeanPath.root(element.getType());
+            } else {
+                section = section.append(element.getName(), element.getType());
+            }
+        }
+        assert (section != null);
+        steps.add(section.isRoot() ? null : PathAccessor.of(section));
+        return new PathEvaluator<T>(path, steps.toArray(new PathAccessor<?>[steps.size()]));
+    }
+
+    public @Nonnull BeanPath<T> getPath() {
+        return path;
+    }
+
+    /**
+     * Lazy sequence of the path values of the {@code bean}
+     */
+    public @Nonnull Iterable<T> values(@Nonnull final Object bean) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new ValueIterator<T>(steps, new SingletonIterator(bean));
+            }
+        };
+    }
+
+    /**
+     * Lazy sequence of the path values of all the {@code beans}, one bean after another
+     */
+    public @Nonnull Iterable<T> values(@Nonnull final Iterable<?> beans) {
+        checkNotNull(beans, "Argument 'beans' must not be null");
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new ValueIterator<T>(steps, beans.iterator());
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "PathEvaluator(" + path + ")";
+    }
+
+    /**
+     * Depth-first traversal with a stack of iterators, one per collection level
+     */
+    private static final class ValueIterator<T> extends AbstractIterator<T> {
+        private final PathAccessor<?>[] steps;
+        private final Iterator<?>[] iterators;
+        private int depth = 0;
+
+        private ValueIterator(PathAccessor<?>[] steps, Iterator<?> roots) {
+            this.steps = steps;
+            this.iterators = new Iterator<?>[steps.length];
+            this.iterators[0] = roots;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected T computeNext() {
+            final int leafDepth = steps.length - 1;
+            while (depth >= 0) {
+                final Iterator<?> iterator = iterators[depth];
+                if (!iterator.hasNext()) {
+                    iterators[depth--] = null;
+                    continue;
+                }
+                final Object bean = iterator.next();
+                if (bean == null) {
+                    continue;
+                }
+                if (depth == leafDepth) {
+                    return (T) apply(steps[depth], bean);
+                }
+                final Iterable<?> collection = (Iterable<?>) apply(steps[depth], bean);
+                if (collection != null) {
+                    iterators[++depth] = collection.iterator();
+                }
+            }
+            return endOfData();
+        }
+
+        private static Object apply(@Nullable PathAccessor<?> step, Object bean) {
+            return (step == null) ? bean : step.get(bean);
+        }
+    }
+
+    private static final class SingletonIterator extends AbstractIterator<Object> {
+        private Object value;
+
+        private SingletonIterator(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        protected Object computeNext() {
+            final Object result = value;
+            value = null;
+            return (result != null) ? result : endOfData();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Secondary index over a collection of beans, keyed by values of one or more paths:
+ * <pre><code>
+ *     Order order = root(Order.class);
+ *     PathIndex&lt;Order&gt; byCustomer = PathIndex.hash(Order.class, $(order.getCustomer().getName()));
+ *     byCustomer.addAll(orders);
+ *
+ *     byCustomer.find("John Smith"); // orders of John Smith, without scanning
+ * </code></pre>
+ * <p/>
+ * {@link #hash(Class, BeanPath[]) Hash} index answers equality lookups,
+ * {@link #sorted(Class, BeanPath[]) sorted} one answers range lookups too.
+ * Key of a composite index (of several paths) is the list of path values, sorted lexicographically.
+ * Unreachable paths index as {@code null}, that is sorted before any other value.
+ * <p/>
+ * Beans are tracked by identity. If indexed values of a bean change, the index must be told
+ * via {@link #update(Object)}.
+ * <p/>
+ * Lookups are lock-free and may run concurrently with modifications.
+ * Each lookup sees every key either before or after a modification,
+ * but {@link #update(Object)} is not atomic: concurrent lookup may miss the bean being updated.
+ * Modifications are serialized.
+ */
+public final class PathIndex<T> {
+    private static final Object NULL_KEY = new Object() {
+        @Override
+        public String toString() {
+            return "NULL_KEY";
+        }
+    };
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private final PathAccessor<?>[] accessors;
+    private final Class<?>[] types;
+    private final ConcurrentMap<Object, Object[]> buckets;
+    private final boolean sorted;
+
+    // guarded by this
+    private final Map<T, Object> keys = new IdentityHashMap<T, Object>();
+    private volatile int size = 0;
+
+    private PathIndex(Class<T> beanType, BeanPath<?>[] paths, boolean sorted) {
+        checkNotNull(beanType, "Argument 'beanType' must not be null");
+        checkNotNull(paths, "Argument 'paths' must not be null");
+        checkArgument(paths.length > 0, "At least one path must be indexed");
+
+        this.accessors = new PathAccessor<?>[paths.length];
+        this.types = new Class<?>[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            final BeanPath<?> path = checkNotNull(paths[i], "Argument 'paths' must not contain nulls");
+            checkArgument(path.getRoot().getType().isAssignableFrom(beanType),
+                          "Path %s is not applicable to %s", path, beanType);
+            if (sorted) {
+                checkArgument(Comparable.class.isAssignableFrom(path.getType()),
+                              "Path %s is not Comparable, so cannot be sorted", path);
+                checkArgument(isMutuallyComparable(path.getType()),
+                              "Path %s is of abstract type %s, whose values may be not comparable to each other",
+                              path, path.getType().getName());
+            }
+            accessors[i] = PathAccessor.of(path);
+            types[i] = path.getType();
+        }
+
+        this.sorted = sorted;
+        this.buckets = sorted ? new ConcurrentSkipListMap<Object, Object[]>(KeyComparator.INSTANCE)
+                              : new ConcurrentHashMap<Object, Object[]>();
+    }
+
+    // values of an interface or an abstract class may be of unrelated implementations, e.g. Integer and Long
+    private static boolean isMutuallyComparable(Class<?> type) {
+        return type.isEnum() || (!type.isInterface() && !Modifier.isAbstract(type.getModifiers()));
+    }
+
+    /**
+     * Index that answers equality lookups
+     */
+    public static @Nonnull <T> PathIndex<T> hash(@Nonnull Class<T> beanType, @Nonnull BeanPath<?>... paths) {
+        return new PathIndex<T>(beanType, paths, false);
+    }
+
+    /**
+     * Index that answers both equality and range lookups.
+     * All the paths must be of concrete {@link Comparable} types, so that their values are comparable to each other.
+     */
+    public static @Nonnull <T> PathIndex<T> sorted(@Nonnull Class<T> beanType, @Nonnull BeanPath<?>... paths) {
+        return new PathIndex<T>(beanType, paths, true);
+    }
+
+    /**
+     * Indexes the bean. Does nothing, if the bean is already indexed.
+     */
+    public synchronized void add(@Nonnull T bean) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        if (keys.containsKey(bean)) {
+            return;
+        }
+        final Object key = keyOf(bean);
+        keys.put(bean, key);
+        size = keys.size();
+        addToBucket(key, bean);
+    }
+
+    public synchronized void addAll(@Nonnull Iterable<? extends T> beans) {
+        checkNotNull(beans, "Argument 'beans' must not be null");
+        for (T bean : beans) {
+            add(bean);
+        }
+    }
+
+    /**
+     * Removes the bean from the index
+     *
+     * @return {@code false} if the bean was not indexed
+     */
+    public synchronized boolean remove(@Nonnull T bean) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        if (!keys.containsKey(bean)) {
+            return false;
+        }
+        final Object key = keys.remove(bean);
+        size = keys.size();
+        removeFromBucket(key, bean);
+        return true;
+    }
+
+    /**
+     * Re-indexes the bean after its indexed values have changed;
+     * or just indexes it, if it was not indexed yet
+     */
+    public synchronized void update(@Nonnull T bean) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        final Object newKey = keyOf(bean);
+        if (keys.containsKey(bean)) {
+            final Object oldKey = keys.get(bean);
+            if (oldKey.equals(newKey)) {
+                return;
+            }
+            removeFromBucket(oldKey, bean);
+        }
+        keys.put(bean, newKey);
+        size = keys.size();
+        addToBucket(newKey, bean);
+    }
+
+    /**
+     * Number of indexed beans
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Beans whose indexed paths have given values, one value per indexed path.
+     * Use {@code null} to look up unreachable paths or {@code null} values.
+     *
+     * @throws IllegalArgumentException if the index is sorted, and a value is not of the type of its path
+     */
+    public @Nonnull List<T> find(@Nullable Object... values) {
+        if (values == null) { // find(null) for a single path
+            values = new Object[]{null};
+        }
+        checkArgument(values.length == accessors.length,
+                      "Expected %s values, but got %s", accessors.length, values.length);
+        if (sorted) {
+            for (int i = 0; i < values.length; i++) {
+                checkValueType(i, values[i]);
+            }
+        }
+        return asList(buckets.get(keyOf(values)));
+    }
+
+    /**
+     * Beans whose indexed values are in given range, in order of the values; none if the range is empty.
+     * Bounds of a composite index are lists of values, one value per indexed path.
+     *
+     * @param from lower bound, or {@code null} if unbounded
+     * @param to   upper bound, or {@code null} if unbounded
+     * @throws UnsupportedOperationException if the index is not {@link #sorted(Class, BeanPath[]) sorted}
+     * @throws IllegalArgumentException      if a bound value is not of the type of its path
+     */
+    public @Nonnull List<T> range(@Nullable Object from, boolean fromInclusive, @Nullable Object to, boolean toInclusive) {
+        if (!sorted) {
+            throw new UnsupportedOperationException("Hash index does not support range lookups");
+        }
+
+        ConcurrentNavigableMap<Object, Object[]> range = (ConcurrentNavigableMap<Object, Object[]>) buckets;
+        if (from != null && to != null) {
+            final int c = KeyComparator.INSTANCE.compare(boundOf(from), boundOf(to));
+            if (c > 0 || (c == 0 && !(fromInclusive && toInclusive))) {
+                return Collections.emptyList();
+            }
+        }
+        if (from != null) {
+            range = range.tailMap(boundOf(from), fromInclusive);
+        }
+        if (to != null) {
+            range = range.headMap(boundOf(to), toInclusive);
+        }
+
+        final List<T> result = new ArrayList<T>();
+        for (Object[] bucket : range.values()) {
+            result.addAll(asList(bucket));
+        }
+        return result;
+    }
+
+    private Object keyOf(T bean) {
+        if (accessors.length == 1) {
+            return nullToKey(accessors[0].get(bean));
+        }
+        final Object[] values = new Object[accessors.length];
+        for (int i = 0; i < accessors.length; i++) {
+            values[i] = accessors[i].get(bean);
+        }
+        return Arrays.asList(values);
+    }
+
+    private Object keyOf(Object[] values) {
+        return (accessors.length == 1) ? nullToKey(values[0]) : Arrays.asList(values);
+    }
+
+    private Object boundOf(Object bound) {
+        if (accessors.length == 1) {
+            checkValueType(0, bound);
+            return bound;
+        }
+        checkArgument(bound instanceof List && ((List<?>) bound).size() == accessors.length,
+                      "Bound of a composite index must be a list of %s values", accessors.length);
+        final List<?> values = (List<?>) bound;
+        for (int i = 0; i < values.size(); i++) {
+            checkValueType(i, values.get(i));
+        }
+        return bound;
+    }
+
+    // values of other types are not comparable to the indexed ones
+    private void checkValueType(int index, @Nullable Object value) {
+        checkArgument(value == null || types[index].isInstance(value),
+                      "Value %s is of %s, but path %s is of %s", value, (value != null) ? value.getClass().getName() : null,
+                      accessors[index].getPath(), types[index].getName());
+    }
+
+    private static Object nullToKey(Object value) {
+        return (value == null) ? NULL_KEY : value;
+    }
+
+    // Buckets are copy-on-write arrays, so that readers never see them being modified
+
+    private void addToBucket(Object key, T bean) {
+        final Object[] bucket = buckets.get(key);
+        if (bucket == null) {
+            buckets.put(key, new Object[]{bean});
+        } else {
+            final Object[] newBucket = Arrays.copyOf(bucket, bucket.length + 1);
+            newBucket[bucket.length] = bean;
+            buckets.put(key, newBucket);
+        }
+    }
+
+    private void removeFromBucket(Object key, T bean) {
+        final Object[] bucket = buckets.get(key);
+        if (bucket == null) {
+            return;
+        }
+        final Object[] newBucket = without(bucket, bean);
+        if (newBucket.length == 0) {
+            buckets.remove(key);
+        } else {
+            buckets.put(key, newBucket);
+        }
+    }
+
+    private static Object[] without(Object[] bucket, Object bean) {
+        for (int i = 0; i < bucket.length; i++) {
+            if (bucket[i] == bean) {
+                if (bucket.length == 1) {
+                    return EMPTY;
+                }
+                final Object[] newBucket = new Object[bucket.length - 1];
+                System.arraycopy(bucket, 0, newBucket, 0, i);
+                System.arraycopy(bucket, i + 1, newBucket, i, bucket.length - i - 1);
+                return newBucket;
+            }
+        }
+        return bucket;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<T> asList(Object[] bucket) {
+        return (bucket == null) ? Collections.<T>emptyList() : (List<T>) Collections.unmodifiableList(Arrays.asList(bucket));
+    }
+
+    /**
+     * Orders {@code null} (i.e. {@link #NULL_KEY}) first, then by natural order;
+     * lists lexicographically
+     */
+    private enum KeyComparator implements Comparator<Object> {
+        INSTANCE;
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public int compare(Object o1, Object o2) {
+            if (o1 instanceof List && o2 instanceof List) {
+                final List<?> l1 = (List<?>) o1;
+                final List<?> l2 = (List<?>) o2;
+                final int size = Math.min(l1.size(), l2.size());
+                for (int i = 0; i < size; i++) {
+                    final int c = compare(nullToKey(l1.get(i)), nullToKey(l2.get(i)));
+                    if (c != 0) {
+                        return c;
+                    }
+                }
+                return l1.size() - l2.size();
+            }
+            if (o1 == o2) {
+                return 0;
+            } else if (o1 == NULL_KEY) {
+                return -1;
+            } else if (o2 == NULL_KEY) {
+                return 1;
+            }
+            return ((Comparable<Object>) o1).compareTo(o2);
+        }
+    }
+}
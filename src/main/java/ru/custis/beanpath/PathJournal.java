@@ -0,0 +1,717 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import net.bytebuddy.jar.asm.Label;
+import ru.custis.beanpath.BytecodeMaker.Emitter;
+import ru.custis.beanpath.BytecodeMaker.MethodBody;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Append-only journal of path-level changes of entities, i.e. of {@code (entity id, path, new value)} deltas:
+ * <pre><code>
+ *     Order order = root(Order.class);
+ *     PathJournal journal = PathJournal.open(file);
+ *     journal.append(42, $(order.getCustomer().getName()), "John Smith");
+ *     journal.close();
+ *
+ *     PathJournal.Reader reader = PathJournal.read(file);
+ *     reader.replay(ordersById); // sets customer.name of order #42
+ * </code></pre>
+ * Records are written through a memory mapping of the file, that grows by a mapping window at a time.
+ * A path is written once, with its root and element types, and is referred to with an {@code int} id afterwards;
+ * values are written in a compact binary form, tagged with their type. Supported values are {@code null},
+ * primitive wrappers, strings, {@link BigDecimal}s, {@link Date}s, enums and byte arrays.
+ * Enums are journaled for paths of their own enum type only. Subclasses of {@link Date}
+ * (e.g. {@link java.sql.Timestamp}) are journaled as plain dates, i.e. in milliseconds,
+ * for paths of a type a plain {@link Date} can be set to.
+ * <p/>
+ * Every record becomes visible at once: its first byte is written last, so a reader
+ * (or the journal reopened after a crash of the process) never sees a partially written record.
+ * It is not so after a crash of the operating system, that may write mapped pages to disk in any order;
+ * only records {@link #force() forced} before such a crash are guaranteed to survive it.
+ * Reopened journal continues after the last complete record. Files are limited to 2 GB.
+ * <p/>
+ * Replay applies deltas with compiled code, that calls setters directly and creates missing
+ * intermediate beans, the same way as {@link BeanMapper}. {@code null} values are set as is,
+ * but never unboxed nor cause intermediate beans to be created.
+ * <p/>
+ * Journals are thread safe, readers are not.
+ */
+public final class PathJournal implements Closeable {
+    static final int MAGIC = 0x42504a4c; // "BPJL"
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    // record kinds, zero marks the end of records
+    private static final byte END = 0, PATH = 1, DELTA = 2;
+
+    // value types
+    private static final byte NULL = 0, BOOLEAN = 1, BYTE = 2, SHORT = 3, CHAR = 4, INT = 5, LONG = 6,
+            FLOAT = 7, DOUBLE = 8, STRING = 9, DECIMAL = 10, DATE = 11, ENUM = 12, BYTES = 13;
+
+    static final int DEFAULT_WINDOW = 4 * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final int window;
+    private final Map<BeanPath<?>, Integer> ids = new HashMap<BeanPath<?>, Integer>();
+    private final Map<String, Integer> idsBySignature; // of paths defined before reopening
+
+    private int pathCount;
+    private MappedByteBuffer buffer;
+    private final List<MappedByteBuffer> unforced = new ArrayList<MappedByteBuffer>(); // filled up windows
+    private long mappedAt;
+    private boolean closed = false;
+
+    private PathJournal(RandomAccessFile file, int window, long end, int pathCount, Map<String, Integer> idsBySignature) throws IOException {
+        this.file = file;
+        this.window = window;
+        this.pathCount = pathCount;
+        this.idsBySignature = idsBySignature;
+        map(end, window);
+    }
+
+    /**
+     * Opens the journal in {@code file} for appending, the file is created if it does not exist
+     */
+    public static @Nonnull PathJournal open(@Nonnull File file) throws IOException {
+        return open(file, DEFAULT_WINDOW);
+    }
+
+    static PathJournal open(File file, int window) throws IOException {
+        checkNotNull(file, "Argument 'file' must not be null");
+        checkArgument(window > 0, "Mapping window must be positive");
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            final Map<String, Integer> idsBySignature = new HashMap<String, Integer>();
+            final long end;
+            if (raf.length() == 0) {
+                raf.writeInt(MAGIC);
+                raf.writeInt(VERSION);
+                end = HEADER_SIZE;
+            } else {
+                end = scan(raf, idsBySignature);
+            }
+            return new PathJournal(raf, window, end, idsBySignature.size(), idsBySignature);
+        } catch (IOException x) {
+            raf.close();
+            throw x;
+        } catch (RuntimeException x) {
+            raf.close();
+            throw x;
+        }
+    }
+
+    /**
+     * Reads path definitions of an existing journal and finds the end of its records
+     */
+    private static long scan(RandomAccessFile raf, Map<String, Integer> idsBySignature) throws IOException {
+        final FileChannel channel = raf.getChannel();
+        checkArgument(channel.size() <= Integer.MAX_VALUE, "Journal exceeds the limit of 2 GB");
+        final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        checkHeader(buffer);
+        while (buffer.hasRemaining()) {
+            final int start = buffer.position();
+            final byte kind = buffer.get();
+            if (kind == END) {
+                return start;
+            } else if (kind == PATH) {
+                final int id = buffer.getInt();
+                final StringBuilder signature = new StringBuilder(getString(buffer));
+                for (int i = buffer.getInt(); i > 0; i--) {
+                    signature.append('.').append(getString(buffer)).append(':').append(getString(buffer));
+                }
+                idsBySignature.put(signature.toString(), id);
+            } else {
+                checkArgument(kind == DELTA, "Corrupted journal at %s", start);
+                buffer.position(buffer.position() + 4 + 8);
+                skipValue(buffer);
+            }
+        }
+        return buffer.position();
+    }
+
+    private static void checkHeader(ByteBuffer buffer) {
+        checkArgument(buffer.remaining() >= HEADER_SIZE && buffer.getInt() == MAGIC, "Not a path journal");
+        final int version = buffer.getInt();
+        checkArgument(version == VERSION, "Unsupported path journal version %s", version);
+    }
+
+    private void map(long position, int size) throws IOException {
+        checkArgument(position + size <= Integer.MAX_VALUE, "Journal exceeds the limit of 2 GB");
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, position, size);
+        mappedAt = position;
+    }
+
+    /**
+     * Appends a delta: {@code path} of the entity identified by {@code entityId} has changed to {@code value}
+     *
+     * @throws IllegalArgumentException if the value is of unsupported type
+     */
+    public synchronized void append(long entityId, @Nonnull BeanPath<?> path, @Nullable Object value) throws IOException {
+        checkNotNull(path, "Argument 'path' must not be null");
+        checkArgument(!path.isRoot(), "Root path cannot be journaled");
+        checkArgument(!path.hasEach(), "Path %s traverses collection elements", path);
+        checkState(!closed, "Journal is closed");
+
+        final byte type = typeOf(value);
+        final Class<?> pathType = path.getType().isPrimitive() ? Primitives.getWrapperClass(path.getType()) : path.getType();
+        checkArgument(type == NULL || pathType.isInstance(value), "Value %s is not applicable to %s", value, path);
+        // enums are read by name of the path type, dates are read as plain dates
+        checkArgument(type != ENUM || pathType.isEnum(), "Enum %s cannot be journaled for %s of non-enum type", value, path);
+        checkArgument(type != DATE || pathType.isAssignableFrom(Date.class),
+                      "Date %s cannot be journaled for %s of type %s", value, path, pathType.getName());
+        final byte[] bytes = bytesOf(type, value);
+
+        final int id = idOf(path);
+        reserve(1 + 4 + 8 + 1 + sizeOf(type, bytes));
+        final int start = buffer.position();
+        buffer.position(start + 1);
+        buffer.putInt(id).putLong(entityId);
+        writeValue(buffer, type, value, bytes);
+        buffer.put(start, DELTA);
+    }
+
+    private int idOf(BeanPath<?> path) throws IOException {
+        Integer id = ids.get(path);
+        if (id == null) {
+            final String signature = signatureOf(path);
+            id = idsBySignature.get(signature);
+            if (id == null) {
+                id = pathCount++;
+                define(id, path);
+            }
+            ids.put(path, id);
+        }
+        return id;
+    }
+
+    private static String signatureOf(BeanPath<?> path) {
+        final StringBuilder signature = new StringBuilder(path.getRoot().getType().getName());
+        for (BeanPath<?> element : path) {
+            if (element.hasParent()) {
+                signature.append('.').append(element.getName()).append(':').append(element.getType().getName());
+            }
+        }
+        return signature.toString();
+    }
+
+    private void define(int id, BeanPath<?> path) throws IOException {
+        final List<byte[]> strings = new ArrayList<byte[]>();
+        int size = 1 + 4 + 4;
+        for (BeanPath<?> element : path) {
+            if (element.hasParent()) {
+                size += 4 + add(strings, element.getName());
+            }
+            size += 4 + add(strings, element.getType().getName());
+        }
+
+        reserve(size);
+        final int start = buffer.position();
+        buffer.position(start + 1);
+        buffer.putInt(id);
+        buffer.putInt(strings.get(0).length).put(strings.get(0));
+        buffer.putInt((strings.size() - 1) / 2);
+        for (byte[] string : strings.subList(1, strings.size())) {
+            buffer.putInt(string.length).put(string);
+        }
+        buffer.put(start, PATH);
+    }
+
+    private static int add(List<byte[]> strings, String string) {
+        final byte[] bytes = string.getBytes(Charsets.UTF_8);
+        strings.add(bytes);
+        return bytes.length;
+    }
+
+    /**
+     * Ensures that a record of {@code size} bytes, followed by the end mark, fits into the mapping
+     */
+    private void reserve(int size) throws IOException {
+        if (buffer.remaining() < size + 1) {
+            unforced.add(buffer);
+            map(mappedAt + buffer.position(), Math.max(window, size + 1));
+        }
+    }
+
+    /**
+     * Number of bytes written to the journal, including its header
+     */
+    public synchronized long size() {
+        return mappedAt + buffer.position();
+    }
+
+    /**
+     * Forces written records to the storage device
+     */
+    public synchronized void force() {
+        checkState(!closed, "Journal is closed");
+        forceAll();
+    }
+
+    private void forceAll() {
+        for (MappedByteBuffer window : unforced) {
+            window.force();
+        }
+        unforced.clear();
+        buffer.force();
+    }
+
+    /**
+     * Forces written records to the storage device and truncates the file after the last of them
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            forceAll();
+            file.setLength(mappedAt + buffer.position());
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Opens a journal for sequential reading; paths are resolved by the context class loader
+     */
+    public static @Nonnull Reader read(@Nonnull File file) throws IOException {
+        checkNotNull(file, "Argument 'file' must not be null");
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            checkArgument(channel.size() <= Integer.MAX_VALUE, "Journal exceeds the limit of 2 GB");
+            return new Reader(raf, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException x) {
+            raf.close();
+            throw x;
+        } catch (RuntimeException x) {
+            raf.close();
+            throw x;
+        }
+    }
+
+    /**
+     * Cursor over deltas of a journal, in order of appending:
+     * <pre><code>
+     *     while (reader.next()) {
+     *         audit(reader.getEntityId(), reader.getPath(), reader.getValue());
+     *     }
+     * </code></pre>
+     * Deltas appended after the reader is opened are not read.
+     * The mapping stays valid after {@link #close()}, until the reader is garbage collected.
+     */
+    public static final class Reader implements Closeable {
+        private final RandomAccessFile file;
+        private final ByteBuffer buffer;
+        private final ClassLoader loader;
+        private final List<BeanPath<?>> paths = new ArrayList<BeanPath<?>>();
+
+        private long entityId;
+        private BeanPath<?> path;
+        private Object value;
+
+        private Reader(RandomAccessFile file, ByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+            final ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+            this.loader = (contextLoader != null) ? contextLoader : PathJournal.class.getClassLoader();
+            checkHeader(buffer);
+        }
+
+        /**
+         * Moves to the next delta
+         *
+         * @return {@code false} if there are no more deltas
+         */
+        public boolean next() {
+            while (buffer.hasRemaining()) {
+                final int start = buffer.position();
+                final byte kind = buffer.get();
+                if (kind == END) {
+                    buffer.position(start);
+                    break;
+                } else if (kind == PATH) {
+                    final int id = buffer.getInt();
+                    checkArgument(id == paths.size(), "Corrupted journal at %s", start);
+                    paths.add(readPath());
+                } else {
+                    checkArgument(kind == DELTA, "Corrupted journal at %s", start);
+                    path = paths.get(buffer.getInt());
+                    entityId = buffer.getLong();
+                    value = readValue(buffer, path.getType());
+                    return true;
+                }
+            }
+            path = null;
+            value = null;
+            return false;
+        }
+
+        private BeanPath<?> readPath() {
+            BeanPath<?> path = BeanPath.root(resolve(getString(buffer)));
+            for (int i = buffer.getInt(); i > 0; i--) {
+                final String name = getString(buffer);
+                path = path.append(name, resolve(getString(buffer)));
+            }
+            return path;
+        }
+
+        private Class<?> resolve(String name) {
+            final Class<?> primitive = primitives.get(name);
+            if (primitive != null) {
+                return primitive;
+            }
+            try {
+                return Class.forName(name, false, loader);
+            } catch (ClassNotFoundException x) {
+                throw new BeanPathMagicException("Journaled path refers to unknown class [%s]", name, x);
+            }
+        }
+
+        /**
+         * Id of the entity the current delta belongs to
+         */
+        public long getEntityId() {
+            checkState(path != null, "No current delta");
+            return entityId;
+        }
+
+        /**
+         * Path the current delta has changed
+         */
+        public @Nonnull BeanPath<?> getPath() {
+            checkState(path != null, "No current delta");
+            return path;
+        }
+
+        /**
+         * New value of the current delta
+         */
+        public @Nullable Object getValue() {
+            checkState(path != null, "No current delta");
+            return value;
+        }
+
+        /**
+         * Applies the current delta to {@code bean}
+         *
+         * @throws IllegalArgumentException if the path is not writable
+         */
+        public void apply(@Nonnull Object bean) {
+            checkNotNull(bean, "Argument 'bean' must not be null");
+            checkState(path != null, "No current delta");
+            checkArgument(path.getRoot().getType().isInstance(bean), "Path %s is not applicable to %s", path, bean);
+            Applier.of(path).apply(bean, value);
+        }
+
+        /**
+         * Applies the rest of deltas to beans returned by {@code beans} for entity ids;
+         * deltas of entities it returns {@code null} for are skipped
+         *
+         * @return number of applied deltas
+         */
+        public int replay(@Nonnull Function<? super Long, ?> beans) {
+            checkNotNull(beans, "Argument 'beans' must not be null");
+            int applied = 0;
+            while (next()) {
+                final Object bean = beans.apply(entityId);
+                if (bean != null) {
+                    apply(bean);
+                    applied++;
+                }
+            }
+            return applied;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+
+    private static final Map<String, Class<?>> primitives = new HashMap<String, Class<?>>();
+
+    static {
+        for (Class<?> type : new Class<?>[]{boolean.class, byte.class, short.class, char.class,
+                                            int.class, long.class, float.class, double.class}) {
+            primitives.put(type.getName(), type);
+        }
+    }
+
+    // Value encoding
+
+    private static byte typeOf(@Nullable Object value) {
+        if (value == null) {
+            return NULL;
+        } else if (value instanceof Enum) {
+            return ENUM;
+        } else if (value instanceof Date) {
+            return DATE;
+        }
+        final Class<?> type = value.getClass();
+        if (type == Boolean.class) {
+            return BOOLEAN;
+        } else if (type == Byte.class) {
+            return BYTE;
+        } else if (type == Short.class) {
+            return SHORT;
+        } else if (type == Character.class) {
+            return CHAR;
+        } else if (type == Integer.class) {
+            return INT;
+        } else if (type == Long.class) {
+            return LONG;
+        } else if (type == Float.class) {
+            return FLOAT;
+        } else if (type == Double.class) {
+            return DOUBLE;
+        } else if (type == String.class) {
+            return STRING;
+        } else if (type == BigDecimal.class) {
+            return DECIMAL;
+        } else if (type == byte[].class) {
+            return BYTES;
+        }
+        throw new IllegalArgumentException("Values of " + type.getName() + " cannot be journaled");
+    }
+
+    private static byte[] bytesOf(byte type, Object value) {
+        switch (type) {
+            case STRING:
+                return ((String) value).getBytes(Charsets.UTF_8);
+            case DECIMAL:
+                return value.toString().getBytes(Charsets.UTF_8);
+            case ENUM:
+                return ((Enum<?>) value).name().getBytes(Charsets.UTF_8);
+            case BYTES:
+                return (byte[]) value;
+            default:
+                return null;
+        }
+    }
+
+    private static int sizeOf(byte type, byte[] bytes) {
+        switch (type) {
+            case NULL:
+                return 0;
+            case BOOLEAN:
+            case BYTE:
+                return 1;
+            case SHORT:
+            case CHAR:
+                return 2;
+            case INT:
+            case FLOAT:
+                return 4;
+            case LONG:
+            case DOUBLE:
+            case DATE:
+                return 8;
+            default:
+                return 4 + bytes.length;
+        }
+    }
+
+    private static void writeValue(ByteBuffer buffer, byte type, Object value, byte[] bytes) {
+        buffer.put(type);
+        switch (type) {
+            case NULL:
+                break;
+            case BOOLEAN:
+                buffer.put((byte) ((Boolean) value ? 1 : 0));
+                break;
+            case BYTE:
+                buffer.put((Byte) value);
+                break;
+            case SHORT:
+                buffer.putShort((Short) value);
+                break;
+            case CHAR:
+                buffer.putChar((Character) value);
+                break;
+            case INT:
+                buffer.putInt((Integer) value);
+                break;
+            case LONG:
+                buffer.putLong((Long) value);
+                break;
+            case FLOAT:
+                buffer.putFloat((Float) value);
+                break;
+            case DOUBLE:
+                buffer.putDouble((Double) value);
+                break;
+            case DATE:
+                buffer.putLong(((Date) value).getTime());
+                break;
+            default:
+                buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readValue(ByteBuffer buffer, Class<?> pathType) {
+        final byte type = buffer.get();
+        switch (type) {
+            case NULL:
+                return null;
+            case BOOLEAN:
+                return buffer.get() != 0;
+            case BYTE:
+                return buffer.get();
+            case SHORT:
+                return buffer.getShort();
+            case CHAR:
+                return buffer.getChar();
+            case INT:
+                return buffer.getInt();
+            case LONG:
+                return buffer.getLong();
+            case FLOAT:
+                return buffer.getFloat();
+            case DOUBLE:
+                return buffer.getDouble();
+            case DATE:
+                return new Date(buffer.getLong());
+            case STRING:
+                return getString(buffer);
+            case DECIMAL:
+                return new BigDecimal(getString(buffer));
+            case ENUM:
+                return Enum.valueOf((Class) pathType, getString(buffer));
+            case BYTES:
+                final byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                return bytes;
+            default:
+                throw new IllegalArgumentException("Corrupted journal: unknown value type " + type);
+        }
+    }
+
+    private static void skipValue(ByteBuffer buffer) {
+        final byte type = buffer.get();
+        final int size = (type == STRING || type == DECIMAL || type == ENUM || type == BYTES)
+                         ? 4 + buffer.getInt(buffer.position()) : sizeOf(type, null);
+        buffer.position(buffer.position() + size);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    /**
+     * Sets values of a path, implemented by generated code.
+     * Appliers are cached per path.
+     */
+    public abstract static class Applier {
+        private static final Map<BeanPath<?>, Applier> cache = new ConcurrentHashMap<BeanPath<?>, Applier>();
+        private static final Object compilationGuard = new Object();
+
+        protected Applier() {}
+
+        static Applier of(BeanPath<?> path) {
+            Applier applier = cache.get(path);
+            if (applier == null) {
+                synchronized (compilationGuard) { // we do not want to generate an applier twice
+                    applier = cache.get(path);
+                    if (applier == null) {
+                        applier = generate(path);
+                        cache.put(path, applier);
+                    }
+                }
+            }
+            return applier;
+        }
+
+        protected abstract void apply(Object bean, Object value);
+
+        private static Applier generate(final BeanPath<?> path) {
+            final List<Method> getters = PropertyMethods.getters(path);
+            final List<Method> setters = PropertyMethods.setters(path, getters);
+            return BytecodeMaker.createInstance(Applier.class, path.getRoot().getType().getSimpleName(), "apply", new MethodBody() {
+                @Override
+                public void emit(Emitter emitter) {
+                    final Method setter = setters.get(setters.size() - 1);
+                    final Class<?> valueType = setter.getParameterTypes()[0];
+                    final Label isNull = new Label();
+                    final Label done = new Label();
+
+                    emitter.loadArgument(Object.class, 1);
+                    emitter.ifNull(isNull);
+                    emitter.loadArgument(Object.class, 0);
+                    emitter.checkCast(path.getRoot().getType());
+                    final Class<?> ownerType = emitter.navigateForWrite(path, getters, setters);
+                    emitter.loadArgument(Object.class, 1);
+                    emitter.convert(Object.class, valueType, null);
+                    emitter.invoke(ownerType, setter);
+                    emitter.pop(setter.getReturnType());
+                    emitter.returnValue(void.class);
+
+                    // null is set to reachable owners only, and never unboxed
+                    emitter.label(isNull);
+                    if (!valueType.isPrimitive()) {
+                        emitter.loadArgument(Object.class, 0);
+                        emitter.checkCast(path.getRoot().getType());
+                        final Class<?> type = emitter.readChain(path.getParent(), getters.subList(0, getters.size() - 1), done);
+                        if (getters.size() > 1) {
+                            final Label nonNull = new Label();
+                            emitter.dup();
+                            emitter.ifNonNull(nonNull);
+                            emitter.pop(type);
+                            emitter.jump(done);
+                            emitter.label(nonNull);
+                        }
+                        emitter.pushNull();
+                        emitter.invoke(type, setter);
+                        emitter.pop(setter.getReturnType());
+                    }
+                    emitter.label(done);
+                    emitter.returnValue(void.class);
+                }
+            });
+        }
+    }
+}
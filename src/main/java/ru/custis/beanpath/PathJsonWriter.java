@@ -0,0 +1,573 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import com.google.common.base.Charsets;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Writes selected paths of beans as JSON, streaming straight into bytes:
+ * <pre><code>
+ *     PathJsonWriter&lt;Order&gt; writer = PathJsonWriter.of(Order.class)
+ *             .fields("customer.name,total")
+ *             .build();
+ *
+ *     writer.writeArray(orders, out); // [{"customer":{"name":"John Smith"},"total":10.5}, ...]
+ * </code></pre>
+ * Objects are nested according to path structure, or {@link Builder#flat() flat},
+ * keyed by {@link BeanPath#toDotDelimitedString() dot delimited} paths.
+ * Unreachable intermediate beans and {@code null} values are written as {@code null}.
+ * <p/>
+ * Values are read with {@link PathAccessor}s, numbers and booleans without boxing;
+ * other values are written as JSON strings of their {@code toString()}.
+ * Nested objects are read once, and their fields are read from them, so every getter is called once per write.
+ * Field names are encoded to UTF-8 once, on build. Paths may be rooted at supertypes of the bean type,
+ * objects are nested by property names.
+ * <p/>
+ * Output is encoded into a buffer of the writer, reused by subsequent writes;
+ * concurrent writes allocate their own buffers.
+ * <p/>
+ * Instances are immutable and thread safe.
+ */
+public final class PathJsonWriter<B> {
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final byte[] NULL = "null".getBytes(Charsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(Charsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(Charsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(Charsets.US_ASCII);
+
+    private enum Kind {
+        INTEGRAL, FLOATING, FLOAT, BOOLEAN, NUMBER, STRING, OBJECT
+    }
+
+    private final Node root;
+    private final AtomicReference<byte[]> spareBuffer = new AtomicReference<byte[]>(new byte[BUFFER_SIZE]);
+
+    private PathJsonWriter(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Starts writer definition for beans of {@code beanType}
+     */
+    public static @Nonnull <B> Builder<B> of(@Nonnull Class<B> beanType) {
+        checkNotNull(beanType, "Argument 'beanType' must not be null");
+        return new Builder<B>(beanType);
+    }
+
+    /**
+     * Writes a single JSON object
+     */
+    public void write(@Nonnull B bean, @Nonnull OutputStream out) throws IOException {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        checkNotNull(out, "Argument 'out' must not be null");
+        final byte[] buffer = borrowBuffer();
+        try {
+            final Output output = new StreamOutput(out, buffer);
+            writeObject(output, root, bean, new boolean[1]);
+            output.flush();
+        } finally {
+            spareBuffer.set(buffer);
+        }
+    }
+
+    /**
+     * Writes a JSON array of objects, one per bean
+     */
+    public void writeArray(@Nonnull Iterable<? extends B> beans, @Nonnull OutputStream out) throws IOException {
+        checkNotNull(beans, "Argument 'beans' must not be null");
+        checkNotNull(out, "Argument 'out' must not be null");
+        final byte[] buffer = borrowBuffer();
+        try {
+            writeArray(beans, new StreamOutput(out, buffer));
+        } finally {
+            spareBuffer.set(buffer);
+        }
+    }
+
+    /**
+     * Writes a JSON array of objects, one per bean
+     */
+    public void writeArray(@Nonnull Iterable<? extends B> beans, @Nonnull WritableByteChannel channel) throws IOException {
+        checkNotNull(beans, "Argument 'beans' must not be null");
+        checkNotNull(channel, "Argument 'channel' must not be null");
+        final byte[] buffer = borrowBuffer();
+        try {
+            writeArray(beans, new ChannelOutput(channel, buffer));
+        } finally {
+            spareBuffer.set(buffer);
+        }
+    }
+
+    /**
+     * JSON object of a single bean, as a string
+     */
+    public @Nonnull String toJson(@Nonnull B bean) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(bean, out);
+        } catch (IOException x) {
+            throw new AssertionError(x); // never happens with in-memory stream
+        }
+        return new String(out.toByteArray(), Charsets.UTF_8);
+    }
+
+    private byte[] borrowBuffer() {
+        final byte[] buffer = spareBuffer.getAndSet(null);
+        return (buffer != null) ? buffer : new byte[BUFFER_SIZE]; // taken by a concurrent write
+    }
+
+    private void writeArray(Iterable<? extends B> beans, Output output) throws IOException {
+        output.write((byte) '[');
+        final boolean[] isNull = new boolean[1];
+        boolean first = true;
+        for (B bean : beans) {
+            if (!first) {
+                output.write((byte) ',');
+            }
+            first = false;
+            if (bean == null) {
+                output.write(NULL);
+            } else {
+                writeObject(output, root, bean, isNull);
+            }
+        }
+        output.write((byte) ']');
+        output.flush();
+    }
+
+    private static void writeObject(Output output, Node node, Object bean, boolean[] isNull) throws IOException {
+        output.write((byte) '{');
+        for (int i = 0; i < node.children.length; i++) {
+            final Node child = node.children[i];
+            if (i > 0) {
+                output.write((byte) ',');
+            }
+            output.write(child.key);
+            if (child.kind == Kind.OBJECT) {
+                final Object object = child.accessor.get(bean);
+                if (object == null) {
+                    output.write(NULL);
+                } else {
+                    writeObject(output, child, object, isNull);
+                }
+            } else {
+                writeValue(output, child, bean, isNull);
+            }
+        }
+        output.write((byte) '}');
+    }
+
+    private static void writeValue(Output output, Node leaf, Object bean, boolean[] isNull) throws IOException {
+        final PathAccessor<?> accessor = leaf.accessor;
+        switch (leaf.kind) {
+            case INTEGRAL:
+                final long integral = accessor.getLong(bean, isNull);
+                if (isNull[0]) {
+                    output.write(NULL);
+                } else {
+                    output.writeLong(integral);
+                }
+                break;
+            case FLOATING:
+            case FLOAT:
+                final double number = accessor.getDouble(bean, isNull);
+                if (isNull[0] || Double.isNaN(number) || Double.isInfinite(number)) {
+                    output.write(NULL); // including values not representable in JSON
+                } else {
+                    output.writeAscii(leaf.kind == Kind.FLOAT ? Float.toString((float) number) : Double.toString(number));
+                }
+                break;
+            case BOOLEAN:
+                final boolean bool = accessor.getBoolean(bean, isNull);
+                if (isNull[0]) {
+                    output.write(NULL);
+                } else {
+                    output.write(bool ? TRUE : FALSE);
+                }
+                break;
+            default:
+                final Object value = accessor.get(bean);
+                if (value == null) {
+                    output.write(NULL);
+                } else if (leaf.kind == Kind.NUMBER) {
+                    output.writeAscii(value.toString());
+                } else {
+                    output.writeString(value.toString());
+                }
+        }
+    }
+
+    /**
+     * Object (the root or an intermediate bean) or a leaf value.
+     * Accessors of non-root objects read the object itself, accessors of leaves read the value,
+     * both from the parent object; i.e. accessors of nested nodes are relative to their parents.
+     */
+    private static final class Node {
+        private final byte[] key;
+        private final Kind kind;
+        private final PathAccessor<?> accessor;
+        private final Node[] children;
+
+        private Node(byte[] key, Kind kind, PathAccessor<?> accessor, Node[] children) {
+            this.key = key;
+            this.kind = kind;
+            this.accessor = accessor;
+            this.children = children;
+        }
+    }
+
+    public static final class Builder<B> {
+        private final Class<B> beanType;
+        private final List<BeanPath<?>> paths = new ArrayList<BeanPath<?>>();
+        private boolean flat = false;
+
+        private Builder(Class<B> beanType) {
+            this.beanType = beanType;
+        }
+
+        public @Nonnull Builder<B> field(@Nonnull BeanPath<?> path) {
+            checkNotNull(path, "Argument 'path' must not be null");
+            checkArgument(!path.isRoot(), "Root path is not a field");
+            checkArgument(path.getRoot().getType().isAssignableFrom(beanType),
+                          "Path %s is not applicable to %s", path, beanType);
+            for (BeanPath<?> selected : paths) {
+                checkArgument(!selected.toDotDelimitedString().equals(path.toDotDelimitedString()),
+                              "Path %s is already selected", path);
+            }
+            paths.add(path);
+            return this;
+        }
+
+        public @Nonnull Builder<B> fields(@Nonnull BeanPath<?>... paths) {
+            checkNotNull(paths, "Argument 'paths' must not be null");
+            for (BeanPath<?> path : paths) {
+                field(path);
+            }
+            return this;
+        }
+
+        /**
+         * Selects fields by a comma delimited list of dot delimited paths, e.g. {@code "customer.name,total"},
+         * resolved with {@link BeanPathBuilder}
+         *
+         * @throws IllegalArgumentException if some property has no public getter
+         */
+        public @Nonnull Builder<B> fields(@Nonnull String selection) {
+            checkNotNull(selection, "Argument 'selection' must not be null");
+            for (String field : selection.split(",")) {
+                if (field.trim().isEmpty()) {
+                    continue;
+                }
+                BeanPathBuilder<?> builder = BeanPathBuilder.of(beanType);
+                for (String name : field.trim().split("\\.")) {
+                    builder = builder.get(name.trim());
+                }
+                field(builder.toPath());
+            }
+            return this;
+        }
+
+        /**
+         * Write flat objects, keyed by dot delimited paths, instead of nested ones
+         */
+        public @Nonnull Builder<B> flat() {
+            this.flat = true;
+            return this;
+        }
+
+        public @Nonnull PathJsonWriter<B> build() {
+            checkArgument(!paths.isEmpty(), "No fields selected");
+            return new PathJsonWriter<B>(flat ? buildFlat() : buildNested());
+        }
+
+        private Node buildFlat() {
+            final Node[] leaves = new Node[paths.size()];
+            for (int i = 0; i < leaves.length; i++) {
+                leaves[i] = leaf(paths.get(i).toDotDelimitedString(), paths.get(i));
+            }
+            return new Node(null, Kind.OBJECT, null, leaves);
+        }
+
+        private Node buildNested() {
+            // dot delimited object path to its children names, in order of selection;
+            // paths rooted at different supertypes of the bean type are merged by names
+            final Map<String, Map<String, BeanPath<?>>> tree = new LinkedHashMap<String, Map<String, BeanPath<?>>>();
+            for (BeanPath<?> path : paths) {
+                for (BeanPath<?> element = path; element.hasParent(); element = element.getParent()) {
+                    final String parent = element.getParent().toDotDelimitedString();
+                    Map<String, BeanPath<?>> children = tree.get(parent);
+                    if (children == null) {
+                        children = new LinkedHashMap<String, BeanPath<?>>();
+                        tree.put(parent, children);
+                    }
+                    children.put(element.getName(), element);
+                }
+            }
+            for (BeanPath<?> path : paths) {
+                checkArgument(!tree.containsKey(path.toDotDelimitedString()),
+                              "Path %s is both selected and traversed by another path, "
+                              + "that is ambiguous for nested objects", path);
+            }
+            return object(null, null, null, tree);
+        }
+
+        /**
+         * Object of {@code path}, read by {@code relativePath} from its parent object
+         */
+        private Node object(@Nullable String name, @Nullable BeanPath<?> path, @Nullable BeanPath<?> relativePath,
+                            Map<String, Map<String, BeanPath<?>>> tree) {
+            final Map<String, BeanPath<?>> children = tree.get((path != null) ? path.toDotDelimitedString() : "");
+            final List<Node> nodes = new ArrayList<Node>(children.size());
+            for (Map.Entry<String, BeanPath<?>> child : children.entrySet()) {
+                final BeanPath<?> element = child.getValue();
+                checkArgument(path == null || element.getParent().getType().isAssignableFrom(path.getType()),
+                              "Path %s is narrowed differently from %s, that is ambiguous for nested objects",
+                              element, path);
+                final BeanPath<?> relative = element.relativize(element.getParent());
+                nodes.add(tree.containsKey(element.toDotDelimitedString())
+                          ? object(child.getKey(), element, relative, tree)
+                          : leaf(child.getKey(), relative));
+            }
+            return new Node(keyOf(name), Kind.OBJECT, (path != null) ? PathAccessor.of(relativePath) : null,
+                            nodes.toArray(new Node[nodes.size()]));
+        }
+
+        /**
+         * Leaf reading {@code path} of its parent object
+         */
+        private static Node leaf(String name, BeanPath<?> path) {
+            return new Node(keyOf(name), kindOf(path.getType()), PathAccessor.of(path), new Node[0]);
+        }
+
+        private static Kind kindOf(Class<?> type) {
+            if (type == Long.class || type == Integer.class || type == Short.class || type == Byte.class) {
+                return Kind.INTEGRAL;
+            } else if (type == Double.class) {
+                return Kind.FLOATING;
+            } else if (type == Float.class) {
+                return Kind.FLOAT;
+            } else if (type == Boolean.class) {
+                return Kind.BOOLEAN;
+            } else if (Number.class.isAssignableFrom(type)) {
+                return Kind.NUMBER;
+            } else {
+                return Kind.STRING;
+            }
+        }
+
+        private static byte[] keyOf(@Nullable String name) {
+            if (name == null) {
+                return null;
+            }
+            final ArrayOutput output = new ArrayOutput(new byte[64]);
+            try {
+                output.writeString(name);
+                output.write((byte) ':');
+            } catch (IOException x) {
+                throw new AssertionError(x); // never happens with in-memory stream
+            }
+            return output.toByteArray();
+        }
+    }
+
+    /**
+     * UTF-8 encoder into a reusable buffer, drained when full
+     */
+    private abstract static class Output {
+        protected final byte[] buffer;
+        protected int position = 0;
+
+        protected Output(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        protected abstract void drain() throws IOException;
+
+        public final void flush() throws IOException {
+            if (position > 0) {
+                drain();
+                position = 0;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (position + bytes > buffer.length) {
+                flush();
+            }
+        }
+
+        public final void write(byte b) throws IOException {
+            ensure(1);
+            buffer[position++] = b;
+        }
+
+        public final void write(byte[] bytes) throws IOException {
+            if (bytes.length > buffer.length) {
+                flush();
+                for (byte b : bytes) {
+                    write(b);
+                }
+                return;
+            }
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        public final void writeAscii(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++) {
+                write((byte) s.charAt(i));
+            }
+        }
+
+        public final void writeLong(long value) throws IOException {
+            if (value == Long.MIN_VALUE) {
+                writeAscii(Long.toString(value));
+                return;
+            }
+            ensure(20);
+            if (value < 0) {
+                buffer[position++] = '-';
+                value = -value;
+            }
+            final int start = position;
+            do {
+                buffer[position++] = (byte) ('0' + (int) (value % 10));
+                value /= 10;
+            } while (value != 0);
+            for (int i = start, j = position - 1; i < j; i++, j--) { // digits were written backwards
+                final byte digit = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = digit;
+            }
+        }
+
+        public final void writeString(String s) throws IOException {
+            write((byte) '"');
+            for (int i = 0; i < s.length(); i++) {
+                final char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    ensure(2);
+                    buffer[position++] = '\\';
+                    buffer[position++] = (byte) c;
+                } else if (c < 0x20) {
+                    ensure(6);
+                    buffer[position++] = '\\';
+                    buffer[position++] = 'u';
+                    buffer[position++] = '0';
+                    buffer[position++] = '0';
+                    buffer[position++] = HEX[c >> 4];
+                    buffer[position++] = HEX[c & 0xF];
+                } else if (c < 0x80) {
+                    ensure(1);
+                    buffer[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    ensure(2);
+                    buffer[position++] = (byte) (0xC0 | (c >> 6));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    final int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                    ensure(4);
+                    buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                    ensure(1);
+                    buffer[position++] = '?'; // unpaired surrogate
+                } else {
+                    ensure(3);
+                    buffer[position++] = (byte) (0xE0 | (c >> 12));
+                    buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            write((byte) '"');
+        }
+    }
+
+    private static final class StreamOutput extends Output {
+        private final OutputStream out;
+
+        private StreamOutput(OutputStream out, byte[] buffer) {
+            super(buffer);
+            this.out = out;
+        }
+
+        @Override
+        protected void drain() throws IOException {
+            out.write(buffer, 0, position);
+        }
+    }
+
+    private static final class ChannelOutput extends Output {
+        private final WritableByteChannel channel;
+
+        private ChannelOutput(WritableByteChannel channel, byte[] buffer) {
+            super(buffer);
+            this.channel = channel;
+        }
+
+        @Override
+        protected void drain() throws IOException {
+            final ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, position);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    private static final class ArrayOutput extends Output {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private ArrayOutput(byte[] buffer) {
+            super(buffer);
+        }
+
+        @Override
+        protected void drain() {
+            out.write(buffer, 0, position);
+        }
+
+        public byte[] toByteArray() {
+            try {
+                flush();
+            } catch (IOException x) {
+                throw new AssertionError(x); // never happens with in-memory stream
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Registry of listeners of path changes, that dispatches a change of a path to listeners
+ * of the path itself, of its ancestors and of its descendants, but not to the others:
+ * <pre><code>
+ *     Customer customer = root(Customer.class);
+ *     PathListeners listeners = new PathListeners();
+ *     listeners.subscribe($(customer.getAddress().getCity()), cityField);
+ *     listeners.subscribe($(customer.getName()), nameField);
+ *
+ *     listeners.fireChanged($(customer.getAddress())); // notifies cityField only
+ * </code></pre>
+ * <p/>
+ * Subscriptions are kept in a trie of path elements, so dispatch walks the changed path
+ * from its root and then the subtree of subscribed descendants, i.e. it takes
+ * O(depth + number of notified listeners), regardless of the total number of subscriptions.
+ * Paths are matched element by element, by names and exact types, roots as well as the other elements;
+ * so e.g. a change of {@code address} narrowed to a subtype of {@code Address} is not dispatched
+ * to listeners of {@code address} of the declared type, nor to listeners of its descendants, and vice versa.
+ * <p/>
+ * Listeners are notified synchronously on the publishing thread, ancestors first,
+ * then the path itself, then descendants. A listener is notified once per change, even if it is subscribed
+ * to several of the matching paths, e.g. to both {@code customer} and {@code customer.address.city}.
+ * An exception thrown by a listener propagates to the publisher, and the rest of listeners are not notified.
+ * <p/>
+ * Dispatch is lock-free and may run concurrently with subscriptions: each dispatch sees
+ * every subscription either before or after it is modified. Subscriptions are serialized.
+ */
+public final class PathListeners {
+    private static final PathChangeListener[] NONE = new PathChangeListener[0];
+
+    private final ConcurrentMap<Class<?>, Node> roots = new ConcurrentHashMap<Class<?>, Node>();
+
+    // guarded by this
+    private volatile int size = 0;
+
+    /**
+     * Element of subscribed paths. Listeners and children of a name are copy-on-write arrays,
+     * so that dispatching readers never see them being modified.
+     */
+    private static final class Node {
+        private final Node parent;
+        private final String name;
+        private final Class<?> type;
+        private final ConcurrentMap<String, Node[]> children = new ConcurrentHashMap<String, Node[]>();
+        private volatile PathChangeListener[] listeners = NONE;
+
+        private Node(Node parent, String name, Class<?> type) {
+            this.parent = parent;
+            this.name = name;
+            this.type = type;
+        }
+
+        private Node child(String name, Class<?> type) {
+            final Node[] candidates = children.get(name);
+            if (candidates != null) {
+                for (Node candidate : candidates) {
+                    if (candidate.type == type) {
+                        return candidate;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private boolean isUnused() {
+            return listeners.length == 0 && children.isEmpty();
+        }
+    }
+
+    /**
+     * Subscribes {@code listener} to changes of {@code path}, its ancestors and its descendants.
+     * Does nothing if the listener is already subscribed to the path.
+     */
+    public synchronized void subscribe(@Nonnull BeanPath<?> path, @Nonnull PathChangeListener listener) {
+        checkNotNull(path, "Argument 'path' must not be null");
+        checkNotNull(listener, "Argument 'listener' must not be null");
+
+        final Node node = getOrCreate(path);
+        final PathChangeListener[] listeners = node.listeners;
+        if (indexOf(listeners, listener) >= 0) {
+            return;
+        }
+        final PathChangeListener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+        newListeners[listeners.length] = listener;
+        node.listeners = newListeners;
+        size++;
+    }
+
+    /**
+     * Unsubscribes {@code listener} from changes of {@code path}
+     *
+     * @return {@code false} if the listener was not subscribed to the path
+     */
+    public synchronized boolean unsubscribe(@Nonnull BeanPath<?> path, @Nonnull PathChangeListener listener) {
+        checkNotNull(path, "Argument 'path' must not be null");
+        checkNotNull(listener, "Argument 'listener' must not be null");
+
+        final Node node = find(path);
+        final int index = (node != null) ? indexOf(node.listeners, listener) : -1;
+        if (index < 0) {
+            return false;
+        }
+
+        final PathChangeListener[] listeners = node.listeners;
+        final PathChangeListener[] newListeners = new PathChangeListener[listeners.length - 1];
+        System.arraycopy(listeners, 0, newListeners, 0, index);
+        System.arraycopy(listeners, index + 1, newListeners, index, listeners.length - index - 1);
+        node.listeners = (newListeners.length == 0) ? NONE : newListeners;
+        size--;
+
+        prune(node);
+        return true;
+    }
+
+    /**
+     * Number of subscriptions, i.e. of (path, listener) pairs
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Notifies listeners of {@code changed} path, of its ancestors and of its descendants
+     */
+    public void fireChanged(@Nonnull BeanPath<?> changed) {
+        checkNotNull(changed, "Argument 'changed' must not be null");
+        final Dispatch dispatch = new Dispatch(changed);
+        final Node node = notifyAncestors(changed, dispatch);
+        if (node != null) {
+            notifyDescendants(node, dispatch);
+        }
+    }
+
+    /**
+     * Notifies listeners of {@code element} and of its ancestors, root first,
+     * and returns the node of {@code element}; or {@code null} if no one is subscribed to it or its descendants
+     */
+    private Node notifyAncestors(BeanPath<?> element, Dispatch dispatch) {
+        final Node node;
+        if (element.isRoot()) {
+            node = roots.get(element.getType());
+        } else {
+            final Node parent = notifyAncestors(element.getParent(), dispatch);
+            node = (parent != null) ? parent.child(element.getName(), element.getType()) : null;
+        }
+        if (node != null) {
+            dispatch.notify(node.listeners);
+        }
+        return node;
+    }
+
+    private static void notifyDescendants(Node node, Dispatch dispatch) {
+        for (Node[] children : node.children.values()) {
+            for (Node child : children) {
+                dispatch.notify(child.listeners);
+                notifyDescendants(child, dispatch);
+            }
+        }
+    }
+
+    /**
+     * Single change being dispatched, that remembers notified listeners not to notify them twice
+     */
+    private static final class Dispatch {
+        private final BeanPath<?> changed;
+        private Set<PathChangeListener> notified; // created on the first notification
+
+        private Dispatch(BeanPath<?> changed) {
+            this.changed = changed;
+        }
+
+        private void notify(PathChangeListener[] listeners) {
+            for (PathChangeListener listener : listeners) {
+                if (notified == null) {
+                    notified = Collections.newSetFromMap(new IdentityHashMap<PathChangeListener, Boolean>());
+                }
+                if (notified.add(listener)) {
+                    listener.pathChanged(changed);
+                }
+            }
+        }
+    }
+
+    private Node find(BeanPath<?> path) {
+        if (path.isRoot()) {
+            return roots.get(path.getType());
+        }
+        final Node parent = find(path.getParent());
+        return (parent != null) ? parent.child(path.getName(), path.getType()) : null;
+    }
+
+    private Node getOrCreate(BeanPath<?> path) {
+        if (path.isRoot()) {
+            Node root = roots.get(path.getType());
+            if (root == null) {
+                root = new Node(null, path.getName(), path.getType());
+                roots.put(path.getType(), root);
+            }
+            return root;
+        }
+
+        final Node parent = getOrCreate(path.getParent());
+        Node node = parent.child(path.getName(), path.getType());
+        if (node == null) {
+            node = new Node(parent, path.getName(), path.getType());
+            final Node[] siblings = parent.children.get(path.getName());
+            if (siblings == null) {
+                parent.children.put(path.getName(), new Node[]{node});
+            } else {
+                final Node[] newSiblings = Arrays.copyOf(siblings, siblings.length + 1);
+                newSiblings[siblings.length] = node;
+                parent.children.put(path.getName(), newSiblings);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Removes {@code node} and its ancestors, unless they have listeners or other children,
+     * so that dispatch never walks subtrees without listeners
+     */
+    private void prune(Node node) {
+        for (Node current = node; current != null && current.isUnused(); current = current.parent) {
+            if (current.parent == null) {
+                roots.remove(current.type);
+                return;
+            }
+            final Node[] siblings = current.parent.children.get(current.name);
+            if (siblings.length == 1) {
+                current.parent.children.remove(current.name);
+            } else {
+                final Node[] newSiblings = new Node[siblings.length - 1];
+                int i = 0;
+                for (Node sibling : siblings) {
+                    if (sibling != current) {
+                        newSiblings[i++] = sibling;
+                    }
+                }
+                current.parent.children.put(current.name, newSiblings);
+            }
+        }
+    }
+
+    private static int indexOf(PathChangeListener[] listeners, PathChangeListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import com.google.common.base.Objects;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Tracks changes of some paths of beans by comparing them with snapshots of their values:
+ * <pre><code>
+ *     Order order = root(Order.class);
+ *     PathSnapshot&lt;Order&gt; tracked = PathSnapshot.of(Order.class, $(order.getTotal()), $(order.getCustomer().getName()));
+ *
+ *     PathSnapshot.Values before = tracked.take(someOrder);
+ *     ...
+ *     BitSet changed = tracked.changedPaths(someOrder, before); // bit 0 for total, bit 1 for customer name
+ * </code></pre>
+ * Snapshots are compact: primitive and wrapper values are stored unboxed in a {@code long} array,
+ * followed by their null bits, other values by reference in an array of their own. Values of immutable types (strings, numbers, enums etc.) are compared
+ * with {@code equals()}, values of other types (i.e. beans) by identity, so a bean is considered
+ * changed only if it is replaced; to track its properties, track their paths.
+ * Unreachable paths and {@code null} values are the same for comparison.
+ * <p/>
+ * Instances are immutable and thread safe, so are snapshots.
+ */
+public final class PathSnapshot<B> {
+    private enum Kind {
+        INTEGRAL, FLOATING, BOOLEAN, EQUALITY, IDENTITY
+    }
+
+    private final List<BeanPath<?>> paths;
+    private final PathAccessor<?>[] accessors;
+    private final Kind[] kinds;
+    private final int[] slots; // index of a path value in primitives or references of snapshots
+    private final int primitiveCount;
+    private final int referenceCount;
+
+    private PathSnapshot(Class<B> beanType, BeanPath<?>[] paths) {
+        checkNotNull(beanType, "Argument 'beanType' must not be null");
+        checkNotNull(paths, "Argument 'paths' must not be null");
+        checkArgument(paths.length > 0, "At least one path must be tracked");
+
+        final List<BeanPath<?>> pathList = new ArrayList<BeanPath<?>>(paths.length);
+        this.accessors = new PathAccessor<?>[paths.length];
+        this.kinds = new Kind[paths.length];
+        this.slots = new int[paths.length];
+        int primitives = 0;
+        int references = 0;
+        for (int i = 0; i < paths.length; i++) {
+            final BeanPath<?> path = checkNotNull(paths[i], "Argument 'paths' must not contain nulls");
+            checkArgument(path.getRoot().getType().isAssignableFrom(beanType),
+                          "Path %s is not applicable to %s", path, beanType);
+            pathList.add(path);
+            accessors[i] = PathAccessor.of(path);
+            kinds[i] = kindOf(accessors[i]);
+            slots[i] = isReference(kinds[i]) ? references++ : primitives++;
+        }
+        this.paths = Collections.unmodifiableList(pathList);
+        this.primitiveCount = primitives;
+        this.referenceCount = references;
+    }
+
+    /**
+     * Tracker of the given paths of beans of {@code beanType}
+     */
+    public static @Nonnull <B> PathSnapshot<B> of(@Nonnull Class<B> beanType, @Nonnull BeanPath<?>... paths) {
+        return new PathSnapshot<B>(beanType, paths);
+    }
+
+    private static Kind kindOf(PathAccessor<?> accessor) {
+        if (accessor.isIntegral()) {
+            return Kind.INTEGRAL;
+        } else if (accessor.isFloating()) {
+            return Kind.FLOATING;
+        } else if (accessor.isBoolean()) {
+            return Kind.BOOLEAN;
+        }
+        final Class<?> type = accessor.getPath().getType();
+        if (type == String.class || Number.class.isAssignableFrom(type) || type.isEnum()
+            || type == Character.class || type == Boolean.class) {
+            return Kind.EQUALITY;
+        }
+        return Kind.IDENTITY;
+    }
+
+    private static boolean isReference(Kind kind) {
+        return kind == Kind.EQUALITY || kind == Kind.IDENTITY;
+    }
+
+    /**
+     * Tracked paths, in order of their bits
+     */
+    public @Nonnull List<BeanPath<?>> getPaths() {
+        return paths;
+    }
+
+    /**
+     * Takes a snapshot of the tracked paths of the bean
+     */
+    public @Nonnull Values take(@Nonnull B bean) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        // values, followed by null bits
+        final long[] primitives = (primitiveCount > 0) ? new long[primitiveCount + (primitiveCount + 63) / 64] : null;
+        final Object[] references = (referenceCount > 0) ? new Object[referenceCount] : null;
+        final boolean[] isNull = new boolean[1];
+        for (int i = 0; i < accessors.length; i++) {
+            final int slot = slots[i];
+            if (isReference(kinds[i])) {
+                assert (references != null);
+                references[slot] = accessors[i].get(bean);
+            } else {
+                assert (primitives != null);
+                final long value = read(kinds[i], accessors[i], bean, isNull);
+                if (isNull[0]) {
+                    primitives[primitiveCount + (slot >> 6)] |= 1L << slot;
+                } else {
+                    primitives[slot] = value;
+                }
+            }
+        }
+        return new Values(this, primitives, references);
+    }
+
+    /**
+     * Paths, whose values have changed since the snapshot, as bits by index of path
+     */
+    public @Nonnull BitSet changedPaths(@Nonnull B bean, @Nonnull Values snapshot) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        checkSnapshot(snapshot);
+        final BitSet changed = new BitSet(accessors.length);
+        final boolean[] isNull = new boolean[1];
+        for (int i = 0; i < accessors.length; i++) {
+            if (isChanged(i, bean, snapshot, isNull)) {
+                changed.set(i);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Whether any path has changed since the snapshot; stops at the first change
+     */
+    public boolean isChanged(@Nonnull B bean, @Nonnull Values snapshot) {
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        checkSnapshot(snapshot);
+        final boolean[] isNull = new boolean[1];
+        for (int i = 0; i < accessors.length; i++) {
+            if (isChanged(i, bean, snapshot, isNull)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkSnapshot(Values snapshot) {
+        checkNotNull(snapshot, "Argument 'snapshot' must not be null");
+        checkArgument(snapshot.owner == this, "Snapshot was taken by another PathSnapshot");
+    }
+
+    private boolean isChanged(int i, Object bean, Values snapshot, boolean[] isNull) {
+        final PathAccessor<?> accessor = accessors[i];
+        final int slot = slots[i];
+        switch (kinds[i]) {
+            case EQUALITY:
+                return !Objects.equal(snapshot.references[slot], accessor.get(bean));
+            case IDENTITY:
+                return snapshot.references[slot] != accessor.get(bean);
+            default:
+                final long value = read(kinds[i], accessor, bean, isNull);
+                final boolean wasNull = snapshot.isNull(slot);
+                if (isNull[0] || wasNull) {
+                    return isNull[0] != wasNull;
+                }
+                return snapshot.primitives[slot] != value;
+        }
+    }
+
+    // reads the value and its nullness at once
+    private static long read(Kind kind, PathAccessor<?> accessor, Object bean, boolean[] isNull) {
+        switch (kind) {
+            case INTEGRAL:
+                return accessor.getLong(bean, isNull);
+            case FLOATING:
+                // so that NaN equals to NaN
+                return Double.doubleToLongBits(accessor.getDouble(bean, isNull));
+            default:
+                return accessor.getBoolean(bean, isNull) ? 1 : 0;
+        }
+    }
+
+    /**
+     * Snapshot of the values of tracked paths of a bean
+     */
+    public static final class Values {
+        private final PathSnapshot<?> owner;
+        private final long[] primitives;
+        private final Object[] references;
+
+        private Values(PathSnapshot<?> owner, @Nullable long[] primitives, @Nullable Object[] references) {
+            this.owner = owner;
+            this.primitives = primitives;
+            this.references = references;
+        }
+
+        private boolean isNull(int slot) {
+            return (primitives[owner.primitiveCount + (slot >> 6)] & (1L << slot)) != 0;
+        }
+
+        /**
+         * Value of the {@code index}-th path at the moment of snapshot, boxed if primitive
+         */
+        public @Nullable Object get(int index) {
+            checkElementIndex(index, owner.accessors.length, "index");
+            final int slot = owner.slots[index];
+            if (isReference(owner.kinds[index])) {
+                return references[slot];
+            } else if (isNull(slot)) {
+                return null;
+            }
+            return box(owner.accessors[index].getPath().getType(), primitives[slot]);
+        }
+
+        private static Object box(Class<?> type, long bits) {
+            if (type == Long.class) {
+                return bits;
+            } else if (type == Integer.class) {
+                return (int) bits;
+            } else if (type == Short.class) {
+                return (short) bits;
+            } else if (type == Byte.class) {
+                return (byte) bits;
+            } else if (type == Character.class) {
+                return (char) bits;
+            } else if (type == Double.class) {
+                return Double.longBitsToDouble(bits);
+            } else if (type == Float.class) {
+                return (float) Double.longBitsToDouble(bits);
+            } else {
+                return bits != 0;
+            }
+        }
+    }
+}
@@ -33,6 +33,18 @@ final class Primitives {
         return (T) findPrm(type).getDefaultValue();
     }
 
+    /**
+     * Primitive type of the given wrapper class; or {@code null} if {@code type} is not a wrapper
+     */
+    public static @Nullable Class<?> getPrimitiveClass(Class<?> type) {
+        for (Prm p : PRIMITIVES) {
+            if (p.getWrapperClass() == type) {
+                return p.getType();
+            }
+        }
+        return null;
+    }
+
     private static Prm findPrm(Class<?> type) {
         for (Prm p : PRIMITIVES) {
             if (p.getType() == type) {
@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps path elements back to the accessor methods they were captured from,
+ * i.e. the reverse of {@code BeanPathMagic.NameUtils}
+ */
+final class PropertyMethods {
+    private PropertyMethods() {}
+
+    /**
+     * Getters of every path element, from the first property after root to {@code path} itself.
+     * Getters known to the elements (see {@link BeanPath#getAccessor()}) are reused,
+     * the others are looked up by name.
+     */
+    public static @Nonnull List<Method> getters(@Nonnull BeanPath<?> path) {
+        if (path.hasEach()) {
+            throw new IllegalArgumentException("Path " + path.toDotDelimitedString()
+                                               + " traverses collection elements, use PathEvaluator to read it");
+        }
+
+        final List<Method> getters = new ArrayList<Method>();
+        for (BeanPath<?> element : path) {
+            if (element.hasParent()) {
+                final Method accessor = element.getAccessor();
+                getters.add(isUsableGetter(accessor, element.getParent().getType())
+                            ? accessor : getter(element.getParent().getType(), element.getName()));
+            }
+        }
+        return getters;
+    }
+
+    /**
+     * Setters of every path element, from the first property after root to {@code path} itself,
+     * matching given {@code getters}.
+     * <p/>
+     * The path must be writable: every element must have a setter,
+     * and every intermediate element must be {@link #isInstantiable(Class) instantiable},
+     * so that missing intermediate beans can be created on write.
+     */
+    public static @Nonnull List<Method> setters(@Nonnull BeanPath<?> path, @Nonnull List<Method> getters) {
+        final List<Method> setters = new ArrayList<Method>(getters.size());
+        int i = 0;
+        for (BeanPath<?> element : path) {
+            if (!element.hasParent()) {
+                continue;
+            }
+            final Method getter = getters.get(i++);
+            final Method setter = setter(element.getParent().getType(), element.getName(), getter.getReturnType());
+            if (setter == null) {
+                throw new IllegalArgumentException("No public setter for property '" + element.getName()
+                                                   + "' in " + element.getParent().getType().getName());
+            }
+            if (element != path && !isInstantiable(element.getType())) {
+                throw new IllegalArgumentException("Intermediate property '" + element.toDotDelimitedString()
+                                                   + "' is of type " + element.getType().getName()
+                                                   + ", that has no public no-arg constructor");
+            }
+            setters.add(setter);
+        }
+        return setters;
+    }
+
+    /**
+     * Public no-arg method of {@code owner} a property named {@code name} was captured from.
+     * For a boolean property, that has both, {@code isX()} is preferred to {@code getX()}, as in JavaBeans.
+     */
+    public static @Nonnull Method getter(@Nonnull Class<?> owner, @Nonnull String name) {
+        final String capitalized = capitalize(name);
+        final Method is = findPublicMethod(owner, "is" + capitalized);
+        if (isGetter(is) && (is.getReturnType() == boolean.class || is.getReturnType() == Boolean.class)) {
+            return is;
+        }
+        for (String candidate : new String[]{"get" + capitalized, "is" + capitalized, name}) {
+            final Method method = findPublicMethod(owner, candidate);
+            if (isGetter(method)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException("No public getter for property '" + name + "' in " + owner.getName());
+    }
+
+    private static boolean isGetter(@Nullable Method method) {
+        return method != null && method.getParameterTypes().length == 0 && method.getReturnType() != void.class;
+    }
+
+    // intercepted method may be non-public, while generated code calls public getters only
+    private static boolean isUsableGetter(@Nullable Method accessor, Class<?> owner) {
+        return accessor != null
+               && Modifier.isPublic(accessor.getModifiers())
+               && Modifier.isPublic(accessor.getDeclaringClass().getModifiers())
+               && accessor.getDeclaringClass().isAssignableFrom(owner);
+    }
+
+    /**
+     * Public single-arg setter of {@code owner} for a property of given {@code type};
+     * or {@code null} if there is no such setter
+     */
+    public static @Nullable Method setter(@Nonnull Class<?> owner, @Nonnull String name, @Nonnull Class<?> type) {
+        final String setterName = "set" + capitalize(name);
+        Method found = null;
+        for (Method method : owner.getMethods()) {
+            if (method.getName().equals(setterName)
+                && method.getParameterTypes().length == 1
+                && !Modifier.isStatic(method.getModifiers())) {
+
+                final Class<?> parameterType = method.getParameterTypes()[0];
+                if (parameterType == type) {
+                    return method;
+                } else if (found == null && isConvertible(type, parameterType)) {
+                    found = method;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Whether instances of {@code owner} can be created by generated code
+     */
+    public static boolean isInstantiable(@Nonnull Class<?> owner) {
+        if (!Modifier.isPublic(owner.getModifiers())
+            || Modifier.isAbstract(owner.getModifiers())
+            || (owner.getEnclosingClass() != null && !Modifier.isStatic(owner.getModifiers()))) {
+            return false;
+        }
+        try {
+            final Constructor<?> constructor = owner.getConstructor();
+            return Modifier.isPublic(constructor.getModifiers());
+        } catch (NoSuchMethodException x) {
+            return false;
+        }
+    }
+
+    /**
+     * Whether a value of type {@code from} can be assigned to {@code to}
+     * with at most boxing or unboxing of the very same primitive
+     */
+    public static boolean isConvertible(@Nonnull Class<?> from, @Nonnull Class<?> to) {
+        if (from.isPrimitive() && to.isPrimitive()) {
+            return from == to;
+        } else if (from.isPrimitive()) {
+            return to.isAssignableFrom(Primitives.getWrapperClass(from));
+        } else if (to.isPrimitive()) {
+            return from == Primitives.getWrapperClass(to);
+        } else {
+            return to.isAssignableFrom(from);
+        }
+    }
+
+    private static Method findPublicMethod(Class<?> owner, String name) {
+        try {
+            return owner.getMethod(name);
+        } catch (NoSuchMethodException x) {
+            return null;
+        }
+    }
+
+    private static String capitalize(String name) {
+        if (name.isEmpty() || Character.isUpperCase(name.charAt(0))) {
+            return name;
+        }
+        final char chars[] = name.toCharArray();
+        chars[0] = Character.toUpperCase(chars[0]);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,418 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import net.bytebuddy.jar.asm.Label;
+import ru.custis.beanpath.BytecodeMaker.Emitter;
+import ru.custis.beanpath.BytecodeMaker.MethodBody;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Maps rows of a JDBC {@link ResultSet} to beans, as defined by pairs of column labels and paths:
+ * <pre><code>
+ *     Order order = root(Order.class);
+ *     ResultSetMapper&lt;Order&gt; mapper = ResultSetMapper.of(Order.class)
+ *             .map("ID", $(order.getId()))
+ *             .map("TOTAL", $(order.getTotal()))
+ *             .map("CUSTOMER_NAME", $(order.getCustomer().getName()))
+ *             .compile();
+ *
+ *     List&lt;Order&gt; orders = mapper.mapAll(resultSet);
+ * </code></pre>
+ * or, row by row, with a mapper {@link #bind(ResultSet) bound} to the result set:
+ * <pre><code>
+ *     ResultSetMapper.Bound&lt;Order&gt; rows = mapper.bind(resultSet);
+ *     while (resultSet.next()) {
+ *         Order order = rows.map();
+ *     }
+ * </code></pre>
+ * <p/>
+ * Mapper is compiled into a generated class that reads columns by index with typed getters
+ * ({@link ResultSet#getInt(int)}, {@link ResultSet#getString(int)} etc., chosen by the setter parameter type,
+ * so primitives are never boxed) and calls setters directly. Columns are looked up by label
+ * (case insensitively) once per {@link #bind(ResultSet) binding} or {@link #mapAll(ResultSet)} call, not per row;
+ * while {@link #map(ResultSet)} looks them up on every call.
+ * <p/>
+ * Mapping rules:
+ * <ul>
+ *     <li>missing intermediate beans are created with their public no-arg constructors;</li>
+ *     <li>SQL {@code NULL} leaves the property untouched, and does not cause intermediate beans to be created,
+ *     so e.g. a bean of an outer joined table is created only if some of its columns are not {@code NULL};</li>
+ *     <li>columns of types that have no typed getter are read with {@link ResultSet#getObject(int)}
+ *     and cast to the setter parameter type.</li>
+ * </ul>
+ * Mappers are thread safe, bound ones are not, as well as result sets.
+ */
+public abstract class ResultSetMapper<B> {
+    private Class<B> beanType;
+    private String[] labels;
+    private boolean instantiable;
+
+    /**
+     * Starts mapper definition for beans of {@code beanType}
+     */
+    public static @Nonnull <B> Builder<B> of(@Nonnull Class<B> beanType) {
+        checkNotNull(beanType, "Argument 'beanType' must not be null");
+        return new Builder<B>(beanType);
+    }
+
+    protected ResultSetMapper() {}
+
+    /**
+     * Mapper of rows of the given result set, with its columns looked up once
+     *
+     * @throws IllegalArgumentException if some of the columns are not in the result set
+     */
+    public final @Nonnull Bound<B> bind(@Nonnull ResultSet resultSet) throws SQLException {
+        checkNotNull(resultSet, "Argument 'resultSet' must not be null");
+        return new Bound<B>(this, resultSet, resolve(resultSet.getMetaData()));
+    }
+
+    /**
+     * Creates a bean with the public no-arg constructor, and maps the current row to it;
+     * looks the columns up, so {@link #bind(ResultSet) bind} the mapper to map many rows
+     *
+     * @throws IllegalStateException    if the bean type has no public no-arg constructor
+     * @throws IllegalArgumentException if some of the columns are not in the result set
+     */
+    @SuppressWarnings("unchecked")
+    public final @Nonnull B map(@Nonnull ResultSet resultSet) throws SQLException {
+        checkNotNull(resultSet, "Argument 'resultSet' must not be null");
+        checkInstantiable();
+        return bind(resultSet).map();
+    }
+
+    /**
+     * Maps the current row to the given {@code bean};
+     * looks the columns up, so {@link #bind(ResultSet) bind} the mapper to map many rows
+     *
+     * @throws IllegalArgumentException if some of the columns are not in the result set
+     */
+    public final void map(@Nonnull ResultSet resultSet, @Nonnull B bean) throws SQLException {
+        checkNotNull(resultSet, "Argument 'resultSet' must not be null");
+        checkNotNull(bean, "Argument 'bean' must not be null");
+        read(resultSet, resolve(resultSet.getMetaData()), bean);
+    }
+
+    /**
+     * Maps all the remaining rows, moving the cursor past the last one; does not close the result set
+     *
+     * @throws IllegalStateException    if the bean type has no public no-arg constructor
+     * @throws IllegalArgumentException if some of the columns are not in the result set
+     */
+    public final @Nonnull List<B> mapAll(@Nonnull ResultSet resultSet) throws SQLException {
+        checkNotNull(resultSet, "Argument 'resultSet' must not be null");
+        checkInstantiable();
+        return bind(resultSet).mapAll();
+    }
+
+    private void checkInstantiable() {
+        checkState(instantiable, "Type %s has no public no-arg constructor", beanType.getName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private B newInstance() {
+        checkInstantiable();
+        return (B) newBean();
+    }
+
+    private int[] resolve(ResultSetMetaData metaData) throws SQLException {
+        final Map<String, Integer> indexByLabel = new HashMap<String, Integer>();
+        for (int i = metaData.getColumnCount(); i >= 1; i--) { // the first of the same labels wins
+            indexByLabel.put(metaData.getColumnLabel(i).toUpperCase(Locale.ROOT), i);
+        }
+        final int[] indexes = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            final Integer index = indexByLabel.get(labels[i].toUpperCase(Locale.ROOT));
+            checkArgument(index != null, "No column labeled '%s' in the result set", labels[i]);
+            indexes[i] = index;
+        }
+        return indexes;
+    }
+
+    /**
+     * Mapper bound to a result set, with indexes of its columns resolved.
+     * Not thread safe, as the result set itself.
+     */
+    public static final class Bound<B> {
+        private final ResultSetMapper<B> mapper;
+        private final ResultSet resultSet;
+        private final int[] columns;
+
+        private Bound(ResultSetMapper<B> mapper, ResultSet resultSet, int[] columns) {
+            this.mapper = mapper;
+            this.resultSet = resultSet;
+            this.columns = columns;
+        }
+
+        /**
+         * Creates a bean with the public no-arg constructor, and maps the current row to it
+         *
+         * @throws IllegalStateException if the bean type has no public no-arg constructor
+         */
+        public @Nonnull B map() throws SQLException {
+            final B bean = mapper.newInstance();
+            mapper.read(resultSet, columns, bean);
+            return bean;
+        }
+
+        /**
+         * Maps the current row to the given {@code bean}
+         */
+        public void map(@Nonnull B bean) throws SQLException {
+            checkNotNull(bean, "Argument 'bean' must not be null");
+            mapper.read(resultSet, columns, bean);
+        }
+
+        /**
+         * Maps all the remaining rows, moving the cursor past the last one; does not close the result set
+         *
+         * @throws IllegalStateException if the bean type has no public no-arg constructor
+         */
+        public @Nonnull List<B> mapAll() throws SQLException {
+            mapper.checkInstantiable(); // even if there are no rows
+            final List<B> beans = new ArrayList<B>();
+            while (resultSet.next()) {
+                final B bean = mapper.newInstance();
+                mapper.read(resultSet, columns, bean);
+                beans.add(bean);
+            }
+            return beans;
+        }
+
+        @Override
+        public String toString() {
+            return mapper + " bound to " + resultSet;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ResultSetMapper(" + beanType.getName() + ")";
+    }
+
+    // Implemented by generated code
+
+    protected abstract Object newBean();
+
+    /**
+     * Reads the current row, {@code columns} are indexes of the mapped columns, in order of mappings
+     */
+    protected abstract void read(ResultSet resultSet, int[] columns, Object bean) throws SQLException;
+
+    public static final class Builder<B> {
+        private final Class<B> beanType;
+        private final List<Mapping> mappings = new ArrayList<Mapping>();
+
+        private Builder(Class<B> beanType) {
+            this.beanType = beanType;
+        }
+
+        /**
+         * Adds mapping of the column labeled {@code columnLabel} to {@code path} property of the bean
+         */
+        public @Nonnull Builder<B> map(@Nonnull String columnLabel, @Nonnull BeanPath<?> path) {
+            checkNotNull(columnLabel, "Argument 'columnLabel' must not be null");
+            checkNotNull(path, "Argument 'path' must not be null");
+            checkArgument(!path.isRoot(), "Root path cannot be mapped");
+            checkArgument(path.getRoot().getType().isAssignableFrom(beanType),
+                          "Path %s is not applicable to %s", path, beanType);
+
+            mappings.add(new Mapping(columnLabel, path));
+            return this;
+        }
+
+        /**
+         * Generates the mapper
+         *
+         * @throws IllegalArgumentException if some of the mappings cannot be compiled,
+         *                                  e.g. due to absent setter or unsupported type
+         */
+        public @Nonnull ResultSetMapper<B> compile() {
+            final List<Mapping> mappings = new ArrayList<Mapping>(this.mappings);
+            final String[] labels = new String[mappings.size()];
+            for (int i = 0; i < mappings.size(); i++) {
+                mappings.get(i).resolve();
+                labels[i] = mappings.get(i).columnLabel;
+            }
+            final boolean instantiable = PropertyMethods.isInstantiable(beanType);
+
+            final Map<String, MethodBody> bodies = new LinkedHashMap<String, MethodBody>();
+            bodies.put("newBean", new MethodBody() {
+                @Override
+                public void emit(Emitter emitter) {
+                    if (instantiable) {
+                        emitter.newInstance(beanType);
+                    } else {
+                        emitter.pushNull();
+                    }
+                    emitter.returnValue(Object.class);
+                }
+            });
+            bodies.put("read", new MethodBody() {
+                @Override
+                public void emit(Emitter emitter) {
+                    emitRead(emitter, mappings);
+                }
+            });
+
+            @SuppressWarnings("unchecked")
+            final ResultSetMapper<B> mapper = BytecodeMaker.createInstance(
+                    ResultSetMapper.class, beanType.getSimpleName(), bodies);
+            mapper.beanType = beanType;
+            mapper.labels = labels;
+            mapper.instantiable = instantiable;
+            return mapper;
+        }
+
+        private void emitRead(Emitter emitter, List<Mapping> mappings) {
+            final int bean = emitter.newLocal(Object.class);
+            emitter.loadArgument(Object.class, 2);
+            emitter.checkCast(beanType);
+            emitter.store(Object.class, bean);
+
+            for (int i = 0; i < mappings.size(); i++) {
+                final Mapping mapping = mappings.get(i);
+                final Label skip = new Label();
+
+                emitter.loadArgument(ResultSet.class, 0);
+                emitter.loadArgument(int[].class, 1);
+                emitter.pushInt(i);
+                emitter.loadArrayElement(int.class);
+                emitter.invokeVirtual(ResultSet.class, mapping.column.getterName, mapping.column.type, int.class);
+                final int value = emitter.newLocal(mapping.column.type);
+                emitter.store(mapping.column.type, value);
+
+                if (mapping.column.type.isPrimitive()) {
+                    emitter.loadArgument(ResultSet.class, 0);
+                    emitter.invokeVirtual(ResultSet.class, "wasNull", boolean.class);
+                    emitter.ifTrue(skip);
+                } else {
+                    emitter.load(mapping.column.type, value);
+                    emitter.ifNull(skip);
+                }
+
+                emitter.load(beanType, bean);
+                final Class<?> ownerType = emitter.navigateForWrite(mapping.path, mapping.getters, mapping.setters);
+
+                final Method setter = mapping.setters.get(mapping.setters.size() - 1);
+                emitter.load(mapping.column.type, value);
+                emitter.convert(mapping.column.type, setter.getParameterTypes()[0], null);
+                emitter.invoke(ownerType, setter);
+                emitter.pop(setter.getReturnType());
+
+                emitter.label(skip);
+            }
+            emitter.returnValue(void.class);
+        }
+    }
+
+    private static final class Mapping {
+        private final String columnLabel;
+        private final BeanPath<?> path;
+
+        private List<Method> getters;
+        private List<Method> setters;
+        private ColumnType column;
+
+        private Mapping(String columnLabel, BeanPath<?> path) {
+            this.columnLabel = columnLabel;
+            this.path = path;
+        }
+
+        private void resolve() {
+            getters = PropertyMethods.getters(path);
+            setters = PropertyMethods.setters(path, getters);
+            final Class<?> parameterType = setters.get(setters.size() - 1).getParameterTypes()[0];
+            column = ColumnType.of(parameterType);
+            checkArgument(column != null, "Cannot map column '%s' to %s of type %s",
+                          columnLabel, path.toDotDelimitedString(), parameterType.getName());
+        }
+    }
+
+    /**
+     * Typed {@link ResultSet} getter a column is read with, chosen by the setter parameter type
+     */
+    private static final class ColumnType {
+        private static final Map<Class<?>, ColumnType> byParameterType = new HashMap<Class<?>, ColumnType>();
+
+        static {
+            register("getBoolean", boolean.class);
+            register("getByte", byte.class);
+            register("getShort", short.class);
+            register("getInt", int.class);
+            register("getLong", long.class);
+            register("getFloat", float.class);
+            register("getDouble", double.class);
+            register("getString", String.class);
+            register("getBigDecimal", BigDecimal.class);
+            register("getBytes", byte[].class);
+            register("getDate", java.sql.Date.class);
+            register("getTime", Time.class);
+            register("getTimestamp", Timestamp.class);
+            byParameterType.put(java.util.Date.class, byParameterType.get(Timestamp.class));
+        }
+
+        private static final ColumnType OBJECT = new ColumnType("getObject", Object.class);
+
+        private final String getterName;
+        private final Class<?> type;
+
+        private ColumnType(String getterName, Class<?> type) {
+            this.getterName = getterName;
+            this.type = type;
+        }
+
+        private static void register(String getterName, Class<?> type) {
+            final ColumnType column = new ColumnType(getterName, type);
+            byParameterType.put(type, column);
+            if (type.isPrimitive()) {
+                byParameterType.put(Primitives.getWrapperClass(type), column);
+            }
+        }
+
+        /**
+         * Getter for a setter parameter of given type; or {@code null} if there is none
+         * (i.e. for {@code char} that has no typed getter, and cannot be cast to)
+         */
+        private static ColumnType of(Class<?> parameterType) {
+            final ColumnType column = byParameterType.get(parameterType);
+            if (column != null) {
+                return column;
+            }
+            return (parameterType.isPrimitive() || parameterType == Character.class) ? null : OBJECT;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter, that spreads concurrent updates over several cells (stripes),
+ * so that threads updating it do not contend on a single cache line.
+ * Reads sum all the stripes and are relatively slow.
+ */
+final class StripedCounter {
+    // each stripe takes whole cache line (8 longs = 64 bytes), to avoid false sharing
+    private static final int PADDING = 8;
+
+    static final int STRIPES = stripes();
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long delta) {
+        cells.getAndAdd(stripe() * PADDING, delta);
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    public void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            cells.set(i * PADDING, 0);
+        }
+    }
+
+    /**
+     * Stripe of the current thread, that is stable for the thread lifetime
+     */
+    static int stripe() {
+        return (int) Thread.currentThread().getId() & (STRIPES - 1);
+    }
+
+    private static int stripes() {
+        // power of two, so that stripe() is just a mask
+        final int processors = Math.min(Runtime.getRuntime().availableProcessors(), 64);
+        return Integer.highestOneBit(Math.max(1, processors * 2 - 1));
+    }
+}
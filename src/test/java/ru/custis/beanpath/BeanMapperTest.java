@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import org.junit.Test;
+import ru.custis.beanpath.beans.Address;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Order;
+import ru.custis.beanpath.beans.OrderDto;
+import ru.custis.beanpath.beans.Person;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class BeanMapperTest {
+    private final Order order = root(Order.class);
+    private final OrderDto dto = root(OrderDto.class);
+
+    private final BeanMapper<Order, OrderDto> toDto = BeanMapper.of(Order.class, OrderDto.class)
+            .map($(order.getId()), $(dto.getId()))
+            .map($(order.getCustomer().getName()), $(dto.getClientName()))
+            .map($(order.getCustomer().getRating()), $(dto.getClientRating()))
+            .map($(order.getTotal()), $(dto.getTotal()))
+            .map($(order.getCustomer().getAddress().getCity()), $(dto.getDelivery().getCity()))
+            .compile();
+
+    @Test
+    public void basicMapping() {
+        final Customer customer = new Customer("John Smith", 5);
+        customer.setAddress(new Address());
+        customer.getAddress().setCity("Moscow");
+
+        final OrderDto result = new OrderDto();
+        toDto.map(new Order(42, customer, 99.5, 3), result);
+
+        assertEquals(Long.valueOf(42), result.getId()); // boxing
+        assertEquals("John Smith", result.getClientName()); // nested source property
+        assertEquals(5, result.getClientRating()); // primitive copied as is
+        assertEquals(Double.valueOf(99.5), result.getTotal());
+
+        // missing intermediate destination bean is created
+        assertNotNull(result.getDelivery());
+        assertEquals("Moscow", result.getDelivery().getCity());
+    }
+
+    @Test
+    public void unreachableSourceLeavesDestinationUntouched() {
+        final OrderDto result = new OrderDto();
+        result.setClientName("Untouched");
+
+        toDto.map(new Order(1, null, 0, 0), result);
+
+        assertEquals("Untouched", result.getClientName());
+        assertNull(result.getDelivery()); // not created for nothing
+        assertEquals(Long.valueOf(1), result.getId());
+    }
+
+    @Test
+    public void nullIsNeverUnboxed() {
+        final BeanMapper<OrderDto, Order> fromDto = BeanMapper.of(OrderDto.class, Order.class)
+                .map($(dto.getTotal()), $(order.getTotal()))
+                .map($(dto.getClientName()), $(order.getCustomer().getName()))
+                .compile();
+
+        final Order result = new Order(1, null, 10, 0);
+        fromDto.map(new OrderDto(), result);
+
+        assertEquals(10, result.getTotal(), 0);
+
+        // null leaf of reference type is copied as is
+        assertNotNull(result.getCustomer());
+        assertNull(result.getCustomer().getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void incompatibleTypes() {
+        @SuppressWarnings("unchecked") // defeats compile time type check on purpose, to check the runtime one
+        final BeanPath<Object> clientName = (BeanPath<Object>) (BeanPath<?>) $(dto.getClientName());
+        BeanMapper.of(Order.class, OrderDto.class)
+                .map($(order.getQuantity()), clientName)
+                .compile();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noSetter() {
+        final Person person = root(Person.class);
+        BeanMapper.of(Order.class, Person.class)
+                .map($(order.getCustomer().getName()), $(person.getName()))
+                .compile();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pathOfAnotherBean() {
+        final Person person = root(Person.class);
+        BeanMapper.of(Order.class, OrderDto.class)
+                .map($(person.getName()), $(dto.getClientName()));
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import org.junit.Before;
+import org.junit.Test;
+import ru.custis.beanpath.beans.Person;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.$$;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+/**
+ * Allocation budgets of hot paths, so that a regression (e.g. of a lazily cached derived property
+ * of {@link BeanPath}) fails the build.
+ * <p/>
+ * Allocations are measured per thread with {@code com.sun.management.ThreadMXBean},
+ * tests are skipped on JVMs that do not support it. Every operation is warmed up first,
+ * and budgets are averaged over many iterations, so that one-off allocations
+ * (e.g. of lazy initialization or of the measurement itself) do not count.
+ */
+public class BeanPathAllocationTest {
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 100000;
+
+    private com.sun.management.ThreadMXBean threads;
+
+    @Before
+    public void setUp() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    // returns a primitive, so that the measurement does not box
+    private interface Operation {
+        long run();
+    }
+
+    /**
+     * Mean number of bytes allocated by one run of the operation
+     */
+    private long allocatedPerRun(Operation operation) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += operation.run();
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        final long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += operation.run();
+        }
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(sink != 42); // keeps the results alive
+        return allocated / ITERATIONS;
+    }
+
+    private static void assertWithinBudget(String operation, long budget, long allocated) {
+        assertTrue(operation + " allocates " + allocated + " bytes per run, but the budget is " + budget,
+                   allocated <= budget);
+    }
+
+    @Test
+    public void cachedPathOperationsDoNotAllocate() {
+        final Person person = root(Person.class);
+        final BeanPath<String> path = $(person.getBestFriend().getDocument().getNumber());
+        final BeanPath<String> equalPath = $(person.getBestFriend().getDocument().getNumber());
+
+        assertWithinBudget("hashCode()", 0, allocatedPerRun(new Operation() {
+            @Override public long run() {
+                return path.hashCode();
+            }
+        }));
+        assertWithinBudget("equals()", 0, allocatedPerRun(new Operation() {
+            @Override public long run() {
+                return path.equals(equalPath) ? 1 : 0;
+            }
+        }));
+        assertWithinBudget("toDotDelimitedString()", 0, allocatedPerRun(new Operation() {
+            @Override public long run() {
+                return path.toDotDelimitedString().length();
+            }
+        }));
+        assertWithinBudget("toString()", 0, allocatedPerRun(new Operation() {
+            @Override public long run() {
+                return path.toString().length();
+            }
+        }));
+    }
+
+    // Capture creates the path itself, that is a node per element, and ByteBuddy creates
+    // an arguments array per intercepted call; nothing else is allowed to be allocated.
+    // Budgets leave room for object layouts without compressed oops.
+
+    @Test
+    public void capture() {
+        final Person person = root(Person.class);
+
+        assertWithinBudget("$()", 256, allocatedPerRun(new Operation() {
+            @Override public long run() {
+                return $(person.getBestFriend().getName()).getDepth();
+            }
+        }));
+    }
+
+    @Test
+    public void captureOfDotDelimitedString() {
+        final Person person = root(Person.class);
+
+        // plus the string, with its builder
+        assertWithinBudget("$$()", 512, allocatedPerRun(new Operation() {
+            @Override public long run() {
+                return $$(person.getBestFriend().getName()).length();
+            }
+        }));
+    }
+}
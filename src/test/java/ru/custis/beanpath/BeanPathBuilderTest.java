@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import org.junit.Test;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Identified;
+import ru.custis.beanpath.beans.Order;
+import ru.custis.beanpath.beans.OrderLine;
+import ru.custis.beanpath.beans.Person;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.each;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class BeanPathBuilderTest {
+
+    @Test
+    public void equalToCapturedPaths() {
+        final Person person = root(Person.class);
+
+        assertEquals($(person.getDocument().getNumber()),
+                     BeanPathBuilder.of(Person.class).get("document").get("number", String.class).toPath());
+        assertEquals($(person.getAge()),
+                     BeanPathBuilder.of(Person.class).get("age", Integer.class).toPath());
+        assertEquals($(person.getBestFriend().getName()),
+                     BeanPathBuilder.of(Person.class).get("getBestFriend").get("getName").toPath());
+    }
+
+    @Test
+    public void booleanGetter() {
+        final Order order = root(Order.class);
+        assertEquals($(order.isPaid()), BeanPathBuilder.of(Order.class).get("paid").toPath());
+    }
+
+    public static class Flagged {
+        public boolean getActive() { return false; }
+
+        public boolean isActive() { return false; }
+    }
+
+    @Test
+    public void isGetterIsPreferredForBooleans() {
+        assertEquals("isActive", BeanPathBuilder.of(Flagged.class).get("active").toPath().getAccessor().getName());
+    }
+
+    @Test
+    public void collectionElements() {
+        final Customer customer = root(Customer.class);
+
+        assertEquals($(each(each(customer.getOrders()).getLines()).getPrice()),
+                     BeanPathBuilder.of(Customer.class).get("orders").each().get("lines").each()
+                                    .get("price", Double.class).toPath());
+    }
+
+    @Test
+    public void genericTypes() {
+        final BeanPath<String> path = BeanPathBuilder.of(new TypeLiteral<Identified<String>>() {})
+                                                     .get("id", String.class).toPath();
+        assertEquals(String.class, path.getType());
+
+        final Customer customer = root(Customer.class);
+        assertEquals($(customer.getOrders()).getGenericType(),
+                     BeanPathBuilder.of(Customer.class).get("orders").toPath().getGenericType());
+    }
+
+    public static final class Money {
+        public long amount() { return 0; }
+
+        public String getCurrency() { return null; }
+    }
+
+    public static class WithFinalGetter {
+        public final Money getPrice() { return null; }
+    }
+
+    @Test
+    public void finalClassesAndGetters() {
+        assertEquals(BeanPath.root(WithFinalGetter.class).append("price", Money.class).append("amount", Long.class),
+                     BeanPathBuilder.of(WithFinalGetter.class).get("price").get("amount").toPath());
+        assertEquals(BeanPath.root(Money.class).append("currency", String.class),
+                     BeanPathBuilder.of(Money.class).get("currency", String.class).toPath());
+    }
+
+    @Test
+    public void narrowingKeepsTypeArguments() {
+        final BeanPath<?> orders = BeanPathBuilder.of(Customer.class).get("orders").narrow(ArrayList.class).toPath();
+
+        assertEquals(ArrayList.class, orders.getType());
+        assertEquals(new TypeLiteral<ArrayList<Order>>() {}.toTypeToken().getType(), orders.getGenericType());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownProperty() {
+        BeanPathBuilder.of(OrderLine.class).get("weight");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongType() {
+        BeanPathBuilder.of(OrderLine.class).get("price", String.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void eachOfNotIterable() {
+        BeanPathBuilder.of(OrderLine.class).get("product").each();
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Document;
+import ru.custis.beanpath.beans.Order;
+import ru.custis.beanpath.beans.Person;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+/**
+ * Stress tests of the shared and thread-confined state of {@link BeanPathMagic} and {@link BeanPath}:
+ * many threads are released at once by a barrier to maximize contention
+ */
+@Category(StressTests.class)
+public class BeanPathMagicConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 2000;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    private final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // Never mocked before the test, so that threads race for their creation
+
+    public static class Fresh1 { public String getName() { return null; } }
+
+    public static class Fresh2 { public String getName() { return null; } }
+
+    public static class Fresh3 { public String getName() { return null; } }
+
+    public static class Fresh4 { public String getName() { return null; } }
+
+    @Test
+    public void exactlyOneMockPerType() throws Exception {
+        final Class<?>[] types = {Fresh1.class, Fresh2.class, Fresh3.class, Fresh4.class};
+
+        final List<Object[]> results = runConcurrently(new Callable<Object[]>() {
+            @Override
+            public Object[] call() throws Exception {
+                final Object[] roots = new Object[types.length];
+                barrier.await();
+                for (int i = 0; i < types.length; i++) {
+                    roots[i] = root(types[i]);
+                }
+                return roots;
+            }
+        });
+
+        for (Object[] roots : results) {
+            for (int i = 0; i < types.length; i++) {
+                assertSame(results.get(0)[i], roots[i]);
+            }
+        }
+    }
+
+    @Test
+    public void noPathLeakageBetweenThreads() throws Exception {
+        final List<Integer> threadIndexes = new ArrayList<Integer>();
+        for (int i = 0; i < THREADS; i++) {
+            threadIndexes.add(i);
+        }
+
+        final List<Boolean> results = runConcurrently(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                final int index;
+                synchronized (threadIndexes) {
+                    index = threadIndexes.remove(0);
+                }
+                final Person person = root(Person.class);
+                final Order order = root(Order.class);
+                final BeanPath<String> personPath = BeanPath.root(Person.class)
+                        .append("document", Document.class).append("number", String.class);
+                final BeanPath<String> orderPath = BeanPath.root(Order.class)
+                        .append("customer", Customer.class).append("name", String.class);
+
+                barrier.await();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    // threads interleave captures of different paths over shared mocks
+                    if ((i + index) % 2 == 0) {
+                        assertEquals(personPath, $(person.getDocument().getNumber()));
+                    } else {
+                        assertEquals(orderPath, $(order.getCustomer().getName()));
+                    }
+                }
+                return true;
+            }
+        });
+
+        assertEquals(THREADS, results.size());
+    }
+
+    @Test
+    public void stableCachedValues() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            final BeanPath<String> shared = BeanPath.root(Person.class)
+                    .append("bestFriend", Person.class).append("document", Document.class).append("number", String.class);
+            final BeanPath<String> expected = BeanPath.root(Person.class)
+                    .append("bestFriend", Person.class).append("document", Document.class).append("number", String.class);
+            final int expectedHashCode = expected.hashCode();
+            final String expectedString = expected.toString();
+            final String expectedDotString = expected.toDotDelimitedString();
+
+            // the shared path has its caches cold, so threads race to fill them
+            final List<Object[]> results = runConcurrently(new Callable<Object[]>() {
+                @Override
+                public Object[] call() throws Exception {
+                    barrier.await();
+                    return new Object[]{shared.hashCode(), shared.toString(), shared.toDotDelimitedString()};
+                }
+            });
+
+            for (Object[] values : results) {
+                assertEquals(expectedHashCode, values[0]);
+                assertEquals(expectedString, values[1]);
+                assertEquals(expectedDotString, values[2]);
+            }
+        }
+    }
+
+    private <V> List<V> runConcurrently(Callable<V> task) throws Exception {
+        final List<Future<V>> futures = new ArrayList<Future<V>>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(task));
+        }
+        final List<V> results = new ArrayList<V>();
+        for (Future<V> future : futures) {
+            results.add(future.get(30, TimeUnit.SECONDS)); // rethrows assertion errors of the task
+        }
+        return results;
+    }
+}
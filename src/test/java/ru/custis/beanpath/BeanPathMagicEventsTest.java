@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.custis.beanpath.beans.Person;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class BeanPathMagicEventsTest {
+    private final RecordingListener listener = new RecordingListener();
+
+    @Before
+    public void setUp() {
+        BeanPathMagicEvents.addListener(listener);
+    }
+
+    @After
+    public void tearDown() {
+        BeanPathMagicEvents.removeListener(listener);
+        BeanPathMagicEvents.setSlowCaptureThreshold(1, TimeUnit.MILLISECONDS);
+    }
+
+    public static class MockedForEvents {
+        public String getName() { return null; }
+    }
+
+    @Test
+    public void mockGeneration() {
+        root(MockedForEvents.class);
+        root(MockedForEvents.class); // cached, no event
+
+        assertEquals(1, listener.mockedTypes.size());
+        assertEquals(MockedForEvents.class, listener.mockedTypes.get(0));
+        assertTrue(listener.mockClassNames.get(0).contains("MockedForEvents"));
+        assertTrue(listener.bytecodeSizes.get(0) > 0);
+    }
+
+    @Test
+    public void slowCaptures() {
+        final Person person = root(Person.class);
+
+        BeanPathMagicEvents.setSlowCaptureThreshold(1, TimeUnit.HOURS);
+        $(person.getName());
+        assertEquals(0, listener.slowPaths.size());
+
+        BeanPathMagicEvents.setSlowCaptureThreshold(0, TimeUnit.NANOSECONDS);
+        $(person.getDocument().getNumber());
+
+        assertEquals(1, listener.slowPaths.size());
+        assertEquals("document.number", listener.slowPaths.get(0).toDotDelimitedString());
+    }
+
+    @Test
+    public void abandonedChainIsNotTimed() throws Exception {
+        final Person person = root(Person.class);
+        BeanPathMagicEvents.setSlowCaptureThreshold(50, TimeUnit.MILLISECONDS);
+
+        person.getDocument(); // abandoned, e.g. by an exception
+        Thread.sleep(100);
+        $(person.getName());
+
+        assertEquals(0, listener.slowPaths.size());
+    }
+
+    @Test
+    public void failingListenerIsIgnored() {
+        final BeanPathMagicListener failing = new BeanPathMagicListener() {
+            @Override
+            public void onSlowCapture(BeanPath<?> path, long durationNanos) {
+                throw new IllegalStateException();
+            }
+        };
+        BeanPathMagicEvents.addListener(failing);
+        try {
+            BeanPathMagicEvents.setSlowCaptureThreshold(0, TimeUnit.NANOSECONDS);
+            final Person person = root(Person.class);
+            $(person.getName());
+
+            assertEquals(1, listener.slowPaths.size());
+        } finally {
+            BeanPathMagicEvents.removeListener(failing);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeThreshold() {
+        BeanPathMagicEvents.setSlowCaptureThreshold(-1, TimeUnit.MILLISECONDS);
+    }
+
+    private static class RecordingListener extends BeanPathMagicListener {
+        final List<Class<?>> mockedTypes = new ArrayList<Class<?>>();
+        final List<String> mockClassNames = new ArrayList<String>();
+        final List<Integer> bytecodeSizes = new ArrayList<Integer>();
+        final List<BeanPath<?>> slowPaths = new ArrayList<BeanPath<?>>();
+
+        @Override
+        public void onMockGenerated(Class<?> mockedType, String mockClassName, int bytecodeSize, long durationNanos) {
+            mockedTypes.add(mockedType);
+            mockClassNames.add(mockClassName);
+            bytecodeSizes.add(bytecodeSize);
+        }
+
+        @Override
+        public void onSlowCapture(BeanPath<?> path, long durationNanos) {
+            slowPaths.add(path);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.custis.beanpath.beans.Person;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class BeanPathMagicMetricsTest {
+    private final BeanPathMagicMetrics metrics = BeanPathMagicMetrics.getInstance();
+
+    // metrics are global, so latencies recorded by other tests must not leak in
+    @Before
+    public void setUp() {
+        metrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        metrics.setEnabled(true);
+        BeanPathMagicMetrics.unregisterMBean();
+    }
+
+    public static class NeverMockedBefore {
+        public String getName() { return null; }
+    }
+
+    @Test
+    public void mockGenerationAndCaching() {
+        final long mocks = metrics.getMockCount();
+        final long misses = metrics.getMockCacheMisses();
+        final long hits = metrics.getMockCacheHits();
+
+        root(NeverMockedBefore.class);
+        root(NeverMockedBefore.class);
+
+        assertEquals(mocks + 1, metrics.getMockCount());
+        assertEquals(misses + 1, metrics.getMockCacheMisses());
+        assertEquals(hits + 1, metrics.getMockCacheHits());
+        assertTrue(metrics.getMockGenerationMaxMicros() > 0);
+    }
+
+    @Test
+    public void captures() {
+        final Person person = root(Person.class);
+        final long captures = metrics.getCaptureCount();
+
+        $(person.getDocument().getNumber());
+        $(person.getName());
+
+        assertEquals(captures + 2, metrics.getCaptureCount());
+        assertTrue(metrics.getCaptureP99Nanos() >= metrics.getCaptureMeanNanos() / 2);
+    }
+
+    @Test
+    public void disabling() {
+        final Person person = root(Person.class);
+        metrics.setEnabled(false);
+
+        final long captures = metrics.getCaptureCount();
+        final long hits = metrics.getMockCacheHits();
+
+        $(person.getName());
+        root(Person.class);
+
+        assertEquals(captures, metrics.getCaptureCount());
+        assertEquals(hits, metrics.getMockCacheHits());
+    }
+
+    @Test
+    public void jmxExposure() throws Exception {
+        BeanPathMagicMetrics.registerMBean();
+        BeanPathMagicMetrics.registerMBean(); // does nothing if already registered
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(BeanPathMagicMetrics.OBJECT_NAME);
+
+        assertEquals(metrics.getMockCount(), server.getAttribute(name, "MockCount"));
+        assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+    }
+}
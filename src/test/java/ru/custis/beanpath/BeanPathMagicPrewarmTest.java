@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import org.junit.Test;
+import ru.custis.beanpath.beans.Address;
+import ru.custis.beanpath.beans.OrderLine;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static ru.custis.beanpath.BeanPathMagic.$$;
+import static ru.custis.beanpath.BeanPathMagic.each;
+import static ru.custis.beanpath.BeanPathMagic.prewarm;
+import static ru.custis.beanpath.BeanPathMagic.prewarmPackage;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class BeanPathMagicPrewarmTest {
+    private final BeanPathMagicMetrics metrics = BeanPathMagicMetrics.getInstance();
+
+    // Never mocked before the test
+
+    public static class WarmRoot {
+        public WarmChild getChild() { return null; }
+
+        public List<WarmElement> getElements() { return null; }
+
+        public WarmRoot getSelf() { return null; }
+
+        public String getName() { return null; }
+
+        public NotWarmed toNotWarmed() { return null; }
+    }
+
+    public static class NotWarmed {
+    }
+
+    public static class WarmChild {
+        public WarmGrandChild getGrandChild() { return null; }
+    }
+
+    public static class WarmGrandChild {
+        public int getValue() { return 0; }
+    }
+
+    public static class WarmElement {
+        public WarmChild getChild() { return null; }
+    }
+
+    @Test
+    public void reachableTypesAreMocked() {
+        final long captures = metrics.getCaptureCount();
+        prewarm(WarmRoot.class);
+        assertEquals("Prewarming is not a capture", captures, metrics.getCaptureCount());
+
+        final long mocks = metrics.getMockCount();
+
+        final WarmRoot warmRoot = root(WarmRoot.class);
+        assertEquals("child.grandChild.value", $$(warmRoot.getChild().getGrandChild().getValue()));
+        assertEquals("self.name", $$(warmRoot.getSelf().getName()));
+        assertEquals("elements.*.child.grandChild", $$(each(warmRoot.getElements()).getChild().getGrandChild()));
+
+        assertEquals(mocks, metrics.getMockCount());
+    }
+
+    @Test
+    public void nonGettersAreNotWarmed() {
+        prewarm(WarmRoot.class);
+
+        final long mocks = metrics.getMockCount();
+        root(NotWarmed.class);
+        assertEquals(mocks + 1, metrics.getMockCount());
+    }
+
+    @Test
+    public void onGivenExecutor() {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            prewarm(executor, WarmRoot.class, OrderLine.class);
+            prewarm(executor, WarmRoot.class); // does nothing new
+        } finally {
+            executor.shutdown();
+        }
+
+        final long mocks = metrics.getMockCount();
+        root(OrderLine.class);
+        assertEquals(mocks, metrics.getMockCount());
+    }
+
+    @Test
+    public void packageScan() {
+        prewarmPackage("ru.custis.beanpath.beans");
+
+        final long mocks = metrics.getMockCount();
+        final Address address = root(Address.class);
+        assertEquals("city", $$(address.getCity()));
+        assertEquals(mocks, metrics.getMockCount());
+    }
+}
@@ -25,12 +25,19 @@ import ru.custis.beanpath.beans.NamesBean;
 import ru.custis.beanpath.beans.Person;
 import ru.custis.beanpath.beans.PrimitiveBean;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 import static ru.custis.beanpath.BeanPathMagic.$;
 import static ru.custis.beanpath.BeanPathMagic.$$;
+import static ru.custis.beanpath.BeanPathMagic.$all;
 import static ru.custis.beanpath.BeanPathMagic.root;
 
 public class BeanPathMagicTest {
@@ -153,6 +160,108 @@ public class BeanPathMagicTest {
         assertEquals(String.class, $(identified.getId()).getType());
     }
 
+    @Test
+    public void generics_MockClassSharedByParameterizations() {
+        final Identified<String> stringIdentified = root(new TypeLiteral<Identified<String>>() {});
+        final Identified<Integer> integerIdentified = root(new TypeLiteral<Identified<Integer>>() {});
+
+        // one generated class, but generic context is bound per mock
+        assertSame(stringIdentified.getClass(), integerIdentified.getClass());
+        assertEquals(String.class, $(stringIdentified.getId()).getType());
+        assertEquals(Integer.class, $(integerIdentified.getId()).getType());
+    }
+
+    @Test
+    public void generics_GenericTypesAreRetained() throws Exception {
+        final Identified<List<Person>> identified = root(new TypeLiteral<Identified<List<Person>>>() {});
+        final BeanPath<List<Person>> path = $(identified.getId());
+
+        assertEquals(List.class, path.getType());
+        assertEquals(new TypeLiteral<List<Person>>() {}.toTypeToken().getType(), path.getGenericType());
+        assertEquals(new TypeLiteral<Identified<List<Person>>>() {}.toTypeToken().getType(), path.getRoot().getGenericType());
+
+        final Person person = root(Person.class);
+        assertEquals(new TypeLiteral<List<? extends Number>>() {}.toTypeToken().getType(), $(person.getNumbers()).getGenericType());
+        assertEquals(Integer.class, $(person.getAge()).getGenericType());
+    }
+
+    @Test
+    public void accessors_InterceptedMethodsAreRetained() throws Exception {
+        final Person person = root(Person.class);
+        final BeanPath<String> path = $(person.getBestFriend().getName());
+
+        assertEquals(Person.class.getMethod("getName"), path.getAccessor());
+        assertEquals(0, path.getAnnotations().length);
+        assertNull(path.getAnnotation(Nullable.class));
+
+        final BeanPath<?> bestFriend = path.getParent();
+        assertEquals(Person.class.getMethod("getBestFriend"), bestFriend.getAccessor());
+        assertNotNull(bestFriend.getAnnotation(Nullable.class));
+
+        assertNull(path.getRoot().getAccessor());
+        assertEquals(0, path.getRoot().getAnnotations().length);
+
+        // inherited and generic getters are retained as declared
+        assertEquals(Identified.class.getMethod("getId"), $(person.getId()).getAccessor());
+    }
+
+    /*
+     * Batch capture
+     */
+
+    @Test
+    public void batch_severalPaths() {
+        final Person person = root(Person.class);
+
+        final List<BeanPath<?>> paths = $all(person.getName(), person.getAge(), person.getDocument().getNumber(),
+                                             person.getBestFriend().getName());
+
+        assertEquals(Arrays.<BeanPath<?>>asList(
+                BeanPath.root(Person.class).append("name", String.class),
+                BeanPath.root(Person.class).append("age", Integer.class),
+                BeanPath.root(Person.class).append("document", Document.class).append("number", String.class),
+                BeanPath.root(Person.class).append("bestFriend", Person.class).append("name", String.class)
+        ), paths);
+    }
+
+    @Test
+    public void batch_differentRoots() {
+        final Person person = root(Person.class);
+        final Document document = root(Document.class);
+
+        assertEquals(Arrays.asList("document.number", "number", "name"),
+                     toDotDelimitedStrings($all(person.getDocument().getNumber(), document.getNumber(), person.getName())));
+    }
+
+    @Test
+    public void batch_undelimitedChains() {
+        final Person person = root(Person.class);
+        try {
+            // bestFriend returns the very same Person mock, so the next chain continues it
+            $all(person.getBestFriend(), person.getName());
+            fail();
+        } catch (BeanPathMagicException ignored) {
+        }
+
+        assertEquals("name", $$(person.getName())); // nothing is left behind
+    }
+
+    @Test
+    public void leftoverChainsAreDropped() {
+        final Person person = root(Person.class);
+        person.getDocument().getNumber(); // e.g. a capture that failed
+
+        assertEquals("name", $$(person.getName()));
+    }
+
+    private static List<String> toDotDelimitedStrings(List<BeanPath<?>> paths) {
+        final List<String> strings = new ArrayList<String>();
+        for (BeanPath<?> path : paths) {
+            strings.add(path.toDotDelimitedString());
+        }
+        return strings;
+    }
+
     /*
      * Examples of awkward and very likely meaningless use, but still legal
      */
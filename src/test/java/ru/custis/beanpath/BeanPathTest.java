@@ -20,9 +20,15 @@ package ru.custis.beanpath;
 import org.junit.Test;
 
 import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.util.Iterator;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -117,6 +123,54 @@ public class BeanPathTest {
         assertSame(path.toString(), path.toString());
     }
 
+    @Test
+    public void genericType() throws Exception {
+        final TypeLiteral<List<String>> listOfStrings = new TypeLiteral<List<String>>() {};
+        final BeanPath<List<String>> path = BeanPath.root(DataSource.class).append("names", listOfStrings);
+
+        assertEquals(List.class, path.getType());
+        assertEquals(listOfStrings.toTypeToken().getType(), path.getGenericType());
+        assertEquals(path.getGenericType(), BeanPath.root(DataSource.class)
+                .append("names", List.class, listOfStrings.toTypeToken().getType()).getGenericType());
+        assertEquals(Connection.class, BeanPath.root(DataSource.class).append("connection", Connection.class).getGenericType());
+
+        // generic type is not a part of identity
+        assertEquals(BeanPath.root(DataSource.class).append("names", List.class), path);
+
+        // and is not serialized
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(path);
+        out.close();
+        final BeanPath<?> deserialized = (BeanPath<?>) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(path, deserialized);
+        assertEquals(List.class, deserialized.getGenericType());
+    }
+
+    @Test
+    public void accessor() throws Exception {
+        final Method getConnection = DataSource.class.getMethod("getConnection");
+        final BeanPath<Connection> path = BeanPath.root(DataSource.class)
+                .append("connection", Connection.class, Connection.class, getConnection);
+
+        assertEquals(getConnection, path.getAccessor());
+        assertNull(BeanPath.root(DataSource.class).append("connection", Connection.class).getAccessor());
+        assertNull(path.getRoot().getAccessor());
+
+        // accessor is not a part of identity
+        assertEquals(BeanPath.root(DataSource.class).append("connection", Connection.class), path);
+
+        // and is not serialized
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(path);
+        out.close();
+        final BeanPath<?> deserialized = (BeanPath<?>) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(path, deserialized);
+        assertNull(deserialized.getAccessor());
+        assertEquals(0, deserialized.getAnnotations().length);
+    }
+
     private static void assertPathIs(String name, Class type, boolean isRoot, BeanPath path) {
         assertEquals(name, path.getName());
         assertEquals(type, path.getType());
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import com.google.common.io.ByteStreams;
+import net.bytebuddy.jar.asm.Opcodes;
+import org.junit.Test;
+import ru.custis.beanpath.BytecodeMaker.Emitter;
+import ru.custis.beanpath.BytecodeMaker.MethodBody;
+import ru.custis.beanpath.beans.Address;
+
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+public class BytecodeMakerTest {
+
+    public abstract static class Sum {
+        protected abstract long sum();
+    }
+
+    @Test
+    public void deepAndWideStack() {
+        final Sum sum = BytecodeMaker.createInstance(Sum.class, "deep", "sum", new MethodBody() {
+            @Override
+            public void emit(Emitter emitter) {
+                for (int i = 1; i <= 20; i++) { // 40 stack slots
+                    emitter.visitor().visitLdcInsn((long) i);
+                }
+                for (int i = 1; i < 20; i++) {
+                    emitter.visitor().visitInsn(Opcodes.LADD);
+                }
+                emitter.returnValue(long.class);
+            }
+        });
+        assertEquals(210, sum.sum());
+    }
+
+    static class Hidden {
+        public String getName() { return "hidden"; }
+    }
+
+    @Test
+    public void nonPublicClassesAreRejected() {
+        try {
+            PathAccessor.of(BeanPath.root(Hidden.class).append("name", String.class));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Defines {@link Address} anew, as if it came from a web application
+     */
+    private static class ChildFirstLoader extends ClassLoader {
+        private ChildFirstLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(Address.class.getName())) {
+                return super.loadClass(name, resolve);
+            }
+            Class<?> type = findLoadedClass(name);
+            if (type == null) {
+                final InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+                try {
+                    final byte[] bytes = ByteStreams.toByteArray(in);
+                    type = defineClass(name, bytes, 0, bytes.length);
+                } catch (Exception x) {
+                    throw new ClassNotFoundException(name, x);
+                }
+            }
+            return type;
+        }
+    }
+
+    @Test
+    public void beansOfChildClassLoaders() throws Exception {
+        final Class<?> child = Class.forName(Address.class.getName(), true, new ChildFirstLoader(getClass().getClassLoader()));
+        assertNotSame(Address.class, child);
+
+        final Object address = child.newInstance();
+        child.getMethod("setCity", String.class).invoke(address, "Moscow");
+
+        final PathAccessor<String> accessor = PathAccessor.of(BeanPath.root(child).append("city", String.class));
+        assertEquals("Moscow", accessor.get(address));
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import com.google.common.base.Function;
+import org.junit.Test;
+import ru.custis.beanpath.beans.Identified;
+import ru.custis.beanpath.beans.Person;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.path;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class FunctionPathsTest {
+    private static final Function<Person, String> DOCUMENT_NUMBER = new Function<Person, String>() {
+        @Override
+        public String apply(Person person) {
+            return person.getDocument().getNumber();
+        }
+    };
+
+    @Test
+    public void getterChain() {
+        final Person person = root(Person.class);
+        assertEquals($(person.getDocument().getNumber()), path(DOCUMENT_NUMBER));
+    }
+
+    @Test
+    public void cachedPerClass() {
+        assertSame(path(DOCUMENT_NUMBER), path(DOCUMENT_NUMBER));
+    }
+
+    @Test
+    public void primitiveGetter() {
+        final Person person = root(Person.class);
+        assertEquals($(person.getBestFriend().getAge()), path(new Function<Person, Integer>() {
+            @Override
+            public Integer apply(Person person) {
+                return person.getBestFriend().getAge();
+            }
+        }));
+    }
+
+    @Test
+    public void genericGetterIsNarrowedByCast() {
+        final BeanPath<String> path = path(new Function<Identified<String>, String>() {
+            @Override
+            public String apply(Identified<String> identified) {
+                return identified.getId();
+            }
+        });
+        assertEquals(BeanPath.root(Identified.class).append("id", String.class), path);
+    }
+
+    public static final class FinalBean {
+        public String getName() { return null; }
+    }
+
+    @Test
+    public void finalClass() {
+        assertEquals(BeanPath.root(FinalBean.class).append("name", String.class), path(new Function<FinalBean, String>() {
+            @Override
+            public String apply(FinalBean bean) {
+                return bean.getName();
+            }
+        }));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notAGetterChain() {
+        path(new Function<Person, String>() {
+            @Override
+            public String apply(Person person) {
+                return person.getName() + "!";
+            }
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void conversionIsNotBoxing() {
+        path(new Function<Person, String>() {
+            @Override
+            public String apply(Person person) {
+                return String.valueOf(person.getAge());
+            }
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void callOfNotABean() {
+        path(new Function<Person, Integer>() {
+            @Override
+            public Integer apply(Person person) {
+                return person.getName().length();
+            }
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void methodWithArguments() {
+        path(new Function<Person, String>() {
+            @Override
+            public String apply(Person person) {
+                return person.withParam(1);
+            }
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void identity() {
+        path(new Function<Person, Person>() {
+            @Override
+            public Person apply(Person person) {
+                return person;
+            }
+        });
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.custis.beanpath.MockMaker.InvocationCallback;
+import ru.custis.beanpath.MockMaker.InvocationCallbackAdapter;
+import ru.custis.beanpath.beans.Person;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MockClassCacheTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void disableCache() {
+        MockClassCache.setDirectory(null);
+    }
+
+    // mocked by this test only, so that its mock class is not generated yet
+    public static class CachedBean {
+        public String getName() { return "name"; }
+    }
+
+    private static final InvocationCallback nameReturningHandler = new InvocationCallback() {
+        @Override public Object invoke(Object proxy, Method method, Object[] args) {
+            return "mocked " + method.getName();
+        }
+    };
+
+    @Test
+    public void mockClassIsPersistedAndReloaded() throws Exception {
+        final File dir = folder.newFolder();
+        BeanPathMagic.setMockCacheDirectory(dir);
+
+        final CachedBean mock = MockMaker.createMock(CachedBean.class, nameReturningHandler);
+        final String className = mock.getClass().getName();
+        assertEquals(MockMaker.mockClassName(CachedBean.class, MockClassCache.fingerprintOf(CachedBean.class)), className);
+        assertTrue(new File(dir, className + ".class").isFile());
+
+        // as if on the next start of the JVM
+        final Class<?> reloaded = MockClassCache.load(className, MockMaker.class.getClassLoader());
+        assertNotNull(reloaded);
+        assertNotSame(mock.getClass(), reloaded);
+        assertEquals(className, reloaded.getName());
+
+        final CachedBean reloadedMock = (CachedBean) StolenUnsafe.getUnsafe().allocateInstance(reloaded);
+        final Field callbackField = reloaded.getDeclaredField("$$beanPathCallback");
+        callbackField.setAccessible(true);
+        callbackField.set(reloadedMock, new InvocationCallbackAdapter(nameReturningHandler));
+        assertEquals("mocked getName", reloadedMock.getName());
+    }
+
+    @Test
+    public void fingerprints() throws Exception {
+        assertNull(MockClassCache.fingerprintOf(Person.class)); // disabled
+
+        MockClassCache.setDirectory(folder.newFolder());
+        assertNotNull(MockClassCache.fingerprintOf(Person.class));
+        assertEquals(MockClassCache.fingerprintOf(Person.class), MockClassCache.fingerprintOf(Person.class));
+        assertNotEquals(MockClassCache.fingerprintOf(Person.class), MockClassCache.fingerprintOf(CachedBean.class));
+    }
+
+    @Test
+    public void fingerprintCoversClassesLinkedByMocks() {
+        assertTrue(MockClassCache.generatorClasses().contains(MockMaker.class));
+        assertTrue(MockClassCache.generatorClasses().contains(InvocationCallbackAdapter.class));
+        assertTrue(MockClassCache.generatorClasses().contains(MockMaker.ObjectMethodsHandler.class));
+    }
+
+    @Test
+    public void corruptedClassIsIgnored() throws Exception {
+        final File dir = folder.newFolder();
+        MockClassCache.setDirectory(dir);
+
+        final String className = MockMaker.mockClassName(CachedBean.class, "0123456789abcdef");
+        Files.write(new byte[]{1, 2, 3}, new File(dir, className + ".class"));
+        assertNull(MockClassCache.load(className, MockMaker.class.getClassLoader()));
+
+        assertNull(MockClassCache.load(className + "_missing", MockMaker.class.getClassLoader()));
+    }
+}
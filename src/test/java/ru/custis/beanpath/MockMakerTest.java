@@ -28,6 +28,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class MockMakerTest {
@@ -43,6 +44,30 @@ public class MockMakerTest {
         MockMaker.createMock(Person.class, errorThrowingHandler);
     }
 
+    @Test
+    public void mockClassIsSharedButHandlersAreNot() throws Exception {
+        final StringBuilder calls = new StringBuilder();
+        final Person mock1 = MockMaker.createMock(Person.class, new InvocationCallback() {
+            @Override public Object invoke(Object proxy, Method method, Object[] args) {
+                calls.append("1");
+                return null;
+            }
+        });
+        final Person mock2 = MockMaker.createMock(Person.class, new InvocationCallback() {
+            @Override public Object invoke(Object proxy, Method method, Object[] args) {
+                calls.append("2");
+                return null;
+            }
+        });
+
+        assertSame(mock1.getClass(), mock2.getClass());
+
+        mock1.getName();
+        mock2.getName();
+        mock1.getName();
+        assertEquals("121", calls.toString());
+    }
+
     @Test
     public void namingPolicy() throws Exception {
         Person mock = MockMaker.createMock(Person.class, errorThrowingHandler);
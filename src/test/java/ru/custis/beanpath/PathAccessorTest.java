@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import org.junit.Test;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Identified;
+import ru.custis.beanpath.beans.Order;
+import ru.custis.beanpath.beans.OrderDto;
+import ru.custis.beanpath.beans.Person;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class PathAccessorTest {
+    private final Order order = root(Order.class);
+
+    @Test
+    public void basicUsage() {
+        final PathAccessor<String> name = PathAccessor.of($(order.getCustomer().getName()));
+        assertEquals("John", name.get(new Order(1, new Customer("John", 5), 0, 0)));
+
+        // unreachable path reads as null
+        assertNull(name.get(new Order(1, null, 0, 0)));
+    }
+
+    @Test
+    public void accessorCaching() {
+        // Accessors are cached on path basis, so compilation happens once per path
+        assertSame(PathAccessor.of($(order.getCustomer().getName())), PathAccessor.of($(order.getCustomer().getName())));
+    }
+
+    @Test
+    public void primitiveViews() {
+        final Order bean = new Order(42, new Customer("John", 5), 99.5, 3);
+
+        final PathAccessor<Integer> rating = PathAccessor.of($(order.getCustomer().getRating()));
+        assertTrue(rating.isIntegral());
+        assertEquals(5, rating.getInt(bean));
+        assertEquals(5L, rating.getLong(bean)); // widened
+        assertEquals(5.0, rating.getDouble(bean), 0);
+        assertEquals(Integer.valueOf(5), rating.get(bean)); // boxed
+
+        final PathAccessor<Double> total = PathAccessor.of($(order.getTotal()));
+        assertTrue(total.isFloating());
+        assertEquals(99.5, total.getDouble(bean), 0);
+
+        final PathAccessor<Boolean> paid = PathAccessor.of($(order.isPaid()));
+        assertTrue(paid.isBoolean());
+        assertFalse(paid.getBoolean(bean));
+    }
+
+    @Test
+    public void nullsAndUnreachablePaths() {
+        final PathAccessor<Integer> rating = PathAccessor.of($(order.getCustomer().getRating()));
+        final Order orphan = new Order(1, null, 0, 0);
+        assertTrue(rating.isNull(orphan));
+        assertEquals(0, rating.getInt(orphan)); // zero for unreachable path
+
+        final OrderDto dto = root(OrderDto.class);
+        final PathAccessor<Double> total = PathAccessor.of($(dto.getTotal()));
+        assertTrue(total.isNull(new OrderDto()));
+        assertEquals(0.0, total.getDouble(new OrderDto()), 0); // null wrapper is never unboxed
+    }
+
+    @Test
+    public void singlePassNullFlag() {
+        final boolean[] isNull = {false};
+
+        final PathAccessor<Integer> rating = PathAccessor.of($(order.getCustomer().getRating()));
+        assertEquals(0, rating.getInt(new Order(1, null, 0, 0), isNull));
+        assertTrue(isNull[0]);
+        assertEquals(5L, rating.getLong(new Order(1, new Customer("John", 5), 0, 0), isNull));
+        assertFalse(isNull[0]);
+
+        final OrderDto dto = root(OrderDto.class);
+        final PathAccessor<Double> total = PathAccessor.of($(dto.getTotal()));
+        assertEquals(0.0, total.getDouble(new OrderDto(), isNull), 0);
+        assertTrue(isNull[0]);
+
+        final PathAccessor<Boolean> paid = PathAccessor.of($(order.isPaid()));
+        assertFalse(paid.getBoolean(new Order(), isNull));
+        assertFalse(isNull[0]);
+    }
+
+    @Test
+    public void genericProperty() {
+        final PathAccessor<Long> id = PathAccessor.of($(root(Person.class).getId()));
+        assertTrue(id.isIntegral()); // resolved type Long, while getter is declared to return Object
+        assertTrue(id.isNull(new Person()));
+
+        final Identified<String> identified = root(new TypeLiteral<Identified<String>>() {});
+        assertFalse(PathAccessor.of($(identified.getId())).isIntegral());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void illegal_primitiveViewOfNonPrimitivePath() {
+        PathAccessor.of($(order.getCustomer().getName())).getLong(new Order());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegal_noGetter() {
+        PathAccessor.of(BeanPath.root(Order.class).append("nonExistent", String.class));
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import org.junit.Test;
+import ru.custis.beanpath.PathAggregation.Group;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Order;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class PathAggregationTest {
+    private final Order order = root(Order.class);
+
+    private final PathAggregation<Order> aggregation = PathAggregation.of(Order.class)
+            .groupBy($(order.getCustomer().getName()))
+            .count()
+            .sum($(order.getTotal()))
+            .avg($(order.getQuantity()))
+            .min($(order.getQuantity()))
+            .max($(order.getTotal()))
+            .build();
+
+    private final Customer john = new Customer("John", 1);
+    private final Customer jane = new Customer("Jane", 2);
+
+    @Test
+    public void basicUsage() {
+        final List<Group> groups = aggregation.aggregate(Arrays.asList(
+                new Order(1, john, 10.0, 1),
+                new Order(2, jane, 20.0, 2),
+                new Order(3, john, 30.0, 5)
+        ));
+
+        assertEquals(2, groups.size());
+
+        // groups are listed in order of their first occurrence
+        final Group johns = groups.get(0);
+        assertEquals("John", johns.getKey(0));
+        assertEquals(2, johns.getLong(0)); // count
+        assertEquals(40.0, johns.getDouble(1), 0); // sum
+        assertEquals(3.0, johns.getDouble(2), 0); // avg
+        assertEquals(1, johns.getLong(3)); // min of integral path stays integral
+        assertEquals(30.0, johns.getDouble(4), 0); // max
+
+        final Group janes = groups.get(1);
+        assertEquals(Arrays.<Object>asList("Jane"), janes.getKey());
+        assertEquals(1, janes.getLong(0));
+    }
+
+    @Test
+    public void unreachablePathsAreSkipped() {
+        final PathAggregation<Order> ratings = PathAggregation.of(Order.class)
+                .count()
+                .count($(order.getCustomer().getRating()))
+                .avg($(order.getCustomer().getRating()))
+                .build();
+
+        final List<Group> groups = ratings.aggregate(Arrays.asList(
+                new Order(1, john, 0, 0),
+                new Order(2, null, 0, 0), // no customer
+                new Order(3, jane, 0, 0)
+        ));
+
+        // no group-by paths, so a single group
+        assertEquals(1, groups.size());
+        assertEquals(3, groups.get(0).getLong(0));
+        assertEquals(2, groups.get(0).getLong(1));
+        assertEquals(1.5, groups.get(0).getDouble(2), 0);
+    }
+
+    @Test
+    public void nullKey() {
+        final List<Group> groups = aggregation.aggregate(Arrays.asList(new Order(1, null, 10.0, 1)));
+        assertNull(groups.get(0).getKey(0));
+        assertEquals(10.0, groups.get(0).getDouble(1), 0);
+    }
+
+    @Test
+    public void emptyGroupMeasures() {
+        final PathAggregation<Order> ratings = PathAggregation.of(Order.class)
+                .min($(order.getCustomer().getRating()))
+                .sum($(order.getCustomer().getRating()))
+                .build();
+
+        final Group group = ratings.aggregate(Arrays.asList(new Order(1, null, 0, 0))).get(0);
+        assertEquals(0, group.getCount(0));
+        assertEquals(Double.NaN, group.getDouble(0), 0);
+        assertEquals(0.0, group.getDouble(1), 0);
+    }
+
+    @Test
+    public void mergingAccumulators() {
+        final PathAggregation<Order>.Accumulator first = aggregation.newAccumulator();
+        first.add(new Order(1, john, 10.0, 7));
+
+        final PathAggregation<Order>.Accumulator second = aggregation.newAccumulator();
+        second.add(new Order(2, jane, 20.0, 2));
+        second.add(new Order(3, john, 30.0, 5));
+
+        first.merge(second);
+
+        final Group johns = first.getGroups().get(0);
+        assertEquals(2, johns.getLong(0));
+        assertEquals(40.0, johns.getDouble(1), 0);
+        assertEquals(6.0, johns.getDouble(2), 0);
+        assertEquals(5, johns.getLong(3));
+        assertEquals(30.0, johns.getDouble(4), 0);
+        assertEquals(2, first.getGroups().size());
+    }
+
+    @Test
+    public void parallelAggregation() throws Exception {
+        final List<Order> orders = new ArrayList<Order>();
+        for (int i = 0; i < 1000; i++) {
+            orders.add(new Order(i, (i % 2 == 0) ? john : jane, i, i % 10));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Group> parallel = aggregation.aggregate(orders, executor, 4);
+            final List<Group> sequential = aggregation.aggregate(orders);
+
+            assertEquals(sequential.toString(), parallel.toString());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static class Priced {
+        public Number getPrice() { return null; }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegal_nonNumericPath() {
+        final Priced priced = root(Priced.class);
+        PathAggregation.of(Priced.class).sum($(priced.getPrice())); // a Number, but of no known primitive type
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import org.junit.Test;
+import ru.custis.beanpath.beans.Address;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Order;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.each;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class PathAlgebraTest {
+
+    public static class VipCustomer extends Customer {}
+
+    @Test
+    public void concat() {
+        final Address address = root(Address.class);
+        final BeanPath<String> city = $(address.getCity());
+
+        final Customer customer = root(Customer.class);
+        final BeanPath<String> customerCity = BeanPath.concat($(customer.getAddress()), city);
+        assertEquals($(customer.getAddress().getCity()), customerCity);
+
+        final Order order = root(Order.class);
+        final BeanPath<String> orderCity = BeanPath.concat($(order.getCustomer().getAddress()), city);
+        assertEquals("customer.address.city", orderCity.toDotDelimitedString());
+        assertEquals(Order.class, orderCity.getRoot().getType());
+
+        // canonical and cached
+        assertSame(customerCity, BeanPath.concat($(customer.getAddress()), $(address.getCity())));
+        assertSame(customerCity.getParent(), $(customer.getAddress()).intern());
+
+        // accessors are kept
+        assertEquals(city.getAccessor(), customerCity.getAccessor());
+
+        try {
+            BeanPath.concat($(customer.getName()), city);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void concat_GenericTypesAndEachAreKept() {
+        final Order order = root(Order.class);
+        final TypeLiteral<List<Order>> listOfOrders = new TypeLiteral<List<Order>>() {};
+        final BeanPath<List<Order>> orders = BeanPath.concat($(order.getCustomer()), BeanPath.root(Customer.class))
+                .append("orders", listOfOrders);
+
+        final Customer customer = root(Customer.class);
+        final BeanPath<Double> totals = BeanPath.concat($(order.getCustomer()), $(each(customer.getOrders()).getTotal()));
+
+        assertEquals("customer.orders.*.total", totals.toDotDelimitedString());
+        assertEquals(listOfOrders.toTypeToken().getType(), totals.getParent().getParent().getGenericType());
+        assertEquals(orders, totals.getParent().getParent());
+    }
+
+    @Test
+    public void relativize() {
+        final Order order = root(Order.class);
+        final BeanPath<String> city = $(order.getCustomer().getAddress().getCity());
+
+        final BeanPath<String> relative = city.relativize($(order.getCustomer()));
+        final Customer customer = root(Customer.class);
+        assertEquals($(customer.getAddress().getCity()), relative);
+        assertSame(relative, city.relativize($(order.getCustomer())));
+
+        assertEquals(city, city.relativize(city.getRoot()));
+        assertEquals(BeanPath.root(String.class), city.relativize(city));
+
+        try {
+            city.relativize($(customer.getAddress()));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void rebase() {
+        final Customer customer = root(Customer.class);
+        final BeanPath<String> city = $(customer.getAddress().getCity());
+
+        final BeanPath<String> rebased = city.rebase(VipCustomer.class);
+        assertEquals(VipCustomer.class, rebased.getRoot().getType());
+        assertEquals("address.city", rebased.toDotDelimitedString());
+        assertSame(rebased, city.rebase(VipCustomer.class));
+
+        try {
+            city.rebase(Order.class);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void subPath() {
+        final Order order = root(Order.class);
+        final BeanPath<String> city = $(order.getCustomer().getAddress().getCity());
+        assertEquals(3, city.getDepth());
+
+        final Customer customer = root(Customer.class);
+        assertEquals($(customer.getAddress()), city.subPath(1, 2));
+        assertEquals(city, city.subPath(0, 3));
+        assertEquals(BeanPath.root(Address.class), city.subPath(2, 2));
+
+        try {
+            city.subPath(2, 4);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    @Test
+    public void intern() {
+        final Customer customer = root(Customer.class);
+        final BeanPath<String> city = $(customer.getAddress().getCity()).intern();
+
+        assertSame(city, $(customer.getAddress().getCity()).intern());
+        assertSame(city.getParent(), $(customer.getAddress()).intern());
+        assertSame(city.getRoot(), BeanPath.root(Customer.class).intern());
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Gender;
+import ru.custis.beanpath.beans.Order;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class PathColumnStoreTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Order order = root(Order.class);
+
+    private PathColumnStore.Builder<Order> orders() {
+        return PathColumnStore.of(Order.class)
+                .columns($(order.getId()), $(order.getQuantity()), $(order.getTotal()), $(order.isPaid()),
+                         $(order.getCustomer().getName()), $(order.getCustomer().getRating()));
+    }
+
+    @Test
+    public void loadAndRead() {
+        final PathColumnStore<Order> store = orders().build();
+
+        final Order paid = new Order(2, new Customer("Ann", 5), 2.5, 4);
+        paid.setPaid(true);
+        store.addAll(Arrays.asList(new Order(1, null, 10.5, 1), paid));
+
+        assertEquals(2, store.size());
+        assertEquals(1, store.getLong(0, $(order.getId())));
+        assertEquals(10.5, store.getDouble(0, $(order.getTotal())), 0);
+        assertTrue(store.isNull(0, $(order.getCustomer().getName()))); // unreachable
+        assertNull(store.get(0, $(order.getCustomer().getName())));
+        assertEquals(0, store.getInt(0, $(order.getCustomer().getRating())));
+
+        assertEquals(Long.valueOf(2), store.get(1, $(order.getId())));
+        assertEquals(4, store.getInt(1, $(order.getQuantity())));
+        assertEquals(4, store.getLong(1, $(order.getQuantity())));
+        assertEquals(4.0, store.getDouble(1, $(order.getQuantity())), 0);
+        assertTrue(store.getBoolean(1, $(order.isPaid())));
+        assertEquals("Ann", store.get(1, $(order.getCustomer().getName())));
+        assertEquals(Integer.valueOf(5), store.get(1, $(order.getCustomer().getRating())));
+
+        assertEquals(Arrays.<BeanPath<?>>asList($(order.getId()), $(order.getQuantity()), $(order.getTotal()),
+                                                $(order.isPaid()), $(order.getCustomer().getName()),
+                                                $(order.getCustomer().getRating())),
+                     store.getPaths());
+    }
+
+    @Test
+    public void grows() {
+        final PathColumnStore<Order> store = orders().capacity(2).build();
+
+        final List<Order> beans = new ArrayList<Order>();
+        for (int i = 0; i < 10000; i++) {
+            beans.add(new Order(i, new Customer("customer #" + i, i % 10), i * 0.5, i));
+        }
+        store.addAll(beans);
+
+        final PathColumnStore.Column ids = store.getColumn($(order.getId()));
+        final PathColumnStore.Column names = store.getColumn($(order.getCustomer().getName()));
+        assertEquals(10000, store.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, ids.getLong(i));
+            assertEquals("customer #" + i, names.getString(i));
+        }
+    }
+
+    @Test
+    public void write() {
+        final PathColumnStore<Order> store = orders().build();
+        final int row = store.addRow();
+        assertTrue(store.isNull(row, $(order.getId())));
+
+        store.setLong(row, $(order.getId()), Long.MAX_VALUE);
+        store.setLong(row, $(order.getQuantity()), 7);
+        store.setDouble(row, $(order.getTotal()), 1.25);
+        store.setBoolean(row, $(order.isPaid()), true);
+        store.set(row, $(order.getCustomer().getName()), "John");
+        store.set(row, $(order.getCustomer().getName()), "John Smith");
+        store.set(row, $(order.getCustomer().getRating()), 3);
+
+        assertEquals(Long.MAX_VALUE, store.getLong(row, $(order.getId())));
+        assertEquals(7, store.getInt(row, $(order.getQuantity())));
+        assertEquals(1.25, store.getDouble(row, $(order.getTotal())), 0);
+        assertTrue(store.getBoolean(row, $(order.isPaid())));
+        assertEquals("John Smith", store.get(row, $(order.getCustomer().getName())));
+        assertEquals(3, store.getInt(row, $(order.getCustomer().getRating())));
+
+        store.set(row, $(order.getCustomer().getRating()), null);
+        assertTrue(store.isNull(row, $(order.getCustomer().getRating())));
+
+        try {
+            store.setLong(row, $(order.getQuantity()), Long.MAX_VALUE); // does not fit int
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            store.setInt(row, $(order.getTotal()), 1);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            store.getLong(row + 1, $(order.getId()));
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    @Test
+    public void clear() {
+        final PathColumnStore<Order> store = orders().build();
+        store.add(new Order(1, new Customer("Ann", 1), 1, 1));
+        store.clear();
+        assertEquals(0, store.size());
+
+        store.add(new Order(2, new Customer("John", 2), 2, 2));
+        assertEquals(1, store.size());
+        assertEquals("John", store.get(0, $(order.getCustomer().getName())));
+    }
+
+    @Test
+    public void mappedFiles() throws Exception {
+        final PathColumnStore<Order> store = orders().capacity(4).build(folder.getRoot());
+        try {
+            for (int i = 0; i < 1000; i++) {
+                store.add(new Order(i, (i % 2 == 0) ? new Customer("Ann", i) : null, i, i));
+            }
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, store.getLong(i, $(order.getId())));
+                assertEquals((i % 2 == 0) ? "Ann" : null, store.get(i, $(order.getCustomer().getName())));
+            }
+        } finally {
+            store.close();
+        }
+        assertTrue(folder.getRoot().list().length > 0);
+    }
+
+    public static class Values {
+        private byte small;
+        private Short flags;
+        private char code;
+        private float ratio;
+        private Boolean active;
+        private Gender gender;
+
+        public byte getSmall() { return small; }
+
+        public Short getFlags() { return flags; }
+
+        public char getCode() { return code; }
+
+        public float getRatio() { return ratio; }
+
+        public Boolean getActive() { return active; }
+
+        public Gender getGender() { return gender; }
+    }
+
+    @Test
+    public void types() {
+        final Values values = root(Values.class);
+        final PathColumnStore<Values> store = PathColumnStore.of(Values.class)
+                .columns($(values.getSmall()), $(values.getFlags()), $(values.getCode()),
+                         $(values.getRatio()), $(values.getActive()), $(values.getGender()))
+                .build();
+
+        final Values bean = new Values();
+        bean.small = -3;
+        bean.flags = 300;
+        bean.code = 'x';
+        bean.ratio = 0.5f;
+        bean.active = true;
+        bean.gender = Gender.FEMALE;
+        store.add(bean);
+        store.add(new Values());
+
+        assertEquals(Byte.valueOf((byte) -3), store.get(0, $(values.getSmall())));
+        assertEquals(-3, store.getInt(0, $(values.getSmall())));
+        assertEquals(Short.valueOf((short) 300), store.get(0, $(values.getFlags())));
+        assertEquals(Character.valueOf('x'), store.get(0, $(values.getCode())));
+        assertEquals(0.5, store.getDouble(0, $(values.getRatio())), 0);
+        assertEquals(Boolean.TRUE, store.get(0, $(values.getActive())));
+        assertEquals(Gender.FEMALE, store.get(0, $(values.getGender())));
+
+        assertTrue(store.isNull(1, $(values.getFlags())));
+        assertFalse(store.isNull(1, $(values.getSmall())));
+        assertFalse(store.getBoolean(1, $(values.getActive())));
+        assertNull(store.get(1, $(values.getGender())));
+
+        try {
+            store.setInt(0, $(values.getSmall()), 1000);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void invalidColumns() {
+        try {
+            PathColumnStore.of(Order.class).columns($(order.getLines()));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            PathColumnStore.of(Order.class).columns($(order.getCustomer()));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        final PathColumnStore<Order> store = PathColumnStore.of(Order.class).columns($(order.getId())).build();
+        try {
+            store.getColumn($(order.getTotal()));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Order;
+import ru.custis.beanpath.beans.PrimitiveBean;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class PathColumnWriterTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Order order = root(Order.class);
+
+    @Test
+    public void roundTrip() throws Exception {
+        final PathColumnWriter<Order> writer = PathColumnWriter.of(Order.class)
+                .columns($(order.getId()), $(order.getQuantity()), $(order.getTotal()), $(order.isPaid()),
+                         $(order.getCustomer().getName()))
+                .build();
+
+        final Order paid = new Order(3, new Customer("Ann", 1), 2.5, 4);
+        paid.setPaid(true);
+        final List<Order> orders = Arrays.asList(
+                new Order(1, new Customer("John", 1), 10.5, 1),
+                new Order(2, null, -1, 2),
+                paid,
+                new Order(Long.MAX_VALUE, new Customer("John", 2), 0, Integer.MIN_VALUE));
+
+        final File file = folder.newFile();
+        writer.write(orders, file);
+
+        final PathColumnReader reader = PathColumnReader.open(file);
+        try {
+            assertEquals(4, reader.getRowCount());
+            assertEquals(Arrays.asList("id", "quantity", "total", "paid", "customer.name"), reader.getColumnNames());
+
+            final PathColumnReader.Column ids = reader.getColumn($(order.getId()));
+            assertEquals(1, ids.getLong(0));
+            assertEquals(Long.MAX_VALUE, ids.getLong(3));
+
+            final PathColumnReader.Column quantities = reader.getColumn("quantity");
+            assertEquals(4, quantities.getInt(2));
+            assertEquals(Integer.MIN_VALUE, quantities.getInt(3));
+            assertEquals(Integer.MIN_VALUE, quantities.getLong(3));
+
+            final PathColumnReader.Column totals = reader.getColumn("total");
+            assertEquals(-1, totals.getDouble(1), 0);
+            assertEquals(2.5, totals.get(2));
+
+            final PathColumnReader.Column paidFlags = reader.getColumn("paid");
+            assertFalse(paidFlags.getBoolean(0));
+            assertTrue(paidFlags.getBoolean(2));
+
+            final PathColumnReader.Column names = reader.getColumn("customer.name");
+            assertEquals("John", names.getString(0));
+            assertTrue(names.isNull(1));
+            assertNull(names.getString(1));
+            assertEquals("Ann", names.getString(2));
+            assertEquals("John", names.get(3));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void primitiveTypes() throws Exception {
+        final PrimitiveBean bean = root(PrimitiveBean.class);
+        final PathColumnWriter<PrimitiveBean> writer = PathColumnWriter.of(PrimitiveBean.class)
+                .columns($(bean.getByte()), $(bean.getChar()), $(bean.getFloat()))
+                .build();
+
+        final File file = folder.newFile();
+        writer.write(Collections.singletonList(new PrimitiveBean()), file);
+
+        final PathColumnReader reader = PathColumnReader.open(file);
+        try {
+            assertEquals(0, reader.getColumn("byte").getInt(0));
+            assertEquals("\u0000", reader.getColumn("char").getString(0));
+            assertEquals(0, reader.getColumn("float").getDouble(0), 0);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void manyRowsAndSharedDictionary() throws Exception {
+        final PathColumnWriter<Order> writer = PathColumnWriter.of(Order.class)
+                .columns($(order.getCustomer().getName()), $(order.getId()))
+                .build();
+
+        final List<Order> orders = new ArrayList<Order>();
+        for (int i = 0; i < 10000; i++) {
+            orders.add(new Order(i, (i % 7 == 0) ? null : new Customer("customer" + (i % 10), 0), 0, 0));
+        }
+        final File file = folder.newFile();
+        writer.write(orders, file);
+        assertTrue("strings are dictionary encoded", file.length() < 10000 * (4 + 8) + 2 * 10000 / 8 + 1024);
+
+        final PathColumnReader reader = PathColumnReader.open(file);
+        try {
+            final PathColumnReader.Column names = reader.getColumn("customer.name");
+            final PathColumnReader.Column ids = reader.getColumn("id");
+            for (int row = 0; row < orders.size(); row++) {
+                assertEquals(row, ids.getLong(row));
+                assertEquals((row % 7 == 0) ? null : "customer" + (row % 10), names.getString(row));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void typeMismatch() throws Exception {
+        final File file = folder.newFile();
+        PathColumnWriter.of(Order.class).columns($(order.getTotal())).build()
+                        .write(Collections.singletonList(new Order()), file);
+
+        final PathColumnReader reader = PathColumnReader.open(file);
+        try {
+            reader.getColumn("total").getString(0);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notAColumnFile() throws Exception {
+        final File file = folder.newFile();
+        Files.write(new byte[64], file);
+        PathColumnReader.open(file);
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import com.google.common.base.Equivalence;
+import org.junit.Test;
+import ru.custis.beanpath.beans.Address;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Order;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.each;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class PathEquivalenceTest {
+    private final Order order = root(Order.class);
+
+    private final PathEquivalence<Order> byKey = PathEquivalence.of(Order.class,
+            $(order.getCustomer().getName()),
+            $(order.getCustomer().getRating()),
+            $(order.getCustomer().getAddress().getCity()),
+            $(order.getTotal()));
+
+    private static Order order(String name, int rating, String city, double total) {
+        final Customer customer = new Customer(name, rating);
+        if (city != null) {
+            customer.setAddress(new Address());
+            customer.getAddress().setCity(city);
+        }
+        return new Order(0, customer, total, 0);
+    }
+
+    @Test
+    public void equivalence() {
+        final Order order = order("John Smith", 5, "Moscow", 10.5);
+
+        assertTrue(byKey.equivalent(order, order("John Smith", 5, "Moscow", 10.5)));
+        assertEquals(byKey.hash(order), byKey.hash(order("John Smith", 5, "Moscow", 10.5)));
+
+        assertFalse(byKey.equivalent(order, order("Jane Doe", 5, "Moscow", 10.5)));
+        assertFalse(byKey.equivalent(order, order("John Smith", 4, "Moscow", 10.5)));
+        assertFalse(byKey.equivalent(order, order("John Smith", 5, "London", 10.5)));
+        assertFalse(byKey.equivalent(order, order("John Smith", 5, "Moscow", 10.25)));
+        assertNotEquals(byKey.hash(order), byKey.hash(order("Jane Doe", 5, "Moscow", 10.5)));
+
+        // other properties do not matter
+        final Order other = order("John Smith", 5, "Moscow", 10.5);
+        other.setId(42);
+        other.setPaid(true);
+        assertTrue(byKey.equivalent(order, other));
+    }
+
+    @Test
+    public void nullSafety() {
+        // unreachable paths are equal to null values
+        final Order noAddress = order("John Smith", 5, null, 1);
+        final Order noCity = order("John Smith", 5, null, 1);
+        noCity.getCustomer().setAddress(new Address());
+        assertTrue(byKey.equivalent(noAddress, noCity));
+        assertEquals(byKey.hash(noAddress), byKey.hash(noCity));
+
+        // but unreachable primitives are equal to each other only
+        final Order noCustomer = new Order(0, null, 1, 0);
+        final Order emptyCustomer = new Order(0, new Customer(null, 0), 1, 0);
+        assertTrue(byKey.equivalent(noCustomer, new Order(0, null, 1, 0)));
+        assertEquals(byKey.hash(noCustomer), byKey.hash(new Order(0, null, 1, 0)));
+        assertFalse(byKey.equivalent(noCustomer, emptyCustomer));
+        assertFalse(byKey.equivalent(emptyCustomer, noCustomer));
+
+        final PathEquivalence<Order> byName = PathEquivalence.of(Order.class, $(order.getCustomer().getName()));
+        assertTrue(byName.equivalent(noCustomer, emptyCustomer));
+        assertEquals(byName.hash(noCustomer), byName.hash(emptyCustomer));
+    }
+
+    @Test
+    public void floatingPointIsComparedLikeWrappers() {
+        final PathEquivalence<Order> byTotal = PathEquivalence.of(Order.class, $(order.getTotal()));
+        assertTrue(byTotal.equivalent(new Order(0, null, Double.NaN, 0), new Order(0, null, Double.NaN, 0)));
+        assertFalse(byTotal.equivalent(new Order(0, null, 0.0, 0), new Order(0, null, -0.0, 0)));
+        assertEquals(Double.valueOf(10.5).hashCode(), byTotal.hash(new Order(0, null, 10.5, 0)) - 31);
+    }
+
+    @Test
+    public void deduplication() {
+        final Set<Equivalence.Wrapper<Order>> unique = new HashSet<Equivalence.Wrapper<Order>>();
+        assertTrue(unique.add(byKey.wrap(order("John Smith", 5, "Moscow", 10.5))));
+        assertTrue(unique.add(byKey.wrap(order("Jane Doe", 5, "Moscow", 10.5))));
+        assertFalse(unique.add(byKey.wrap(order("John Smith", 5, "Moscow", 10.5))));
+        assertEquals(2, unique.size());
+    }
+
+    @Test
+    public void caching() {
+        assertSame(byKey, PathEquivalence.of(Order.class,
+                                             $(order.getCustomer().getName()),
+                                             $(order.getCustomer().getRating()),
+                                             $(order.getCustomer().getAddress().getCity()),
+                                             $(order.getTotal())));
+        assertEquals(4, byKey.getPaths().size());
+    }
+
+    @Test
+    public void illegalPaths() {
+        final Customer customer = root(Customer.class);
+        try {
+            PathEquivalence.of(Order.class, $(customer.getName()));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            PathEquivalence.of(Customer.class, $(each(customer.getOrders()).getTotal()));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
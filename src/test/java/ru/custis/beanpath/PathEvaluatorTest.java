@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Order;
+import ru.custis.beanpath.beans.OrderLine;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.$$;
+import static ru.custis.beanpath.BeanPathMagic.each;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class PathEvaluatorTest {
+    private final Customer customer = root(Customer.class);
+
+    @Test
+    public void capturingEach() {
+        // each() marks traversal of collection elements in a call chain
+        assertEquals(BeanPath.root(Customer.class).append("orders", List.class).appendEach(Order.class).append("total", Double.class),
+                     $(each(customer.getOrders()).getTotal()));
+
+        assertEquals("orders.*.lines.*.product", $$(each(each(customer.getOrders()).getLines()).getProduct()));
+        assertTrue($(each(customer.getOrders())).isEach());
+    }
+
+    @Test(expected = BeanPathMagicException.class)
+    public void illegal_eachOfNotCapturedCollection() {
+        each(Collections.<Order>emptyList());
+    }
+
+    @Test
+    public void basicUsage() {
+        final Customer john = new Customer("John", 1);
+        john.getOrders().add(new Order(1, john, 10.0, 1));
+        john.getOrders().add(new Order(2, john, 20.0, 1));
+
+        final PathEvaluator<Double> totals = PathEvaluator.of($(each(customer.getOrders()).getTotal()));
+        assertEquals(Arrays.asList(10.0, 20.0), Lists.newArrayList(totals.values(john)));
+    }
+
+    @Test
+    public void nestedCollections() {
+        final Order first = new Order();
+        first.getLines().add(new OrderLine("Tea", 1.0));
+        first.getLines().add(new OrderLine("Milk", 2.0));
+        final Order second = new Order();
+        second.getLines().add(new OrderLine("Bread", 3.0));
+
+        final Customer john = new Customer("John", 1);
+        john.getOrders().add(first);
+        john.getOrders().add(new Order()); // no lines
+        john.getOrders().add(second);
+
+        final PathEvaluator<String> products = PathEvaluator.of($(each(each(customer.getOrders()).getLines()).getProduct()));
+        assertEquals(Arrays.asList("Tea", "Milk", "Bread"), Lists.newArrayList(products.values(john)));
+
+        // path may end with each()
+        final PathEvaluator<OrderLine> lines = PathEvaluator.of($(each(each(customer.getOrders()).getLines())));
+        assertSame(second.getLines().get(0), Lists.newArrayList(lines.values(john)).get(2));
+    }
+
+    @Test
+    public void lazyEvaluation() {
+        // Values are evaluated while iterating
+
+        final Customer john = new Customer("John", 1);
+        john.getOrders().add(new Order(1, john, 10.0, 1));
+
+        final Iterator<Double> totals = PathEvaluator.of($(each(customer.getOrders()).getTotal())).values(john).iterator();
+        john.getOrders().get(0).setTotal(11.0);
+        assertEquals(11.0, totals.next(), 0);
+        assertFalse(totals.hasNext());
+    }
+
+    @Test
+    public void unreachableBranchesAreSkipped() {
+        final Customer john = new Customer("John", 1);
+        john.getOrders().add(null);
+        john.getOrders().add(new Order(1, john, 10.0, 1));
+
+        final Customer nobody = new Customer("Nobody", 0);
+        nobody.setOrders(null);
+
+        final PathEvaluator<String> names = PathEvaluator.of($(each(customer.getOrders()).getCustomer().getName()));
+        assertEquals(Arrays.asList("John"), Lists.newArrayList(names.values(Arrays.asList(john, nobody))));
+    }
+
+    @Test
+    public void pathWithoutEach() {
+        final PathEvaluator<String> names = PathEvaluator.of($(customer.getName()));
+        assertEquals(Arrays.asList("John", null),
+                     Lists.newArrayList(names.values(Arrays.asList(new Customer("John", 1), new Customer()))));
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import org.junit.Test;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Order;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class PathIndexTest {
+    private final Order order = root(Order.class);
+
+    private final Customer john = new Customer("John", 1);
+    private final Customer jane = new Customer("Jane", 2);
+
+    private final Order first = new Order(1, john, 10.0, 1);
+    private final Order second = new Order(2, jane, 20.0, 2);
+    private final Order third = new Order(3, john, 30.0, 3);
+    private final Order orphan = new Order(4, null, 40.0, 4);
+
+    @Test
+    public void hashIndex() {
+        final PathIndex<Order> index = PathIndex.hash(Order.class, $(order.getCustomer().getName()));
+        index.addAll(Arrays.asList(first, second, third, orphan));
+
+        assertEquals(4, index.size());
+        assertEquals(Arrays.asList(first, third), index.find("John"));
+        assertEquals(Collections.singletonList(second), index.find("Jane"));
+        assertEquals(Collections.<Order>emptyList(), index.find("Nobody"));
+
+        // unreachable paths are indexed as null
+        assertEquals(Collections.singletonList(orphan), index.find((Object) null));
+    }
+
+    @Test
+    public void compositeIndex() {
+        final PathIndex<Order> index = PathIndex.hash(Order.class, $(order.getCustomer().getName()), $(order.getQuantity()));
+        index.addAll(Arrays.asList(first, second, third));
+
+        assertEquals(Collections.singletonList(third), index.find("John", 3));
+        assertTrue(index.find("John", 2).isEmpty());
+    }
+
+    @Test
+    public void incrementalModifications() {
+        final PathIndex<Order> index = PathIndex.hash(Order.class, $(order.getCustomer().getName()));
+        index.add(first);
+        index.add(first); // already indexed
+        index.add(third);
+        assertEquals(2, index.size());
+
+        assertTrue(index.remove(first));
+        assertFalse(index.remove(first));
+        assertEquals(Collections.singletonList(third), index.find("John"));
+
+        // index must be told about changes of indexed values
+        third.setCustomer(jane);
+        index.update(third);
+        assertTrue(index.find("John").isEmpty());
+        assertEquals(Collections.singletonList(third), index.find("Jane"));
+    }
+
+    @Test
+    public void sortedIndex() {
+        final PathIndex<Order> index = PathIndex.sorted(Order.class, $(order.getTotal()));
+        index.addAll(Arrays.asList(third, orphan, first, second));
+
+        assertEquals(Arrays.asList(second, third), index.range(20.0, true, 30.0, true));
+        assertEquals(Arrays.asList(third), index.range(20.0, false, 40.0, false));
+        assertEquals(Arrays.asList(first, second), index.range(null, false, 30.0, false)); // unbounded
+        assertEquals(Arrays.asList(third, orphan), index.range(30.0, true, null, false));
+        assertEquals(Collections.singletonList(first), index.find(10.0));
+    }
+
+    @Test
+    public void sortedCompositeIndex() {
+        final PathIndex<Order> index = PathIndex.sorted(Order.class, $(order.getCustomer().getName()), $(order.getTotal()));
+        index.addAll(Arrays.asList(first, second, third, orphan));
+
+        // null sorts first
+        assertEquals(Arrays.asList(orphan, second, first),
+                     index.range(null, false, Arrays.<Object>asList("John", 30.0), false));
+    }
+
+    @Test
+    public void emptyRanges() {
+        final PathIndex<Order> index = PathIndex.sorted(Order.class, $(order.getTotal()));
+        index.addAll(Arrays.asList(first, second, third, orphan));
+
+        assertEquals(Collections.<Order>emptyList(), index.range(30.0, true, 20.0, true));
+        assertEquals(Collections.<Order>emptyList(), index.range(20.0, true, 20.0, false));
+        assertEquals(Collections.singletonList(second), index.range(20.0, true, 20.0, true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegal_boundOfOtherType() {
+        PathIndex.sorted(Order.class, $(order.getTotal())).range(1, true, 2, true);
+    }
+
+    public static class Versioned {
+        public Comparable<?> getVersion() { return null; } // e.g. Integer or Long
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegal_sortingAbstractType() {
+        PathIndex.sorted(Versioned.class, BeanPathBuilder.of(Versioned.class).get("version").toPath());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void illegal_rangeOfHashIndex() {
+        PathIndex.hash(Order.class, $(order.getTotal())).range(1.0, true, 2.0, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegal_sortingNonComparable() {
+        PathIndex.sorted(Order.class, $(order.getCustomer()));
+    }
+
+    @Test
+    public void lookupsDuringModifications() throws Exception {
+        // Lookups are lock-free and never see a bucket being modified
+
+        final PathIndex<Order> index = PathIndex.hash(Order.class, $(order.getCustomer().getName()));
+        index.add(first);
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<AssertionError> failure = new AtomicReference<AssertionError>();
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                while (done.getCount() > 0) {
+                    final List<Order> johns = index.find("John");
+                    if (johns.isEmpty() || johns.get(0) != first) {
+                        failure.set(new AssertionError("Untouched bean is not found"));
+                    }
+                }
+            }
+        };
+        reader.start();
+
+        for (int i = 0; i < 10000; i++) {
+            final Order order = new Order(i, john, i, i);
+            index.add(order);
+            index.remove(order);
+        }
+        done.countDown();
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(1, index.size());
+    }
+}
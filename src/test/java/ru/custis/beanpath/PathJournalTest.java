@@ -0,0 +1,346 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import com.google.common.base.Functions;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Gender;
+import ru.custis.beanpath.beans.Order;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.each;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class PathJournalTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Order order = root(Order.class);
+
+    @Test
+    public void appendAndRead() throws Exception {
+        final File file = folder.newFile();
+        final PathJournal journal = PathJournal.open(file);
+        journal.append(1, $(order.getTotal()), 99.5);
+        journal.append(2, $(order.getCustomer().getName()), "John Smith");
+        journal.append(1, $(order.getCustomer().getName()), null);
+        journal.close();
+
+        final PathJournal.Reader reader = PathJournal.read(file);
+        try {
+            assertTrue(reader.next());
+            assertEquals(1, reader.getEntityId());
+            assertEquals($(order.getTotal()), reader.getPath());
+            assertEquals(99.5, reader.getValue());
+
+            assertTrue(reader.next());
+            assertEquals(2, reader.getEntityId());
+            assertEquals($(order.getCustomer().getName()), reader.getPath());
+            assertEquals("John Smith", reader.getValue());
+
+            assertTrue(reader.next());
+            assertEquals(1, reader.getEntityId());
+            assertSame(reader.getPath(), reader.getPath());
+            assertNull(reader.getValue());
+
+            assertFalse(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void pathsAreWrittenOnce() throws Exception {
+        final File file = folder.newFile();
+        final PathJournal journal = PathJournal.open(file);
+        journal.append(1, $(order.getCustomer().getAddress().getCity()), "Moscow");
+        final long first = journal.size();
+        journal.append(2, $(order.getCustomer().getAddress().getCity()), "Moscow");
+        final long delta = journal.size() - first;
+        journal.close();
+
+        // kind, path id, entity id, value type, length and bytes of the string
+        assertEquals(1 + 4 + 8 + 1 + 4 + 6, delta);
+        assertEquals(file.length(), first + delta);
+    }
+
+    @Test
+    public void replay() throws Exception {
+        final File file = folder.newFile();
+        final PathJournal journal = PathJournal.open(file);
+        journal.append(1, $(order.getCustomer().getAddress().getCity()), "Moscow");
+        journal.append(1, $(order.getQuantity()), 3);
+        journal.append(2, $(order.getCustomer().getName()), null);
+        journal.append(2, $(order.getTotal()), null);
+        journal.append(3, $(order.getCustomer().getAddress().getCity()), null);
+        journal.append(4, $(order.getId()), 4L);
+        journal.close();
+
+        final Order first = new Order();
+        final Order second = new Order(2, new Customer("Ann", 1), 1.5, 1);
+        final Order third = new Order();
+        final Map<Long, Order> orders = new HashMap<Long, Order>();
+        orders.put(1L, first);
+        orders.put(2L, second);
+        orders.put(3L, third);
+
+        final PathJournal.Reader reader = PathJournal.read(file);
+        try {
+            assertEquals(5, reader.replay(Functions.forMap(orders, null)));
+        } finally {
+            reader.close();
+        }
+
+        assertEquals("Moscow", first.getCustomer().getAddress().getCity()); // intermediates are created
+        assertEquals(3, first.getQuantity());
+        assertNull(second.getCustomer().getName());
+        assertEquals(1.5, second.getTotal(), 0); // null is not unboxed
+        assertNull(third.getCustomer()); // nor creates intermediates
+    }
+
+    @Test
+    public void reopen() throws Exception {
+        final File file = folder.newFile();
+        PathJournal journal = PathJournal.open(file);
+        journal.append(1, $(order.getCustomer().getName()), "John");
+        journal.close();
+
+        journal = PathJournal.open(file);
+        journal.append(2, $(order.getQuantity()), 2);
+        journal.append(3, $(order.getCustomer().getName()), "Jane");
+        journal.close();
+
+        final PathJournal.Reader reader = PathJournal.read(file);
+        try {
+            final Order replayed = new Order();
+            assertEquals(3, reader.replay(Functions.constant(replayed)));
+            assertEquals("Jane", replayed.getCustomer().getName());
+            assertEquals(2, replayed.getQuantity());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void growsByMappingWindows() throws Exception {
+        final File file = folder.newFile();
+        final PathJournal journal = PathJournal.open(file, 64);
+        for (int i = 0; i < 1000; i++) {
+            journal.append(i, $(order.getCustomer().getName()), "customer #" + i);
+        }
+        journal.close();
+
+        final PathJournal.Reader reader = PathJournal.read(file);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(reader.next());
+                assertEquals(i, reader.getEntityId());
+                assertEquals("customer #" + i, reader.getValue());
+            }
+            assertFalse(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void forcesEveryWindow() throws Exception {
+        final File file = folder.newFile();
+        final PathJournal journal = PathJournal.open(file, 64);
+        try {
+            for (int i = 0; i < 100; i++) {
+                journal.append(i, $(order.getQuantity()), i);
+            }
+            journal.force();
+
+            final PathJournal.Reader reader = PathJournal.read(file);
+            try {
+                for (int i = 0; i < 100; i++) {
+                    assertTrue(reader.next());
+                    assertEquals(i, reader.getValue());
+                }
+                assertFalse(reader.next());
+            } finally {
+                reader.close();
+            }
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void readsCompleteRecordsOfOpenJournal() throws Exception {
+        final File file = folder.newFile();
+        final PathJournal journal = PathJournal.open(file);
+        try {
+            journal.append(1, $(order.getQuantity()), 1);
+            journal.append(2, $(order.getQuantity()), 2);
+            journal.force();
+
+            final PathJournal.Reader reader = PathJournal.read(file); // the rest of the mapping is zeros
+            try {
+                assertTrue(reader.next());
+                assertTrue(reader.next());
+                assertFalse(reader.next());
+            } finally {
+                reader.close();
+            }
+        } finally {
+            journal.close();
+        }
+    }
+
+    public static class Values {
+        private Gender gender;
+        private Date date;
+        private BigDecimal amount;
+        private byte[] bytes;
+        private char code;
+        private Short flags;
+        private boolean active;
+
+        public Gender getGender() { return gender; }
+
+        public void setGender(Gender gender) { this.gender = gender; }
+
+        public Date getDate() { return date; }
+
+        public void setDate(Date date) { this.date = date; }
+
+        public BigDecimal getAmount() { return amount; }
+
+        public void setAmount(BigDecimal amount) { this.amount = amount; }
+
+        public byte[] getBytes() { return bytes; }
+
+        public void setBytes(byte[] bytes) { this.bytes = bytes; }
+
+        public char getCode() { return code; }
+
+        public void setCode(char code) { this.code = code; }
+
+        public Short getFlags() { return flags; }
+
+        public void setFlags(Short flags) { this.flags = flags; }
+
+        public boolean isActive() { return active; }
+
+        public void setActive(boolean active) { this.active = active; }
+    }
+
+    @Test
+    public void values() throws Exception {
+        final Values values = root(Values.class);
+        final File file = folder.newFile();
+        final PathJournal journal = PathJournal.open(file);
+        journal.append(1, $(values.getGender()), Gender.FEMALE);
+        journal.append(1, $(values.getDate()), new Timestamp(1234567890L));
+        journal.append(1, $(values.getAmount()), new BigDecimal("12.50"));
+        journal.append(1, $(values.getBytes()), new byte[]{1, 2, 3});
+        journal.append(1, $(values.getCode()), 'x');
+        journal.append(1, $(values.getFlags()), (short) 7);
+        journal.append(1, $(values.isActive()), true);
+        journal.close();
+
+        final Values replayed = new Values();
+        final PathJournal.Reader reader = PathJournal.read(file);
+        try {
+            reader.replay(Functions.constant(replayed));
+        } finally {
+            reader.close();
+        }
+
+        assertEquals(Gender.FEMALE, replayed.getGender());
+        assertEquals(new Date(1234567890L), replayed.getDate());
+        assertEquals(new BigDecimal("12.50"), replayed.getAmount());
+        assertArrayEquals(new byte[]{1, 2, 3}, replayed.getBytes());
+        assertEquals('x', replayed.getCode());
+        assertEquals(Short.valueOf((short) 7), replayed.getFlags());
+        assertTrue(replayed.isActive());
+    }
+
+    public static class Loose {
+        public Object getValue() { return null; }
+
+        public Timestamp getTimestamp() { return null; }
+    }
+
+    @Test
+    public void invalidDeltas() throws Exception {
+        final PathJournal journal = PathJournal.open(folder.newFile());
+        try {
+            journal.append(1, $(order.getTotal()), 1); // not a double
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            journal.append(1, $(order.getLines()), Arrays.asList()); // unsupported value type
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            final Customer customer = root(Customer.class);
+            journal.append(1, $(each(customer.getOrders()).getTotal()), 1.0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            final Loose loose = root(Loose.class);
+            journal.append(1, $(loose.getValue()), Gender.MALE); // would not be readable by the path type
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            final Loose loose = root(Loose.class);
+            journal.append(1, $(loose.getTimestamp()), new Timestamp(0)); // would be read as a plain date
+            fail();
+        } catch (IllegalArgumentException expected) {
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void notAJournal() throws Exception {
+        final File file = folder.newFile();
+        Files.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}, file);
+        try {
+            PathJournal.read(file);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
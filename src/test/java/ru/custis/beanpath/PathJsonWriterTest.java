@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import org.junit.Test;
+import ru.custis.beanpath.beans.Address;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Identified;
+import ru.custis.beanpath.beans.Order;
+import ru.custis.beanpath.beans.Person;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class PathJsonWriterTest {
+    private final Order order = root(Order.class);
+
+    private static Order newOrder(long id, String customerName, String city, double total) {
+        final Customer customer = new Customer(customerName, 5);
+        if (city != null) {
+            customer.setAddress(new Address());
+            customer.getAddress().setCity(city);
+        }
+        return new Order(id, customer, total, 1);
+    }
+
+    @Test
+    public void nested() {
+        final PathJsonWriter<Order> writer = PathJsonWriter.of(Order.class)
+                .fields($(order.getId()), $(order.getCustomer().getName()), $(order.getCustomer().getAddress().getCity()),
+                        $(order.getTotal()), $(order.isPaid()))
+                .build();
+
+        assertEquals("{\"id\":7,\"customer\":{\"name\":\"John\",\"address\":{\"city\":\"Moscow\"}},\"total\":10.5,\"paid\":false}",
+                     writer.toJson(newOrder(7, "John", "Moscow", 10.5)));
+    }
+
+    @Test
+    public void unreachableAndNull() {
+        final PathJsonWriter<Order> writer = PathJsonWriter.of(Order.class)
+                .fields($(order.getCustomer().getName()), $(order.getCustomer().getAddress().getCity()))
+                .build();
+
+        assertEquals("{\"customer\":{\"name\":null,\"address\":null}}", writer.toJson(newOrder(1, null, null, 0)));
+        assertEquals("{\"customer\":null}", writer.toJson(new Order()));
+    }
+
+    @Test
+    public void flat() {
+        final PathJsonWriter<Order> writer = PathJsonWriter.of(Order.class)
+                .fields($(order.getCustomer().getName()), $(order.getQuantity()))
+                .flat()
+                .build();
+
+        assertEquals("{\"customer.name\":\"John\",\"quantity\":1}", writer.toJson(newOrder(1, "John", null, 0)));
+    }
+
+    @Test
+    public void selectionString() {
+        final PathJsonWriter<Order> writer = PathJsonWriter.of(Order.class)
+                .fields(" customer.name, total,id ")
+                .build();
+
+        assertEquals("{\"customer\":{\"name\":\"Ann\"},\"total\":-2.25,\"id\":-9223372036854775808}",
+                     writer.toJson(newOrder(Long.MIN_VALUE, "Ann", null, -2.25)));
+    }
+
+    @Test
+    public void escaping() {
+        final PathJsonWriter<Order> writer = PathJsonWriter.of(Order.class).fields("customer.name").build();
+
+        assertEquals("{\"customer\":{\"name\":\"\\\"Q\\\" \\\\ \\u000a Ж 😀\"}}",
+                     writer.toJson(newOrder(1, "\"Q\" \\ \n Ж 😀", null, 0)));
+    }
+
+    @Test
+    public void nonFiniteNumbers() {
+        final PathJsonWriter<Order> writer = PathJsonWriter.of(Order.class).fields("total").build();
+        assertEquals("{\"total\":null}", writer.toJson(newOrder(1, null, null, Double.NaN)));
+    }
+
+    @Test
+    public void arrays() throws Exception {
+        final PathJsonWriter<Order> writer = PathJsonWriter.of(Order.class).fields("id").build();
+
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        writer.writeArray(Arrays.asList(newOrder(1, null, null, 0), null, newOrder(2, null, null, 0)), stream);
+        assertEquals("[{\"id\":1},null,{\"id\":2}]", stream.toString("UTF-8"));
+
+        final ByteArrayOutputStream channel = new ByteArrayOutputStream();
+        writer.writeArray(Collections.<Order>emptyList(), Channels.newChannel(channel));
+        assertEquals("[]", channel.toString("UTF-8"));
+    }
+
+    @Test
+    public void largeOutputIsStreamed() throws Exception {
+        final PathJsonWriter<Order> writer = PathJsonWriter.of(Order.class).fields("customer.name").build();
+        final char[] chars = new char[20000];
+        Arrays.fill(chars, 'x');
+        final String name = new String(chars);
+
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        writer.writeArray(Collections.nCopies(3, newOrder(1, name, null, 0)), stream);
+        assertEquals(3 * (name.length() + 24) + 4, stream.size());
+    }
+
+    @Test
+    public void pathsRootedAtSupertypes() {
+        final Person person = root(Person.class);
+        final PathJsonWriter<Person> writer = PathJsonWriter.of(Person.class)
+                .fields(BeanPathBuilder.of(Identified.class).get("id").toPath(), $(person.getName()),
+                        $(person.getDocument().getNumber()))
+                .build();
+
+        assertEquals("{\"id\":null,\"name\":\"John Smith\",\"document\":{\"number\":\"123\"}}",
+                     writer.toJson(new Person()));
+    }
+
+    @Test
+    public void nestedObjectIsReadOnce() {
+        final CountingOrder counting = root(CountingOrder.class);
+        final PathJsonWriter<CountingOrder> writer = PathJsonWriter.of(CountingOrder.class)
+                .fields($(counting.getCustomer().getName()), $(counting.getCustomer().getRating()))
+                .build();
+
+        final CountingOrder bean = new CountingOrder();
+        assertEquals("{\"customer\":{\"name\":\"John\",\"rating\":5}}", writer.toJson(bean));
+        assertEquals(1, bean.customerReads);
+    }
+
+    public static class CountingOrder {
+        private final Customer customer = new Customer("John", 5);
+        private int customerReads = 0;
+
+        public Customer getCustomer() {
+            customerReads++;
+            return customer;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ambiguousNesting() {
+        PathJsonWriter.of(Order.class).fields("customer,customer.name").build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownField() {
+        PathJsonWriter.of(Order.class).fields("customer.age");
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import org.junit.Test;
+import ru.custis.beanpath.beans.Address;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Order;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.each;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class PathListenersTest {
+    private final Customer customer = root(Customer.class);
+    private final PathListeners listeners = new PathListeners();
+
+    private final Recorder root = new Recorder("root");
+    private final Recorder address = new Recorder("address");
+    private final Recorder city = new Recorder("city");
+    private final Recorder name = new Recorder("name");
+
+    private final List<String> notified = new ArrayList<String>();
+
+    private final class Recorder implements PathChangeListener {
+        private final String id;
+
+        private Recorder(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void pathChanged(@Nonnull BeanPath<?> changed) {
+            notified.add(id + ":" + changed.toDotDelimitedString());
+        }
+    }
+
+    private void subscribeAll() {
+        listeners.subscribe(BeanPath.root(Customer.class), root);
+        listeners.subscribe($(customer.getAddress()), address);
+        listeners.subscribe($(customer.getAddress().getCity()), city);
+        listeners.subscribe($(customer.getName()), name);
+    }
+
+    @Test
+    public void ancestorsThenPathThenDescendants() {
+        subscribeAll();
+
+        listeners.fireChanged($(customer.getAddress()));
+        assertEquals(Arrays.asList("root:address", "address:address", "city:address"), notified);
+    }
+
+    @Test
+    public void siblingsAreNotNotified() {
+        subscribeAll();
+
+        listeners.fireChanged($(customer.getAddress().getCity()));
+        assertEquals(Arrays.asList("root:address.city", "address:address.city", "city:address.city"), notified);
+
+        notified.clear();
+        listeners.fireChanged($(customer.getName()));
+        assertEquals(Arrays.asList("root:name", "name:name"), notified);
+    }
+
+    @Test
+    public void unsubscribedPaths() {
+        subscribeAll();
+
+        listeners.fireChanged($(customer.getRating()));
+        assertEquals(Collections.singletonList("root:rating"), notified);
+
+        notified.clear();
+        listeners.fireChanged(BeanPath.root(Order.class));
+        assertTrue(notified.isEmpty());
+    }
+
+    @Test
+    public void unsubscribe() {
+        subscribeAll();
+        assertEquals(4, listeners.size());
+
+        assertTrue(listeners.unsubscribe($(customer.getAddress()), address));
+        assertFalse(listeners.unsubscribe($(customer.getAddress()), address));
+        assertFalse(listeners.unsubscribe($(customer.getName()), city));
+        assertEquals(3, listeners.size());
+
+        listeners.fireChanged($(customer.getAddress()));
+        assertEquals(Arrays.asList("root:address", "city:address"), notified);
+
+        listeners.unsubscribe(BeanPath.root(Customer.class), root);
+        listeners.unsubscribe($(customer.getAddress().getCity()), city);
+        listeners.unsubscribe($(customer.getName()), name);
+        assertEquals(0, listeners.size());
+
+        notified.clear();
+        listeners.fireChanged(BeanPath.root(Customer.class));
+        assertTrue(notified.isEmpty());
+    }
+
+    @Test
+    public void listenerOfSeveralMatchingPathsIsNotifiedOnce() {
+        listeners.subscribe(BeanPath.root(Customer.class), root);
+        listeners.subscribe($(customer.getAddress().getCity()), root);
+
+        listeners.fireChanged($(customer.getAddress()));
+        assertEquals(Collections.singletonList("root:address"), notified);
+    }
+
+    @Test
+    public void elementsAreMatchedByExactType() {
+        final BeanPath<PostalAddress> postalAddress = BeanPath.root(Customer.class).append("address", PostalAddress.class);
+        listeners.subscribe($(customer.getAddress()), address);
+        listeners.subscribe(postalAddress.append("city", String.class), city);
+
+        listeners.fireChanged(postalAddress);
+        assertEquals(Collections.singletonList("city:address"), notified);
+
+        notified.clear();
+        listeners.fireChanged($(customer.getAddress().getCity()));
+        assertEquals(Collections.singletonList("address:address.city"), notified);
+    }
+
+    public static class PostalAddress extends Address {
+    }
+
+    @Test
+    public void subscribeTwice() {
+        listeners.subscribe($(customer.getName()), name);
+        listeners.subscribe($(customer.getName()), name);
+        assertEquals(1, listeners.size());
+
+        listeners.fireChanged($(customer.getName()));
+        assertEquals(Collections.singletonList("name:name"), notified);
+    }
+
+    @Test
+    public void eachPaths() {
+        final Recorder total = new Recorder("total");
+        listeners.subscribe($(each(customer.getOrders()).getTotal()), total);
+
+        listeners.fireChanged($(customer.getOrders()));
+        assertEquals(Collections.singletonList("total:orders"), notified);
+
+        notified.clear();
+        listeners.fireChanged($(each(customer.getOrders()).getId()));
+        assertTrue(notified.isEmpty());
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath;
+
+import org.junit.Test;
+import ru.custis.beanpath.beans.Address;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Order;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class PathSnapshotTest {
+    private final Order order = root(Order.class);
+
+    private final PathSnapshot<Order> tracked = PathSnapshot.of(Order.class,
+            $(order.getId()),                      // 0
+            $(order.getTotal()),                   // 1
+            $(order.isPaid()),                     // 2
+            $(order.getCustomer().getName()),      // 3
+            $(order.getCustomer().getAddress()),   // 4
+            $(order.getCustomer().getRating()));   // 5
+
+    private static BitSet bits(int... indexes) {
+        final BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+
+    @Test
+    public void noChanges() {
+        final Order bean = new Order(1, new Customer("John", 5), 10, 1);
+        final PathSnapshot.Values snapshot = tracked.take(bean);
+
+        assertEquals(new BitSet(), tracked.changedPaths(bean, snapshot));
+        assertFalse(tracked.isChanged(bean, snapshot));
+    }
+
+    @Test
+    public void primitiveAndValueChanges() {
+        final Order bean = new Order(1, new Customer("John", 5), 10, 1);
+        final PathSnapshot.Values snapshot = tracked.take(bean);
+
+        bean.setTotal(11);
+        bean.setPaid(true);
+        bean.getCustomer().setName(new String("John")); // equal, so not changed
+        assertEquals(bits(1, 2), tracked.changedPaths(bean, snapshot));
+
+        bean.getCustomer().setName("Ann");
+        assertEquals(bits(1, 2, 3), tracked.changedPaths(bean, snapshot));
+        assertTrue(tracked.isChanged(bean, snapshot));
+    }
+
+    @Test
+    public void beansByIdentity() {
+        final Order bean = new Order(1, new Customer("John", 5), 10, 1);
+        bean.getCustomer().setAddress(new Address());
+        final PathSnapshot.Values snapshot = tracked.take(bean);
+
+        bean.getCustomer().getAddress().setCity("Moscow"); // the same address
+        assertEquals(new BitSet(), tracked.changedPaths(bean, snapshot));
+
+        bean.getCustomer().setAddress(new Address());
+        assertEquals(bits(4), tracked.changedPaths(bean, snapshot));
+    }
+
+    @Test
+    public void unreachablePaths() {
+        final Order bean = new Order(1, null, 10, 1);
+        final PathSnapshot.Values snapshot = tracked.take(bean);
+        assertNull(snapshot.get(5));
+
+        bean.setCustomer(new Customer(null, 0)); // rating becomes reachable, though zero
+        assertEquals(bits(5), tracked.changedPaths(bean, snapshot));
+    }
+
+    @Test
+    public void snapshotValues() {
+        final Order bean = new Order(7, new Customer("John", 5), 2.5, 1);
+        final PathSnapshot.Values snapshot = tracked.take(bean);
+
+        assertEquals(7L, snapshot.get(0));
+        assertEquals(2.5, snapshot.get(1));
+        assertEquals(false, snapshot.get(2));
+        assertEquals("John", snapshot.get(3));
+        assertEquals(5, snapshot.get(5));
+    }
+
+    @Test
+    public void nanIsNotAChange() {
+        final Order bean = new Order(1, null, Double.NaN, 1);
+        assertFalse(tracked.isChanged(bean, tracked.take(bean)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void foreignSnapshot() {
+        final Order bean = new Order();
+        PathSnapshot.of(Order.class, $(order.getId())).changedPaths(bean, tracked.take(bean));
+    }
+}
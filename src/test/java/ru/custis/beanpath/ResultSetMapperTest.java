@@ -0,0 +1,261 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.custis.beanpath;
+
+import org.junit.Test;
+import ru.custis.beanpath.beans.Customer;
+import ru.custis.beanpath.beans.Order;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static ru.custis.beanpath.BeanPathMagic.$;
+import static ru.custis.beanpath.BeanPathMagic.root;
+
+public class ResultSetMapperTest {
+    private final Order order = root(Order.class);
+
+    private final ResultSetMapper<Order> mapper = ResultSetMapper.of(Order.class)
+            .map("ID", $(order.getId()))
+            .map("TOTAL", $(order.getTotal()))
+            .map("PAID", $(order.isPaid()))
+            .map("customer_name", $(order.getCustomer().getName()))
+            .map("CUSTOMER_RATING", $(order.getCustomer().getRating()))
+            .map("CITY", $(order.getCustomer().getAddress().getCity()))
+            .compile();
+
+    private static final String[] LABELS = {"ID", "CUSTOMER_NAME", "CUSTOMER_RATING", "CITY", "TOTAL", "PAID"};
+
+    @Test
+    public void mapAll() throws Exception {
+        final StubResultSet rows = new StubResultSet(LABELS,
+                                                     new Object[]{42L, "John Smith", 5, "Moscow", 99.5, true},
+                                                     new Object[]{43L, "Jane Doe", 4, null, 10.0, false});
+
+        final List<Order> orders = mapper.mapAll(rows.proxy());
+        assertEquals(2, orders.size());
+
+        final Order first = orders.get(0);
+        assertEquals(42L, first.getId());
+        assertEquals(99.5, first.getTotal(), 0);
+        assertTrue(first.isPaid());
+        assertEquals("John Smith", first.getCustomer().getName());
+        assertEquals(5, first.getCustomer().getRating());
+        assertEquals("Moscow", first.getCustomer().getAddress().getCity());
+
+        final Order second = orders.get(1);
+        assertEquals("Jane Doe", second.getCustomer().getName());
+        assertFalse(second.isPaid());
+        assertNull(second.getCustomer().getAddress()); // not created for NULL
+
+        // typed getters only, columns are resolved once
+        assertFalse(rows.calls.contains("getObject"));
+        assertTrue(rows.calls.contains("getLong"));
+        assertTrue(rows.calls.contains("getDouble"));
+        assertEquals(LABELS.length, countOf(rows.calls, "getColumnLabel"));
+    }
+
+    @Test
+    public void nullLeavesPropertiesUntouched() throws Exception {
+        final StubResultSet rows = new StubResultSet(LABELS, new Object[]{null, null, null, null, null, null});
+        final ResultSet resultSet = rows.proxy();
+        resultSet.next();
+
+        final Order existing = new Order(7, null, 1.5, 0);
+        mapper.map(resultSet, existing);
+
+        assertEquals(7, existing.getId());
+        assertEquals(1.5, existing.getTotal(), 0);
+        assertNull(existing.getCustomer());
+    }
+
+    @Test
+    public void singleRow() throws Exception {
+        final StubResultSet rows = new StubResultSet(LABELS, new Object[]{1L, "John Smith", 5, null, 0.0, false});
+        final ResultSet resultSet = rows.proxy();
+        resultSet.next();
+
+        final Order mapped = mapper.map(resultSet);
+        assertEquals(1, mapped.getId());
+        assertEquals("John Smith", mapped.getCustomer().getName());
+    }
+
+    @Test
+    public void boundMapperResolvesColumnsOnce() throws Exception {
+        final StubResultSet rows = new StubResultSet(LABELS,
+                                                     new Object[]{1L, "John Smith", 5, null, 0.0, false},
+                                                     new Object[]{2L, "Jane Doe", 4, null, 0.0, false});
+        final ResultSet resultSet = rows.proxy();
+        final ResultSetMapper.Bound<Order> bound = mapper.bind(resultSet);
+        final List<Order> orders = new ArrayList<Order>();
+        while (resultSet.next()) {
+            orders.add(bound.map());
+        }
+        assertEquals(LABELS.length, countOf(rows.calls, "getColumnLabel"));
+        assertEquals("Jane Doe", orders.get(1).getCustomer().getName());
+
+        // another result set, of another layout, bound at the same time
+        final String[] reordered = {"PAID", "TOTAL", "CITY", "CUSTOMER_RATING", "CUSTOMER_NAME", "ID"};
+        final StubResultSet otherRows = new StubResultSet(reordered, new Object[]{true, 1.5, null, 3, "Ann", 9L});
+        final ResultSet otherResultSet = otherRows.proxy();
+        final ResultSetMapper.Bound<Order> otherBound = mapper.bind(otherResultSet);
+        otherResultSet.next();
+        final Order mapped = otherBound.map();
+        assertEquals(9, mapped.getId());
+        assertEquals("Ann", mapped.getCustomer().getName());
+    }
+
+    @Test
+    public void missingColumn() throws Exception {
+        final ResultSet resultSet = new StubResultSet(new String[]{"ID"}).proxy();
+        try {
+            mapper.mapAll(resultSet);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public static class Row {
+        private Long id;
+        private Object payload;
+        private char code;
+
+        public Long getId() { return id; }
+
+        public void setId(Long id) { this.id = id; }
+
+        public Object getPayload() { return payload; }
+
+        public void setPayload(Object payload) { this.payload = payload; }
+
+        public char getCode() { return code; }
+
+        public void setCode(char code) { this.code = code; }
+    }
+
+    @Test
+    public void wrappersAndObjects() throws Exception {
+        final Row row = root(Row.class);
+        final ResultSetMapper<Row> rowMapper = ResultSetMapper.of(Row.class)
+                .map("ID", $(row.getId()))
+                .map("PAYLOAD", $(row.getPayload()))
+                .compile();
+
+        final StubResultSet rows = new StubResultSet(new String[]{"ID", "PAYLOAD"},
+                                                     new Object[]{5L, Arrays.asList(1, 2)},
+                                                     new Object[]{null, null});
+        final List<Row> mapped = rowMapper.mapAll(rows.proxy());
+
+        assertEquals(Long.valueOf(5), mapped.get(0).getId()); // read with getLong and boxed
+        assertEquals(Arrays.asList(1, 2), mapped.get(0).getPayload());
+        assertNull(mapped.get(1).getId());
+        assertTrue(rows.calls.contains("getLong"));
+
+        try {
+            ResultSetMapper.of(Row.class).map("CODE", $(row.getCode())).compile();
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void inapplicablePath() {
+        final Customer customer = root(Customer.class);
+        try {
+            ResultSetMapper.of(Order.class).map("NAME", $(customer.getName()));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static int countOf(List<String> calls, String method) {
+        int count = 0;
+        for (String call : calls) {
+            if (call.equals(method)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Forward-only result set over given rows, that records names of the called methods
+     */
+    private static final class StubResultSet implements InvocationHandler {
+        private final String[] labels;
+        private final Object[][] rows;
+        private final List<String> calls = new ArrayList<String>();
+
+        private int row = -1;
+        private boolean wasNull;
+
+        private StubResultSet(String[] labels, Object[]... rows) {
+            this.labels = labels;
+            this.rows = rows;
+        }
+
+        private ResultSet proxy() {
+            return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            final String name = method.getName();
+            calls.add(name);
+            if (name.equals("next")) {
+                return ++row < rows.length;
+            } else if (name.equals("getMetaData")) { // as some drivers do, a new instance per call
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSetMetaData.class}, this);
+            } else if (name.equals("getColumnCount")) {
+                return labels.length;
+            } else if (name.equals("getColumnLabel")) {
+                return labels[(Integer) args[0] - 1];
+            } else if (name.equals("wasNull")) {
+                return wasNull;
+            } else if (name.startsWith("get")) {
+                final Object value = rows[row][(Integer) args[0] - 1];
+                wasNull = (value == null);
+                return convert(value, method.getReturnType());
+            }
+            throw new UnsupportedOperationException(name);
+        }
+
+        private static Object convert(Object value, Class<?> type) {
+            if (type == long.class) {
+                return (value == null) ? 0L : ((Number) value).longValue();
+            } else if (type == int.class) {
+                return (value == null) ? 0 : ((Number) value).intValue();
+            } else if (type == double.class) {
+                return (value == null) ? 0.0 : ((Number) value).doubleValue();
+            } else if (type == boolean.class) {
+                return (value == null) ? false : value;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath.beans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Order {
+    private long id;
+    private Customer customer;
+    private double total;
+    private int quantity;
+    private boolean paid;
+    private List<OrderLine> lines = new ArrayList<OrderLine>();
+
+    public Order() { }
+
+    public Order(long id, Customer customer, double total, int quantity) {
+        this.id = id;
+        this.customer = customer;
+        this.total = total;
+        this.quantity = quantity;
+    }
+
+    public long getId() { return id; }
+
+    public void setId(long id) { this.id = id; }
+
+    public Customer getCustomer() { return customer; }
+
+    public void setCustomer(Customer customer) { this.customer = customer; }
+
+    public double getTotal() { return total; }
+
+    public void setTotal(double total) { this.total = total; }
+
+    public int getQuantity() { return quantity; }
+
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+
+    public boolean isPaid() { return paid; }
+
+    public void setPaid(boolean paid) { this.paid = paid; }
+
+    public List<OrderLine> getLines() { return lines; }
+
+    public void setLines(List<OrderLine> lines) { this.lines = lines; }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath.beans;
+
+public class OrderDto {
+    private Long id;
+    private String clientName;
+    private int clientRating;
+    private Double total;
+    private Address delivery;
+
+    public Long getId() { return id; }
+
+    public void setId(Long id) { this.id = id; }
+
+    public String getClientName() { return clientName; }
+
+    public void setClientName(String clientName) { this.clientName = clientName; }
+
+    public int getClientRating() { return clientRating; }
+
+    public void setClientRating(int clientRating) { this.clientRating = clientRating; }
+
+    public Double getTotal() { return total; }
+
+    public void setTotal(Double total) { this.total = total; }
+
+    public Address getDelivery() { return delivery; }
+
+    public void setDelivery(Address delivery) { this.delivery = delivery; }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2014 CUSTIS (http://www.custis.ru/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.custis.beanpath.beans;
+
+public class OrderLine {
+    private String product;
+    private double price;
+
+    public OrderLine() { }
+
+    public OrderLine(String product, double price) {
+        this.product = product;
+        this.price = price;
+    }
+
+    public String getProduct() { return product; }
+
+    public void setProduct(String product) { this.product = product; }
+
+    public double getPrice() { return price; }
+
+    public void setPrice(double price) { this.price = price; }
+}
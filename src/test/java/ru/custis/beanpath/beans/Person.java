@@ -16,6 +16,7 @@
 
 package ru.custis.beanpath.beans;
 
+import javax.annotation.Nullable;
 import java.util.Iterator;
 import java.util.List;
 
@@ -27,6 +28,7 @@ public class Person extends Identified<Long> {
 
     public Document getDocument() { return new Document(); }
 
+    @Nullable
     public Person getBestFriend() { return new Person(); }
 
     public Gender getGender() { return Gender.MALE; }